@@ -0,0 +1,268 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of FeatureMaker.parse for every FeatureTypes value, swept over utterance
+ * lengths and, for the feature types that use it, maxGap values.  Each benchmark parses one 
+ * utterance per op through one of the three FeatureMaker entry points (the Vector, FeatureSink 
+ * and FeatureKeySink paths), so an engine change to FeatureMaker can be judged against the 
+ * numbers from before the change.
+ * 
+ * The n-grams take their length from FeatureTypes and ignore maxGap, so they are benchmarked by
+ * NGramBenchmark without a maxGap parameter, and the gappy feature types by GappyBenchmark with 
+ * one.  JMH crosses every @Param with every other, so one class would run each n-gram once per 
+ * maxGap for nothing.
+ * 
+ * Utterances are drawn from a Zipf distributed vocabulary with English-like word lengths, 
+ * seeded so every run sees the same tokens.  Throughput is reported in ops/s; run with 
+ * "-prof gc" to also get bytes allocated per op (gc.alloc.rate.norm).  See benchmarks/README.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class FeatureMakerBenchmark 
+{
+	//Data Members
+	private static final int 		VOCABULARY_SIZE 	= 20000;
+	private static final int 		UTTERANCE_COUNT 	= 256;
+	private static final long 		SEED 						= 20101017L;
+	
+	@Param({"8", "32", "128", "512"})
+	public int 							utteranceLength;
+	
+	private Vector<String>[] 		utterances;
+	private int 							next;
+	private FeatureKey 				featureKey;
+	private FeatureSink 				featureSink;
+	private FeatureKeySink 			featureKeySink;
+	
+	//Methods
+	/**
+	 * Builds UTTERANCE_COUNT utterances of utteranceLength tokens.  Benchmarks cycle through them so
+	 * branch predictors and caches do not learn a single utterance.  The sinks are made here, once, so
+	 * they are not counted in the bytes allocated per op.
+	 * 
+	 * @param blackhole Blackhole of the trial, which the sinks hand every feature to
+	 */
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void makeUtterances(final Blackhole blackhole)
+	{
+		Random random 				= new Random(SEED);
+		String[] vocabulary 		= new String[VOCABULARY_SIZE];
+		double[] cumulative 		= new double[VOCABULARY_SIZE];
+		double total 					= 0;
+		
+		for (int i = 0; i < VOCABULARY_SIZE; i++)
+		{
+			vocabulary[i] 	= makeWord(random, i);
+			total 				= total + 1.0 / (i + 1);
+			cumulative[i] 	= total;
+		}
+		
+		utterances = new Vector[UTTERANCE_COUNT];
+		
+		for (int i = 0; i < UTTERANCE_COUNT; i++)
+		{
+			utterances[i] = new Vector<String>(utteranceLength);
+			
+			for (int j = 0; j < utteranceLength; j++)
+			{
+				utterances[i].add(vocabulary[zipfIndex(cumulative, random.nextDouble() * total)]);
+			}
+		}
+		
+		featureKey 	= new FeatureKey();
+		next 			= 0;
+		
+		featureSink = new FeatureSink()
+		{
+			public void addFeature(String feature)
+			{
+				blackhole.consume(feature);
+			}
+		};
+		
+		//The sink hashes the key so the characters are actually read, as FeatureKeyTable would
+		featureKeySink = new FeatureKeySink()
+		{
+			public void addFeature(FeatureKey featureKey)
+			{
+				blackhole.consume(featureKey.contentHash());
+			}
+		};
+	}
+	
+	/**
+	 * Original entry point that returns every feature in a Vector.
+	 */
+	@Benchmark
+	public Vector<String> parseToVector()
+	{
+		return FeatureMaker.parse(nextUtterance(), getMaxGap(), getFeatureType());
+	}
+	
+	/**
+	 * Streaming entry point that hands each feature to a FeatureSink as a String.
+	 */
+	@Benchmark
+	public void parseToFeatureSink()
+	{
+		FeatureMaker.parse(nextUtterance(), getMaxGap(), getFeatureType(), featureSink);
+	}
+	
+	/**
+	 * Streaming entry point that writes each feature into a reused FeatureKey.
+	 */
+	@Benchmark
+	public void parseToFeatureKeySink()
+	{
+		FeatureMaker.parse(nextUtterance(), getMaxGap(), getFeatureType(), featureKey, featureKeySink);
+	}
+	
+	/**
+	 * @return feature type to parse into
+	 */
+	protected abstract FeatureTypes getFeatureType();
+	
+	/**
+	 * @return maxGap to parse with
+	 */
+	protected abstract int getMaxGap();
+	
+	/**
+	 * @return the next utterance in the cycle
+	 */
+	private Vector<String> nextUtterance()
+	{
+		next = (next + 1) & (UTTERANCE_COUNT - 1);
+		
+		return utterances[next];
+	}
+	
+	/**
+	 * Makes a distinct lower case word.  Frequent (low rank) words are short, as in English.
+	 * 
+	 * @param random source of letters
+	 * @param rank rank of the word in the vocabulary, which also makes the word unique
+	 * @return the word
+	 */
+	private static String makeWord(Random random, int rank)
+	{
+		int length = 2 + random.nextInt(2 + Math.min(8, rank / 500));
+		StringBuilder stringBuilder = new StringBuilder(length + 6);
+		
+		for (int i = 0; i < length; i++)
+		{
+			stringBuilder.append((char)('a' + random.nextInt(26)));
+		}
+		
+		return stringBuilder.append(Integer.toString(rank, 36)).toString();
+	}
+	
+	/**
+	 * Finds the vocabulary index whose cumulative Zipf weight first reaches target.
+	 * 
+	 * @param cumulative running totals of the Zipf weights
+	 * @param target value from 0 to the total weight
+	 * @return vocabulary index
+	 */
+	private static int zipfIndex(double[] cumulative, double target)
+	{
+		int low 	= 0;
+		int high 	= cumulative.length - 1;
+		int middle;
+		
+		while (low < high)
+		{
+			middle = (low + high) >>> 1;
+			
+			if (cumulative[middle] < target)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * FeatureMakerBenchmark of the n-grams, whose length comes from the feature type.
+	 */
+	@State(Scope.Thread)
+	public static class NGramBenchmark extends FeatureMakerBenchmark
+	{
+		@Param({"ONE_GRAM", "TWO_GRAM", "THREE_GRAM", "FOUR_GRAM", "FIVE_GRAM"})
+		public FeatureTypes 				featureType;
+		
+		protected FeatureTypes getFeatureType()
+		{
+			return featureType;
+		}
+		
+		protected int getMaxGap()
+		{
+			return featureType.distance();
+		}
+	}
+	
+	/**
+	 * FeatureMakerBenchmark of the gappy feature types, swept over maxGap.
+	 */
+	@State(Scope.Thread)
+	public static class GappyBenchmark extends FeatureMakerBenchmark
+	{
+		@Param({"GAPPY_BIGRAM", "GAPPY_BIGRAM_TAGGED", "ORTHOGONAL_SPARSE_BIGRAM"})
+		public FeatureTypes 				featureType;
+		
+		@Param({"2", "3", "5"})
+		public int 							maxGap;
+		
+		protected FeatureTypes getFeatureType()
+		{
+			return featureType;
+		}
+		
+		protected int getMaxGap()
+		{
+			return maxGap;
+		}
+	}
+}
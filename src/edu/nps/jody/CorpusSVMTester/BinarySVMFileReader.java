@@ -0,0 +1,278 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads SVM records written by BinarySVMFileWriter one at a time.  Each call to next() decodes
+ * the following record into arrays that are reused for every record, so reading a file does not 
+ * make any objects per record.
+ * 
+ * This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class BinarySVMFileReader 
+{
+	//Data Members
+	private static final int 	BUFFER_SIZE = 1 << 16;
+	private InputStream 		inputStream;
+	private byte[] 				buffer;
+	private int 					position;
+	private int 					limit;
+	private int 					label;
+	private int 					length;
+	private int[] 				features;
+	private int[] 				counts;
+	
+	//Constructors
+	/**
+	 * Sole constructor for BinarySVMFileReader.  Opens file and checks its header.
+	 * 
+	 * @param file binary SVM file written by BinarySVMFileWriter
+	 * @throws FileNotFoundException if file does not exist
+	 * @throws IOException if file cannot be read or does not start with the whole BinarySVMFileWriter header
+	 */
+	public BinarySVMFileReader(File file) throws FileNotFoundException, IOException
+	{
+		inputStream 	= new FileInputStream(file);
+		buffer 			= new byte[BUFFER_SIZE];
+		position 		= 0;
+		limit 			= 0;
+		features 		= new int[64];
+		counts 			= new int[64];
+		
+		boolean headerRead = false;
+		int version;
+		
+		//The stream is closed here if the header cannot be read, since no caller will ever get it to close
+		try
+		{
+			for (int i = 0; i < BinarySVMFileWriter.MAGIC.length; i++)
+			{
+				if (readByte() != BinarySVMFileWriter.MAGIC[i])
+				{
+					throw new IOException(file + " is not a binary SVM file");
+				}
+			}
+			
+			version = readByte();
+			
+			if (version != BinarySVMFileWriter.VERSION)
+			{
+				throw new IOException(file + " is binary SVM version " + version + ", expected " + BinarySVMFileWriter.VERSION);
+			}
+			
+			headerRead = true;
+		}
+		catch (EOFException e)
+		{
+			throw new IOException(file + " is not a binary SVM file, it is shorter than the header");
+		}
+		finally
+		{
+			if (!headerRead)
+			{
+				inputStream.close();
+			}
+		}
+	}
+	
+	//Methods
+	/**
+	 * Checks whether file starts with the BinarySVMFileWriter header.
+	 * 
+	 * @param file file to check
+	 * @return true if file is a binary SVM file
+	 * @throws IOException if file cannot be read
+	 */
+	public static boolean isBinarySVMFile(File file) throws IOException
+	{
+		byte[] header = new byte[BinarySVMFileWriter.MAGIC.length];
+		int read = 0;
+		int count;
+		InputStream inputStream = new FileInputStream(file);
+		
+		try
+		{
+			while (read < header.length && (count = inputStream.read(header, read, header.length - read)) > 0)
+			{
+				read = read + count;
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+		
+		if (read < header.length)
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < header.length; i++)
+		{
+			if (header[i] != BinarySVMFileWriter.MAGIC[i])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Decodes the next record.
+	 * 
+	 * @return true if a record was read, false if the end of the file was reached
+	 * @throws IOException if the file cannot be read or ends part way through a record
+	 */
+	public boolean next() throws IOException
+	{
+		int zigzag;
+		int feature = 0;
+		
+		if (position == limit && !fill())
+		{
+			return false;
+		}
+		
+		zigzag 	= readVarint();
+		label 		= (zigzag >>> 1) ^ -(zigzag & 1);
+		length 	= readVarint();
+		
+		if (length > features.length)
+		{
+			features 	= new int[Math.max(length, features.length << 1)];
+			counts 		= new int[features.length];
+		}
+		
+		for (int i = 0; i < length; i++)
+		{
+			feature 		= feature + readVarint();
+			features[i] 	= feature;
+			counts[i] 		= readVarint();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return label of the current record
+	 */
+	public int getLabel()
+	{
+		return label;
+	}
+	
+	/**
+	 * @return number of features in the current record
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+	
+	/**
+	 * @return features of the current record in ascending order.  Only the first getLength() entries 
+	 * belong to the record, and the array is reused by the next call to next().
+	 */
+	public int[] getFeatures()
+	{
+		return features;
+	}
+	
+	/**
+	 * @return counts of the current record, parallel to getFeatures().  Only the first getLength() entries 
+	 * belong to the record, and the array is reused by the next call to next().
+	 */
+	public int[] getCounts()
+	{
+		return counts;
+	}
+	
+	/**
+	 * Closes the file.
+	 * 
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		inputStream.close();
+	}
+	
+	/**
+	 * Reads an unsigned varint.
+	 * 
+	 * @return value read
+	 * @throws IOException if the file cannot be read or ends part way through the varint
+	 */
+	private int readVarint() throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+		int b;
+		
+		do
+		{
+			b 			= readByte();
+			value 	= value | ((b & 0x7F) << shift);
+			shift 	= shift + 7;
+		}
+		while ((b & 0x80) != 0);
+		
+		return value;
+	}
+	
+	/**
+	 * Reads a single byte.
+	 * 
+	 * @return byte read, from 0 to 255
+	 * @throws IOException if the file cannot be read or has no more bytes
+	 */
+	private int readByte() throws IOException
+	{
+		if (position == limit && !fill())
+		{
+			throw new EOFException("Binary SVM file ended part way through a record");
+		}
+		
+		return buffer[position++] & 0xFF;
+	}
+	
+	/**
+	 * Refills the buffer from the file.
+	 * 
+	 * @return false if there are no more bytes in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean fill() throws IOException
+	{
+		int count = inputStream.read(buffer, 0, buffer.length);
+		
+		if (count <= 0)
+		{
+			return false;
+		}
+		
+		position 	= 0;
+		limit 		= count;
+		
+		return true;
+	}
+}
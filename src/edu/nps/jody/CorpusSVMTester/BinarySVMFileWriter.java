@@ -0,0 +1,214 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes SVM records in a compact binary format meant for the large SVM files that only
+ * SVMToSmallSVM reads.  The file starts with the four bytes "BSVM" and a version byte.  Each
+ * record that follows is:
+ * 
+ * <pre>
+ *   label           zigzag varint
+ *   feature count   varint
+ *   then, for each feature in ascending order:
+ *     feature delta varint (feature minus the previous feature, the first is relative to 0)
+ *     count         varint
+ * </pre>
+ * 
+ * Varints are 7 bits per byte, least significant group first, with the high bit set on every
+ * byte but the last.  Since CHD values are sorted, the deltas are small and most take one or 
+ * two bytes.  SVMFormatConverter turns these files back into libSVM text for debugging.
+ * 
+ * This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class BinarySVMFileWriter implements SVMRecordWriter
+{
+	//Data Members
+	public static final byte[] 	MAGIC 						= {'B', 'S', 'V', 'M'};
+	public static final byte 		VERSION 					= 1;
+	private static final int 		MAX_VARINT_BYTES 	= 5;
+	private OutputStream 			outputStream;
+	private byte[] 					buffer;
+	private int 						position;
+	
+	//Constructors
+	/**
+	 * Constructor for a BinarySVMFileWriter with a LibSVMFileWriter.DEFAULT_BUFFER_SIZE buffer.
+	 * 
+	 * @param file file to write, replaced if it already exists
+	 * @throws IOException if file cannot be created or the header cannot be written
+	 */
+	public BinarySVMFileWriter(File file) throws FileNotFoundException, IOException
+	{
+		this(file, LibSVMFileWriter.DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Constructor for a BinarySVMFileWriter with a bufferSize byte buffer.
+	 * 
+	 * @param file file to write, replaced if it already exists
+	 * @param bufferSize number of bytes held before they are written to the file
+	 * @throws IOException if file cannot be created or the header cannot be written
+	 */
+	public BinarySVMFileWriter(File file, int bufferSize) throws FileNotFoundException, IOException
+	{
+		outputStream 	= new FileOutputStream(file);
+		buffer 			= new byte[Math.max(bufferSize, MAX_VARINT_BYTES * 4)];
+		position 		= 0;
+		
+		for (int i = 0; i < MAGIC.length; i++)
+		{
+			writeByte(MAGIC[i]);
+		}
+		
+		writeByte(VERSION);
+	}
+	
+	//Methods
+	/**
+	 * Writes one utterance from its CHD counts.  Empty utterances are not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param chdCounts primitive map of CHD miminum perfect hash values mapped to number of occurrences
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeCHDCounts(int label, IntIntHashMap chdCounts) throws IOException
+	{
+		int size = chdCounts.size();
+		int[] sortedKeys;
+		int previous = 0;
+		
+		if (size == 0)
+		{
+			return;
+		}
+		
+		sortedKeys = chdCounts.sortedKeys();
+		
+		writeVarint((label << 1) ^ (label >> 31));
+		writeVarint(size);
+		
+		for (int i = 0; i < size; i++)
+		{
+			writeVarint(sortedKeys[i] - previous);
+			writeVarint(chdCounts.get(sortedKeys[i], 0));
+			previous = sortedKeys[i];
+		}
+	}
+	
+	/**
+	 * Writes one utterance from parallel arrays of features and counts.  Empty utterances are not 
+	 * written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param features feature numbers, non-negative and in ascending order
+	 * @param counts counts[i] is the number of occurrences of features[i]
+	 * @param length number of entries of features and counts to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeRecord(int label, int[] features, int[] counts, int length) throws IOException
+	{
+		int previous = 0;
+		
+		if (length == 0)
+		{
+			return;
+		}
+		
+		writeVarint((label << 1) ^ (label >> 31));
+		writeVarint(length);
+		
+		for (int i = 0; i < length; i++)
+		{
+			writeVarint(features[i] - previous);
+			writeVarint(counts[i]);
+			previous = features[i];
+		}
+	}
+	
+	/**
+	 * Writes everything held in the buffer to the file and closes the file.
+	 * 
+	 * @throws IOException if the buffer cannot be written or the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			flushBuffer();
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Writes value as an unsigned varint.
+	 * 
+	 * @param value value to write, treated as unsigned
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	private void writeVarint(int value) throws IOException
+	{
+		if (position + MAX_VARINT_BYTES > buffer.length)
+		{
+			flushBuffer();
+		}
+		
+		while ((value & ~0x7F) != 0)
+		{
+			buffer[position++] 	= (byte)((value & 0x7F) | 0x80);
+			value 					= value >>> 7;
+		}
+		
+		buffer[position++] = (byte)value;
+	}
+	
+	/**
+	 * Writes a single byte.
+	 * 
+	 * @param b byte to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	private void writeByte(byte b) throws IOException
+	{
+		if (position == buffer.length)
+		{
+			flushBuffer();
+		}
+		
+		buffer[position++] = b;
+	}
+	
+	/**
+	 * Hands the buffer to the stream and empties it.
+	 * 
+	 * @throws IOException if the buffer cannot be written to the stream
+	 */
+	private void flushBuffer() throws IOException
+	{
+		if (position > 0)
+		{
+			outputStream.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
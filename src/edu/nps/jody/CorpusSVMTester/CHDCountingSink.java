@@ -0,0 +1,147 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.HashMap;
+
+import edu.nps.jody.HashFinder.MembershipChecker;
+
+/**
+ * A FeatureSink (and FeatureKeySink) that turns each feature instance into its CHD minimum perfect hash
+ * value as soon as FeatureMaker makes it and counts the number of times each value
+ * is seen.  One sink is meant to be reused for every utterance in a file by calling
+ * clear() between utterances.  A sink is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class CHDCountingSink implements FeatureSink, FeatureKeySink
+{
+	//Data Members
+	private MembershipChecker 				membershipChecker;
+	private IntIntHashMap 						chdCounts;
+	private FeatureKeyTable 					featureKeyTable;
+	private FeatureIndexCache 					featureIndexCache;
+	
+	//Constructors
+	/**
+	 * Constructor for a CHDCountingSink that goes to membershipChecker for every feature.
+	 * 
+	 * @param membershipChecker an object that checks a given instance against a precomputed minimum perfect hash function
+	 * for membership and then against a traditional hash function "signature" for collision detection.
+	 */
+	public CHDCountingSink(MembershipChecker membershipChecker)
+	{
+		this(membershipChecker, null);
+	}
+	
+	/**
+	 * Constructor for a CHDCountingSink that looks in featureIndexCache before going to membershipChecker.
+	 * 
+	 * @param membershipChecker an object that checks a given instance against a precomputed minimum perfect hash function
+	 * for membership and then against a traditional hash function "signature" for collision detection.
+	 * @param featureIndexCache cache of recently seen features and their CHD values, or null for no cache
+	 */
+	public CHDCountingSink(MembershipChecker membershipChecker, FeatureIndexCache featureIndexCache)
+	{
+		this(membershipChecker, featureIndexCache, new FeatureKeyTable());
+	}
+	
+	/**
+	 * Constructor for a CHDCountingSink that turns FeatureKeys into Strings through featureKeyTable, so a table
+	 * can be kept by one thread from file to file rather than filled again for every file.
+	 * 
+	 * @param membershipChecker an object that checks a given instance against a precomputed minimum perfect hash function
+	 * for membership and then against a traditional hash function "signature" for collision detection.
+	 * @param featureIndexCache cache of recently seen features and their CHD values, or null for no cache
+	 * @param featureKeyTable table of the Strings of features already seen, used only by this sink while it is in use
+	 */
+	public CHDCountingSink(MembershipChecker membershipChecker, FeatureIndexCache featureIndexCache, FeatureKeyTable featureKeyTable)
+	{
+		this.membershipChecker 	= membershipChecker;
+		this.featureIndexCache 	= featureIndexCache;
+		this.featureKeyTable 		= featureKeyTable;
+		chdCounts 							= new IntIntHashMap();
+	}
+	
+	//Methods
+	/**
+	 * Looks up the CHD minimum perfect hash value of feature and increments its count.  Features that
+	 * are not members of the model are dropped.
+	 * 
+	 * @param feature a single feature instance such as "the quick 2"
+	 */
+	public void addFeature(String feature)
+	{
+		int key;
+		
+		if (featureIndexCache == null)
+		{
+			key = TextToSVM.getCHDIndex(feature, membershipChecker);
+		}
+		else
+		{
+			key = featureIndexCache.getIndex(feature);
+		}
+		
+		if (key >= 0)
+		{
+			chdCounts.increment(key, 1);
+		}
+	}
+	
+	/**
+	 * Looks up the CHD minimum perfect hash value of the feature in featureKey and increments its count.  A
+	 * feature that has been seen before reuses the String made the first time, so no String is made here.
+	 * 
+	 * @param featureKey buffer holding a single feature instance such as "the quick 2"
+	 */
+	public void addFeature(FeatureKey featureKey)
+	{
+		addFeature(featureKeyTable.getString(featureKey));
+	}
+	
+	/**
+	 * @return primitive map of minimum perfect hash values to the number of times those values appeared
+	 * since the last call to clear().  The map is reused for the next utterance.
+	 */
+	public IntIntHashMap getCHDCounts()
+	{
+		return chdCounts;
+	}
+	
+	/**
+	 * Copies the current counts into a new HashMap for callers that still work with boxed maps.
+	 * 
+	 * @return HashMap of minimum perfect hash values along with a count of how many times those values appeared
+	 * since the last call to clear()
+	 */
+	public HashMap<Integer, Integer> getCHDMap()
+	{
+		HashMap<Integer, Integer> chdMap = new HashMap<Integer, Integer>();
+		int[] keys = chdCounts.keysInInsertionOrder();
+		
+		for (int i = 0; i < keys.length; i++)
+		{
+			chdMap.put(keys[i], chdCounts.get(keys[i], 0));
+		}
+		
+		return chdMap;
+	}
+	
+	/**
+	 * Forgets all counts so the sink can be reused for the next utterance.
+	 */
+	public void clear()
+	{
+		chdCounts.clear();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The header of a keys.mph file dumped by cmph.  cmph starts every dump with the name of the algorithm
+ * used, ending in a 0 byte, followed by the number of keys as a 32 bit unsigned int in the byte order of
+ * the machine that made it (little endian on the machines we build the hash functions on).  Every minimum
+ * perfect hash value MembershipChecker returns falls in [0, keyCount).
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class CMPHHeader
+{
+	//Data Members
+	public static final String[] 	ALGORITHM_NAMES 		= {"bmz", "bmz8", "chm", "brz", "fch", "bdz", "bdz_ph", "chd_ph", "chd"};
+	private static final int 		MAX_NAME_LENGTH 		= 16;
+	private String 						algorithmName;
+	private int 							keyCount;
+
+	//Constructors
+	/**
+	 * Sole constructor for CMPHHeader.
+	 *
+	 * @param algorithmName cmph algorithm the hash function was made with
+	 * @param keyCount number of keys of the hash function
+	 */
+	public CMPHHeader(String algorithmName, int keyCount)
+	{
+		this.algorithmName 	= algorithmName;
+		this.keyCount 			= keyCount;
+	}
+
+	//Methods
+	/**
+	 * @return cmph algorithm the hash function was made with, such as chd_ph
+	 */
+	public String getAlgorithmName()
+	{
+		return algorithmName;
+	}
+
+	/**
+	 * @return number of keys of the hash function, one more than the largest value it returns
+	 */
+	public int getKeyCount()
+	{
+		return keyCount;
+	}
+
+	/**
+	 * Reads the header of a keys.mph file.
+	 *
+	 * @param keyFile keys.mph file dumped by cmph
+	 * @return the header of keyFile
+	 * @throws FileNotFoundException if keyFile does not exist
+	 * @throws IOException if keyFile cannot be read or does not start with a cmph header
+	 */
+	public static CMPHHeader read(File keyFile) throws FileNotFoundException, IOException
+	{
+		DataInputStream dataInputStream = new DataInputStream(new FileInputStream(keyFile));
+		StringBuilder algorithmName = new StringBuilder();
+		byte[] keyCountBytes = new byte[4];
+		long keyCount;
+		int b;
+
+		try
+		{
+			while ((b = dataInputStream.read()) > 0 && algorithmName.length() <= MAX_NAME_LENGTH)
+			{
+				algorithmName.append((char)b);
+			}
+
+			if (b != 0 || !Arrays.asList(ALGORITHM_NAMES).contains(algorithmName.toString()))
+			{
+				throw new IOException(keyFile + " does not start with a cmph algorithm name");
+			}
+
+			dataInputStream.readFully(keyCountBytes);
+		}
+		finally
+		{
+			dataInputStream.close();
+		}
+
+		keyCount = (keyCountBytes[0] & 0xFFL) | ((keyCountBytes[1] & 0xFFL) << 8) | ((keyCountBytes[2] & 0xFFL) << 16) | ((keyCountBytes[3] & 0xFFL) << 24);
+
+		if (keyCount > Integer.MAX_VALUE)
+		{
+			throw new IOException(keyFile + " has " + keyCount + " keys, too many for an int[] remap");
+		}
+
+		return new CMPHHeader(algorithmName.toString(), (int)keyCount);
+	}
+}
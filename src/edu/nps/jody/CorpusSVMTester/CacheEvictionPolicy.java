@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * Ways a FeatureIndexCache can choose which feature to forget when it is full.
+ * 
+ * @author jody
+ *
+ */
+public enum CacheEvictionPolicy 
+{
+	 LEAST_RECENTLY_USED	(true),
+	 FIRST_IN_FIRST_OUT		(false);
+	 
+	 private boolean accessOrder;
+	 
+	 CacheEvictionPolicy(boolean accessOrder)
+	 {
+		 this.accessOrder = accessOrder;
+	 }
+	 
+	 /**
+	  * @return true if a lookup makes a feature the last to be evicted, false if only insertion order counts
+	  */
+	 public boolean accessOrder()
+	 {
+		 return accessOrder;
+	 }
+}
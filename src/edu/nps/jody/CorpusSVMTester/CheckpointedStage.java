@@ -0,0 +1,129 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+/**
+ * A pipeline stage that is skipped when its output is up to date.  Before running, the stage's StageStamp
+ * is made from its inputs and checked against the stamp it wrote the last time it finished.  If the stamp
+ * is current and the output still exists, the stage does nothing.  Otherwise the old stamp is deleted, the
+ * stage runs, and the new stamp is written, so a stage that dies part way through runs again next time.
+ * Deleting a stamp file makes its stage, and every stage after it, run again.
+ *
+ * Stages that are cheaper to run together, such as the svmFiles of several feature types made in one pass over
+ * the text, can call checkInputs on each, run the ones that are out of date together, and then call finish on each.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public abstract class CheckpointedStage implements Callable<Void>
+{
+	//Data Members
+	private String 	name;
+	private File 		stampFile;
+	private File 		output;
+
+	//Constructors
+	/**
+	 * Sole constructor for CheckpointedStage.
+	 *
+	 * @param name name of the stage, used in messages
+	 * @param stampFile file the stage's stamp is kept in
+	 * @param output file or directory the stage writes, which must exist for the stage to be skipped
+	 */
+	public CheckpointedStage(String name, File stampFile, File output)
+	{
+		this.name 			= name;
+		this.stampFile 	= stampFile;
+		this.output 		= output;
+	}
+
+	//Methods
+	/**
+	 * Records the parameters and input files of the stage.
+	 *
+	 * @param stageStamp empty stamp to add to
+	 * @throws IOException if an earlier stage's stamp cannot be read
+	 */
+	protected abstract void addInputs(StageStamp stageStamp) throws IOException;
+
+	/**
+	 * Does the work of the stage.
+	 *
+	 * @throws IOException if the stage fails
+	 */
+	protected abstract void runStage() throws IOException;
+
+	/**
+	 * @return the file the stage's stamp is kept in
+	 */
+	public File getStampFile()
+	{
+		return stampFile;
+	}
+
+	/**
+	 * Checks whether the stage is up to date.  If it is not, its old stamp is deleted, so that the stage runs
+	 * again next time if it does not finish now.
+	 *
+	 * @return the new stamp to pass to finish once the stage has run, or null if the stage is up to date
+	 * @throws IOException if a stamp or input file cannot be read, or the old stamp cannot be deleted
+	 */
+	public StageStamp checkInputs() throws IOException
+	{
+		StageStamp stageStamp 	= new StageStamp();
+		StageStamp recorded 		= StageStamp.read(stampFile);
+
+		addInputs(stageStamp);
+
+		if (recorded != null && output.exists() && stageStamp.isCurrent(recorded))
+		{
+			System.out.println(name + " is up to date, skipping");
+			return null;
+		}
+
+		if (stampFile.exists() && !stampFile.delete())
+		{
+			throw new IOException("Could not delete " + stampFile);
+		}
+
+		stageStamp.fillChecksums();
+
+		return stageStamp;
+	}
+
+	/**
+	 * Records that the stage has run.
+	 *
+	 * @param stageStamp stamp returned by checkInputs
+	 * @throws IOException if the stamp cannot be written
+	 */
+	public void finish(StageStamp stageStamp) throws IOException
+	{
+		stageStamp.write(stampFile);
+	}
+
+	public Void call() throws IOException
+	{
+		StageStamp stageStamp = checkInputs();
+
+		if (stageStamp != null)
+		{
+			runStage();
+			finish(stageStamp);
+		}
+
+		return null;
+	}
+}
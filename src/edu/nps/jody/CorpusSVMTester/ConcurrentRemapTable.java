@@ -0,0 +1,233 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A large to small feature map that many threads can assign small values in at once.  The large
+ * values are split across stripes, each an IntIntHashMap guarded by its own monitor, so threads
+ * only wait on each other when they touch the same stripe.  New small values come from an
+ * AtomicInteger rather than from a shared mapMax, so handing one out takes no lock of its own.
+ *
+ * The small values are still dense, 1 up to getMapMax() - 1, but which large value gets which small
+ * value depends on how the threads are scheduled.
+ *
+ * When made from a dense RemapTable, the large values in its dense range are kept in an AtomicIntegerArray
+ * rather than in the stripes.  A large value that already has a small value is then read without a lock, and
+ * a new one is claimed with a compare and set, so threads never wait on a stripe for it.  A thread that finds
+ * a slot claimed but not yet filled waits for the claiming thread, which keeps the small values free of gaps.
+ * The array is a copy, so while the threads run the dense range takes twice the memory it does in RemapTable.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConcurrentRemapTable
+{
+	//Data Members
+	public static final int 		DEFAULT_STRIPE_COUNT 	= 64;
+	private static final int 		UNASSIGNED 				= 0;
+	private static final int 		CLAIMED 					= Integer.MIN_VALUE;
+	private IntIntHashMap[] 		stripes;
+	private AtomicIntegerArray 	denseMap;
+	private int 						stripeShift;
+	private AtomicInteger 		mapMax;
+
+	//Constructors
+	/**
+	 * Constructor for a ConcurrentRemapTable holding a copy of every entry of remapTable.  New small
+	 * values continue on from remapTable's mapMax.  If remapTable is dense, so is this table.
+	 *
+	 * @param remapTable table to start from
+	 * @param stripeCount number of stripes, rounded up to a power of 2
+	 */
+	public ConcurrentRemapTable(RemapTable remapTable, int stripeCount)
+	{
+		int stripeBits 	= 0;
+		int size 			= remapTable.size();
+		int[] sortedLargeValues;
+
+		while ((1 << stripeBits) < stripeCount && stripeBits < 16)
+		{
+			stripeBits++;
+		}
+
+		stripes 			= new IntIntHashMap[1 << stripeBits];
+		stripeShift 	= 32 - stripeBits;
+		mapMax 		= new AtomicInteger(remapTable.getMapMax());
+
+		if (remapTable.isDense())
+		{
+			denseMap = new AtomicIntegerArray(remapTable.getDenseKeyCount());
+		}
+
+		for (int i = 0; i < stripes.length; i++)
+		{
+			stripes[i] = new IntIntHashMap(denseMap == null ? size / stripes.length : 0);
+		}
+
+		sortedLargeValues = remapTable.sortedLargeValues();
+
+		for (int i = 0; i < size; i++)
+		{
+			if (inDenseRange(sortedLargeValues[i]))
+			{
+				denseMap.set(sortedLargeValues[i], remapTable.get(sortedLargeValues[i]));
+			}
+			else
+			{
+				stripeFor(sortedLargeValues[i]).put(sortedLargeValues[i], remapTable.get(sortedLargeValues[i]));
+			}
+		}
+	}
+
+	/**
+	 * Constructor for a ConcurrentRemapTable holding a copy of every entry of remapTable, with
+	 * DEFAULT_STRIPE_COUNT stripes.
+	 *
+	 * @param remapTable table to start from
+	 */
+	public ConcurrentRemapTable(RemapTable remapTable)
+	{
+		this(remapTable, DEFAULT_STRIPE_COUNT);
+	}
+
+	//Methods
+	/**
+	 * Finds the small value assigned to large, assigning the next small value if large has not been
+	 * seen before.  Safe to call from any number of threads.
+	 *
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large
+	 */
+	public int getOrAssign(int large)
+	{
+		IntIntHashMap stripe;
+		int small;
+
+		if (inDenseRange(large))
+		{
+			small = denseMap.get(large);
+
+			if (small == UNASSIGNED && denseMap.compareAndSet(large, UNASSIGNED, CLAIMED))
+			{
+				small = mapMax.getAndIncrement();
+				denseMap.set(large, small);
+			}
+
+			//Another thread claimed large first, its small value is only a few instructions away
+			while (small == UNASSIGNED || small == CLAIMED)
+			{
+				Thread.yield();
+				small = denseMap.get(large);
+			}
+
+			return small;
+		}
+
+		stripe = stripeFor(large);
+
+		synchronized (stripe)
+		{
+			small = stripe.get(large, RemapTable.NOT_MAPPED);
+
+			if (small == RemapTable.NOT_MAPPED)
+			{
+				small = mapMax.getAndIncrement();
+				stripe.put(large, small);
+			}
+		}
+
+		return small;
+	}
+
+	/**
+	 * @return the next small value that will be handed out
+	 */
+	public int getMapMax()
+	{
+		return mapMax.get();
+	}
+
+	/**
+	 * Copies every entry into a new RemapTable.  Call this once the threads assigning values are finished.
+	 *
+	 * @return a RemapTable holding the same entries and mapMax as this table, dense if this table is
+	 */
+	public RemapTable toRemapTable()
+	{
+		IntIntHashMap largeToSmallMap;
+		int[] largeValues;
+		int[] denseValues;
+		int size = 0;
+
+		for (int i = 0; i < stripes.length; i++)
+		{
+			size = size + stripes[i].size();
+		}
+
+		largeToSmallMap = new IntIntHashMap(size);
+
+		for (int i = 0; i < stripes.length; i++)
+		{
+			synchronized (stripes[i])
+			{
+				largeValues = stripes[i].keysInInsertionOrder();
+
+				for (int j = 0; j < largeValues.length; j++)
+				{
+					largeToSmallMap.put(largeValues[j], stripes[i].get(largeValues[j], RemapTable.NOT_MAPPED));
+				}
+			}
+		}
+
+		if (denseMap != null)
+		{
+			denseValues = new int[denseMap.length()];
+
+			for (int i = 0; i < denseValues.length; i++)
+			{
+				denseValues[i] = denseMap.get(i);
+			}
+
+			return new RemapTable(denseValues, largeToSmallMap, mapMax.get());
+		}
+
+		return new RemapTable(largeToSmallMap, mapMax.get());
+	}
+
+	/**
+	 * @param large large (minimum perfect hash) value
+	 * @return true if large is kept in denseMap rather than in a stripe
+	 */
+	private boolean inDenseRange(int large)
+	{
+		return denseMap != null && large >= 0 && large < denseMap.length();
+	}
+
+	/**
+	 * Picks the stripe for large from the high bits of a multiplicative hash.  IntIntHashMap places
+	 * keys by the low bits, so the stripes do not crowd their keys into a few slots.
+	 *
+	 * @param large large (minimum perfect hash) value
+	 * @return stripe holding large
+	 */
+	private IntIntHashMap stripeFor(int large)
+	{
+		if (stripes.length == 1)
+		{
+			return stripes[0];
+		}
+
+		return stripes[(large * 0x9E3779B9) >>> stripeShift];
+	}
+}
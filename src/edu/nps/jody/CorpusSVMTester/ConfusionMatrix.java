@@ -0,0 +1,405 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * A confusion matrix counted one prediction at a time, with the true positives, false positives and false
+ * negatives of each class kept alongside it so that precision, recall and F1 need no pass over the matrix.
+ * Only the cells off the diagonal that have been counted are kept, in an IntIntHashMap for each actual class
+ * that has been mistaken for another, so with thousands of classes the matrix takes memory for the mistakes
+ * made rather than for every pair of classes.
+ *
+ * Each thread or fold counts into its own ConfusionMatrix, and the results are added together with merge, so
+ * no prediction files have to be written and read back.  This class is not safe to share between threads.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConfusionMatrix
+{
+	//Data Members
+	public static final String 	FILE_NAME 			= "confusionMatrix.txt";
+	private static final String 	FIELD_DELIM 		= "\t";
+	private IntIntHashMap 			labelIndexes;
+	private int[] 						labels;
+	private int 						labelCount;
+	private int[] 						truePositives;
+	private int[] 						falsePositives;
+	private int[] 						falseNegatives;
+	private IntIntHashMap[] 		mistakes;
+	private long 						total;
+	private long 						correct;
+
+	//Constructors
+	/**
+	 * Constructor for an empty ConfusionMatrix.
+	 */
+	public ConfusionMatrix()
+	{
+		labelIndexes 		= new IntIntHashMap();
+		labels 				= new int[16];
+		truePositives 		= new int[16];
+		falsePositives 	= new int[16];
+		falseNegatives 	= new int[16];
+		mistakes 			= new IntIntHashMap[16];
+	}
+
+	//Methods
+	/**
+	 * Counts one prediction.
+	 *
+	 * @param actual label the utterance truly has
+	 * @param predicted label the utterance was given
+	 */
+	public void add(int actual, int predicted)
+	{
+		add(actual, predicted, 1);
+	}
+
+	/**
+	 * Counts count predictions of the same actual and predicted labels.
+	 *
+	 * @param actual label the utterances truly have
+	 * @param predicted label the utterances were given
+	 * @param count number of predictions
+	 */
+	private void add(int actual, int predicted, int count)
+	{
+		int actualIndex 		= indexOf(actual);
+		int predictedIndex 	= indexOf(predicted);
+
+		total = total + count;
+
+		if (actualIndex == predictedIndex)
+		{
+			truePositives[actualIndex] 	= truePositives[actualIndex] + count;
+			correct 							= correct + count;
+			return;
+		}
+
+		falseNegatives[actualIndex] 		= falseNegatives[actualIndex] + count;
+		falsePositives[predictedIndex] 	= falsePositives[predictedIndex] + count;
+
+		if (mistakes[actualIndex] == null)
+		{
+			mistakes[actualIndex] = new IntIntHashMap(4);
+		}
+
+		mistakes[actualIndex].increment(predictedIndex, count);
+	}
+
+	/**
+	 * Adds every prediction counted by other to this matrix.
+	 *
+	 * @param other matrix of another thread, fold or slice, which is not changed and cannot be this matrix
+	 */
+	public void merge(ConfusionMatrix other)
+	{
+		int[] predictedIndexes;
+		int index;
+
+		if (other == this)
+		{
+			throw new IllegalArgumentException("A ConfusionMatrix cannot be merged into itself");
+		}
+
+		for (int i = 0; i < other.labelCount; i++)
+		{
+			index 						= indexOf(other.labels[i]);
+			truePositives[index] 	= truePositives[index] + other.truePositives[i];
+			total 						= total + other.truePositives[i];
+			correct 					= correct + other.truePositives[i];
+		}
+
+		for (int i = 0; i < other.labelCount; i++)
+		{
+			if (other.mistakes[i] != null)
+			{
+				predictedIndexes = other.mistakes[i].keysInInsertionOrder();
+
+				for (int j = 0; j < predictedIndexes.length; j++)
+				{
+					add(other.labels[i], other.labels[predictedIndexes[j]], other.mistakes[i].get(predictedIndexes[j], 0));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return index of the class, adding it if it has not been seen
+	 */
+	private int indexOf(int label)
+	{
+		int index = labelIndexes.get(label, -1);
+
+		if (index < 0)
+		{
+			if (labelCount == labels.length)
+			{
+				labels 				= Arrays.copyOf(labels, labelCount << 1);
+				truePositives 		= Arrays.copyOf(truePositives, labelCount << 1);
+				falsePositives 	= Arrays.copyOf(falsePositives, labelCount << 1);
+				falseNegatives 	= Arrays.copyOf(falseNegatives, labelCount << 1);
+				mistakes 			= Arrays.copyOf(mistakes, labelCount << 1);
+			}
+
+			index 				= labelCount++;
+			labels[index] 	= label;
+			labelIndexes.put(label, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * @return every label seen, as an actual or a predicted label, in ascending order
+	 */
+	public int[] getLabels()
+	{
+		int[] sortedLabels = Arrays.copyOf(labels, labelCount);
+
+		Arrays.sort(sortedLabels);
+
+		return sortedLabels;
+	}
+
+	/**
+	 * @param actual label the utterances truly have
+	 * @param predicted label the utterances were given
+	 * @return number of predictions of predicted for utterances of actual
+	 */
+	public int getCount(int actual, int predicted)
+	{
+		int actualIndex 		= labelIndexes.get(actual, -1);
+		int predictedIndex 	= labelIndexes.get(predicted, -1);
+
+		if (actualIndex < 0 || predictedIndex < 0)
+		{
+			return 0;
+		}
+
+		if (actualIndex == predictedIndex)
+		{
+			return truePositives[actualIndex];
+		}
+
+		return mistakes[actualIndex] == null ? 0 : mistakes[actualIndex].get(predictedIndex, 0);
+	}
+
+	/**
+	 * @return number of predictions counted
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * @return fraction of predictions that were right, or 0 if none have been counted
+	 */
+	public double getAccuracy()
+	{
+		return total == 0 ? 0 : (double)correct / total;
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return number of utterances of the class predicted to be of it
+	 */
+	public int getTruePositives(int label)
+	{
+		int index = labelIndexes.get(label, -1);
+
+		return index < 0 ? 0 : truePositives[index];
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return number of utterances of other classes predicted to be of it
+	 */
+	public int getFalsePositives(int label)
+	{
+		int index = labelIndexes.get(label, -1);
+
+		return index < 0 ? 0 : falsePositives[index];
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return number of utterances of the class predicted to be of another
+	 */
+	public int getFalseNegatives(int label)
+	{
+		int index = labelIndexes.get(label, -1);
+
+		return index < 0 ? 0 : falseNegatives[index];
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return true positives over all predictions of the class, or 0 if it was never predicted
+	 */
+	public double getPrecision(int label)
+	{
+		return ratio(getTruePositives(label), getTruePositives(label) + getFalsePositives(label));
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return true positives over all utterances of the class, or 0 if it has none
+	 */
+	public double getRecall(int label)
+	{
+		return ratio(getTruePositives(label), getTruePositives(label) + getFalseNegatives(label));
+	}
+
+	/**
+	 * @param label label of a class
+	 * @return harmonic mean of the precision and recall of the class, or 0 if both are 0
+	 */
+	public double getF1(int label)
+	{
+		return ratio(2 * (long)getTruePositives(label), 2 * (long)getTruePositives(label) + getFalsePositives(label) + getFalseNegatives(label));
+	}
+
+	/**
+	 * @return mean of the precision of every label seen, summed in label order so that merging in any order gives the same value
+	 */
+	public double getMacroPrecision()
+	{
+		int[] sortedLabels 	= getLabels();
+		double sum 			= 0;
+
+		for (int i = 0; i < sortedLabels.length; i++)
+		{
+			sum = sum + getPrecision(sortedLabels[i]);
+		}
+
+		return labelCount == 0 ? 0 : sum / labelCount;
+	}
+
+	/**
+	 * @return mean of the recall of every label seen
+	 */
+	public double getMacroRecall()
+	{
+		int[] sortedLabels 	= getLabels();
+		double sum 			= 0;
+
+		for (int i = 0; i < sortedLabels.length; i++)
+		{
+			sum = sum + getRecall(sortedLabels[i]);
+		}
+
+		return labelCount == 0 ? 0 : sum / labelCount;
+	}
+
+	/**
+	 * @return mean of the F1 of every label seen
+	 */
+	public double getMacroF1()
+	{
+		int[] sortedLabels 	= getLabels();
+		double sum 			= 0;
+
+		for (int i = 0; i < sortedLabels.length; i++)
+		{
+			sum = sum + getF1(sortedLabels[i]);
+		}
+
+		return labelCount == 0 ? 0 : sum / labelCount;
+	}
+
+	/**
+	 * Writes the totals, then a "label truePositives falsePositives falseNegatives precision recall f1" line for
+	 * every label, then an "actual predicted count" line for every cell off the diagonal that is not 0, all tab
+	 * separated and in ascending order of label.
+	 *
+	 * @param file file to write, replaced if it already exists
+	 * @throws IOException if file cannot be written
+	 */
+	public void write(File file) throws IOException
+	{
+		PrintWriter printWriter = new PrintWriter(file, "UTF-8");
+		int[] sortedLabels 		= getLabels();
+		IntIntHashMap row;
+		int[] predictedLabels;
+
+		try
+		{
+			printWriter.println("total" + FIELD_DELIM + total);
+			printWriter.println("accuracy" + FIELD_DELIM + getAccuracy());
+			printWriter.println("macroPrecision" + FIELD_DELIM + getMacroPrecision());
+			printWriter.println("macroRecall" + FIELD_DELIM + getMacroRecall());
+			printWriter.println("macroF1" + FIELD_DELIM + getMacroF1());
+			printWriter.println();
+			printWriter.println("label" + FIELD_DELIM + "truePositives" + FIELD_DELIM + "falsePositives" + FIELD_DELIM + "falseNegatives"
+					+ FIELD_DELIM + "precision" + FIELD_DELIM + "recall" + FIELD_DELIM + "f1");
+
+			for (int i = 0; i < sortedLabels.length; i++)
+			{
+				printWriter.println(sortedLabels[i] + FIELD_DELIM + getTruePositives(sortedLabels[i]) + FIELD_DELIM + getFalsePositives(sortedLabels[i])
+						+ FIELD_DELIM + getFalseNegatives(sortedLabels[i]) + FIELD_DELIM + getPrecision(sortedLabels[i])
+						+ FIELD_DELIM + getRecall(sortedLabels[i]) + FIELD_DELIM + getF1(sortedLabels[i]));
+			}
+
+			printWriter.println();
+			printWriter.println("actual" + FIELD_DELIM + "predicted" + FIELD_DELIM + "count");
+
+			//Only the cells that were counted are walked, not every pair of labels
+			for (int i = 0; i < sortedLabels.length; i++)
+			{
+				row = mistakes[labelIndexes.get(sortedLabels[i], -1)];
+
+				if (row != null)
+				{
+					predictedLabels = row.keysInInsertionOrder();
+
+					for (int j = 0; j < predictedLabels.length; j++)
+					{
+						predictedLabels[j] = labels[predictedLabels[j]];
+					}
+
+					Arrays.sort(predictedLabels);
+
+					for (int j = 0; j < predictedLabels.length; j++)
+					{
+						printWriter.println(sortedLabels[i] + FIELD_DELIM + predictedLabels[j] + FIELD_DELIM + getCount(sortedLabels[i], predictedLabels[j]));
+					}
+				}
+			}
+		}
+		finally
+		{
+			printWriter.close();
+		}
+
+		//PrintWriter hides its IOExceptions, so a short file must not pass for the results
+		if (printWriter.checkError())
+		{
+			throw new IOException("Could not write " + file);
+		}
+	}
+
+	/**
+	 * @return numerator over denominator, or 0 if denominator is 0
+	 */
+	private static double ratio(long numerator, long denominator)
+	{
+		return denominator == 0 ? 0 : (double)numerator / denominator;
+	}
+}
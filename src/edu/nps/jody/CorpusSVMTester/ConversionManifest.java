@@ -0,0 +1,283 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+/**
+ * A record of the files a stage has already processed, keyed by file name, holding the size, modification
+ * time and CRC32 checksum each file had when it was processed.  A file is current if its size and
+ * modification time still match.  If only its modification time has changed, its checksum is worked out
+ * again, so a file that was touched or copied without being changed is still current.
+ * 
+ * A manifest is kept beside, not inside, the directory it describes, so that later stages listing that
+ * directory do not mistake it for one of its files.  The manifest is a tab separated text file with one
+ * "name size modified checksum" line per file, in UTF-8.  It is written to a temporary file first and then renamed,
+ * so a run that dies never leaves half a manifest.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConversionManifest 
+{
+	//Data Members
+	public static final String 			MANIFEST_SUFFIX 		= ".manifest";
+	private static final String 			FIELD_DELIM 				= "\t";
+	private static final int 				READ_BUFFER_SIZE 		= 1 << 16;
+	private TreeMap<String, long[]> 	entries;
+	
+	//Constructors
+	/**
+	 * Constructor for an empty ConversionManifest.
+	 */
+	public ConversionManifest()
+	{
+		entries = new TreeMap<String, long[]>();
+	}
+	
+	//Methods
+	/**
+	 * @param directory directory of processed files
+	 * @return the manifest file kept for directory, a sibling of directory named after it
+	 */
+	public static File manifestFileFor(File directory)
+	{
+		File absoluteDirectory = directory.getAbsoluteFile();
+		
+		return new File(absoluteDirectory.getParentFile(), absoluteDirectory.getName() + MANIFEST_SUFFIX);
+	}
+	
+	/**
+	 * @param file file to check
+	 * @return true if file has been recorded and has not changed since
+	 * @throws IOException if the checksum of file is needed but file cannot be read
+	 */
+	public boolean isCurrent(File file) throws IOException
+	{
+		long[] entry = entries.get(file.getName());
+		
+		if (entry == null || entry[0] != file.length())
+		{
+			return false;
+		}
+		
+		if (entry[1] == file.lastModified())
+		{
+			return true;
+		}
+		
+		if (entry[2] != checksum(file))
+		{
+			return false;
+		}
+		
+		//Same contents with a new time, so save working out the checksum next time
+		entry[1] = file.lastModified();
+		
+		return true;
+	}
+	
+	/**
+	 * Records the size, modification time and checksum file has now.
+	 * 
+	 * @param file file that has just been processed
+	 * @throws IOException if file cannot be read
+	 */
+	public void record(File file) throws IOException
+	{
+		long[] entry = new long[3];
+		
+		entry[0] = file.length();
+		entry[1] = file.lastModified();
+		entry[2] = checksum(file);
+		
+		entries.put(file.getName(), entry);
+	}
+	
+	/**
+	 * Forgets every file whose name is not the name of one of files.
+	 * 
+	 * @param files files still present
+	 * @return names of the files forgotten, so whatever was made from them can be removed too
+	 */
+	public Vector<String> retainOnly(File[] files)
+	{
+		HashSet<String> names = new HashSet<String>();
+		Iterator<String> iterator = entries.keySet().iterator();
+		Vector<String> removedNames = new Vector<String>();
+		String name;
+		
+		for (int i = 0; i < files.length; i++)
+		{
+			names.add(files[i].getName());
+		}
+		
+		while (iterator.hasNext())
+		{
+			name = iterator.next();
+			
+			if (!names.contains(name))
+			{
+				iterator.remove();
+				removedNames.add(name);
+			}
+		}
+		
+		return removedNames;
+	}
+	
+	/**
+	 * @return number of files recorded
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * Writes the manifest to manifestFile, replacing it.
+	 * 
+	 * @param manifestFile file to write
+	 * @throws IOException if manifestFile cannot be written
+	 */
+	public void write(File manifestFile) throws IOException
+	{
+		File temporaryFile = new File(manifestFile.getPath() + ".tmp");
+		PrintWriter printWriter;
+		Iterator<Map.Entry<String, long[]>> iterator = entries.entrySet().iterator();
+		Map.Entry<String, long[]> entry;
+		
+		if (manifestFile.getParentFile() != null)
+		{
+			manifestFile.getParentFile().mkdirs();
+		}
+		
+		printWriter = new PrintWriter(temporaryFile, "UTF-8");
+		
+		try
+		{
+			while (iterator.hasNext())
+			{
+				entry = iterator.next();
+				printWriter.println(entry.getKey() + FIELD_DELIM + entry.getValue()[0] + FIELD_DELIM + entry.getValue()[1] 
+						+ FIELD_DELIM + Long.toHexString(entry.getValue()[2]));
+			}
+		}
+		finally
+		{
+			printWriter.close();
+		}
+		
+		//PrintWriter hides its IOExceptions, so a short temporary file must not replace the manifest
+		if (printWriter.checkError())
+		{
+			temporaryFile.delete();
+			throw new IOException("Could not write " + temporaryFile);
+		}
+		
+		//File.renameTo will not replace an existing file everywhere
+		if (!temporaryFile.renameTo(manifestFile) && !(manifestFile.delete() && temporaryFile.renameTo(manifestFile)))
+		{
+			throw new IOException("Could not replace " + manifestFile);
+		}
+	}
+	
+	/**
+	 * Reads a manifest written by write().
+	 * 
+	 * @param manifestFile file to read
+	 * @return the manifest in manifestFile, or an empty manifest if manifestFile does not exist
+	 * @throws IOException if manifestFile cannot be read or is malformed
+	 */
+	public static ConversionManifest read(File manifestFile) throws IOException
+	{
+		ConversionManifest manifest = new ConversionManifest();
+		BufferedReader bufferedReader;
+		StringTokenizer tokenizer;
+		String line;
+		long[] entry;
+		String name;
+		
+		if (!manifestFile.exists())
+		{
+			return manifest;
+		}
+		
+		bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), "UTF-8"));
+		
+		try
+		{
+			while ((line = bufferedReader.readLine()) != null)
+			{
+				tokenizer = new StringTokenizer(line, FIELD_DELIM);
+				
+				if (tokenizer.countTokens() != 4)
+				{
+					throw new IOException(manifestFile + " has a malformed line: " + line);
+				}
+				
+				name 		= tokenizer.nextToken();
+				entry 		= new long[3];
+				entry[0] 	= Long.parseLong(tokenizer.nextToken());
+				entry[1] 	= Long.parseLong(tokenizer.nextToken());
+				entry[2] 	= Long.parseLong(tokenizer.nextToken(), 16);
+				
+				manifest.entries.put(name, entry);
+			}
+		}
+		finally
+		{
+			bufferedReader.close();
+		}
+		
+		return manifest;
+	}
+	
+	/**
+	 * @param file file to read
+	 * @return CRC32 checksum of the contents of file
+	 * @throws IOException if file cannot be read
+	 */
+	public static long checksum(File file) throws IOException
+	{
+		InputStream inputStream = new FileInputStream(file);
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		CRC32 crc32 = new CRC32();
+		int bytesRead;
+		
+		try
+		{
+			while ((bytesRead = inputStream.read(buffer)) != -1)
+			{
+				crc32.update(buffer, 0, bytesRead);
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+		
+		return crc32.getValue();
+	}
+}
@@ -6,7 +6,12 @@ package edu.nps.jody.CorpusSVMTester;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Vector;
+import java.util.concurrent.Callable;
 
+import de.bwaldvogel.liblinear.Parameter;
+import de.bwaldvogel.liblinear.SolverType;
 import edu.nps.LibLinearManager.LibLinearManager;
 import edu.nps.jody.GroupAndSlice.GroupAndSlice;
 import edu.nps.jody.GroupAndSlice.GroupTypes;
@@ -20,59 +25,514 @@ public class CorpusSVMTester
 {
 	//Data Members
 	public static final String FILE_DELIM = System.getProperty("file.separator");
+	public static final String GAP_MODEL_DELIM = "-gap";
 	
 	//Constructors
 	
 	
 	//Methods
 	public static void prepareTextForSVM(File corpusDirectory, int maxGap, FeatureTypes featureType, int modelNumber,  int[]groupSizes, int titleDigits, int nCrossValidation) throws FileNotFoundException, IOException
+	{
+		PipelineSettings pipelineSettings = new PipelineSettings();
+		
+		pipelineSettings.setGroupSizes(groupSizes);
+		pipelineSettings.setTitleDigits(titleDigits);
+		pipelineSettings.setNCrossValidation(nCrossValidation);
+		
+		prepareTextForSVM(corpusDirectory, new TextToSVM(), new SVMToSmallSVM(), maxGap, featureType, modelNumber, pipelineSettings);
+	}
+	
+	/**
+	 * Runs the whole pipeline from text to cross validation slices, with the options in pipelineSettings, as stages
+	 * of a StageScheduler.  Making svmFiles, remapping them into smallSVMFiles and then every group type and group
+	 * size of slices are each a stage, and the slices, which only depend on smallSVMFiles, run at the same time up
+	 * to pipelineSettings.getStageThreads().  svmToSmallSVM may already be set up, such as to remap through a
+	 * memory mapped table.
+	 * 
+	 * When fused is set, TextToSVM remaps each utterance through SVMToSmallSVM as it is made and writes
+	 * smallSVMFiles directly, so svmFiles is never written.  When fused is not set and threadCount is more than 1,
+	 * svmFiles is also remapped in parallel, and deterministicRemap picks whether the small values must match the
+	 * single threaded run.  When denseRemap is set, SVMToSmallSVM keeps its map in an int[] sized to the number of
+	 * keys in keys.mph.  With inMemoryFolds, the slices of every group size are made by a FoldBuilder from one in
+	 * memory copy of smallSVMFiles, see addSliceStages, rather than by GroupAndSlice, and with a liblinearParameter
+	 * every fold is also trained and predicted in this process by a LibLinearFoldTrainer.  A liblinearParameter
+	 * needs inMemoryFolds, since the folds it predicts are those of FoldBuilder, not the slices of GroupAndSlice.
+	 * 
+	 * Each stage is a CheckpointedStage that keeps a StageStamp in the stageStamps directory of the model, and is
+	 * skipped if its inputs and parameters have not changed since it last finished.  A run that only changes
+	 * groupSizes makes the new slices without reading the text again.
+	 */
+	public static void prepareTextForSVM(File corpusDirectory, final TextToSVM textToSVM, final SVMToSmallSVM svmToSmallSVM, final int maxGap, final FeatureTypes featureType, final int modelNumber, final PipelineSettings pipelineSettings) throws FileNotFoundException, IOException
 	{
 		//FIXME get all the dir_name constants coming out of one file to eliminate matching issues after the basic process is proven out
 		//Feature type is not its own directory because the model must match the feature, so this is a human being task to match model to feature creation
-		TextToSVM textToSVM 		= new TextToSVM();
 		
-		File textDirectory 				= new File(corpusDirectory, TextToSVM.TEXT_DIR_NAME);
+		final File textDirectory 				= new File(corpusDirectory, TextToSVM.TEXT_DIR_NAME);
 		
 		File featureDirectory		= new File(corpusDirectory, featureType.toString());
 		
-		File modelDirectory 			= new File(featureDirectory, Integer.toString(modelNumber));
+		final File modelDirectory 			= new File(featureDirectory, Integer.toString(modelNumber));
 		
-		File largeSVMDirectory 	= new File(modelDirectory, TextToSVM.SVM_DIR_NAME);
+		final File smallSVMDirectory = new File(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME);
 		
-		File cmphDirectory 			= new File(modelDirectory, TextToSVM.CMPH_DIR_NAME);
+		final File keyFile							= new File(modelDirectory, TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.KEY_FILE_NAME);
 		
-		File keyFile							= new File(cmphDirectory, TextToSVM.KEY_FILE_NAME);
+		final File signatureFile				= new File(modelDirectory, TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.SIGNATURE_FILE_NAME);
 		
-		File signatureFile				= new File(cmphDirectory, TextToSVM.SIGNATURE_FILE_NAME);
+		StageScheduler stageScheduler 		= new StageScheduler(pipelineSettings.getStageThreads(), pipelineSettings.getStageRetries());
+		
+		if (pipelineSettings.isFused() && (svmToSmallSVM.getRemapOrder() == RemapOrder.FREQUENCY || svmToSmallSVM.isPruning()))
+		{
+			throw new IllegalArgumentException("A fused run never counts the corpus, so it cannot give out small values by FREQUENCY or prune features");
+		}
+		
+		prepareRemap(svmToSmallSVM, modelDirectory, pipelineSettings.isFused(), pipelineSettings.isDenseRemap());
+		
+		if (pipelineSettings.isFused())
+		{
+			stageScheduler.addStage(SVMToSmallSVM.SMALL_SVM_DIR_NAME, new CheckpointedStage(SVMToSmallSVM.SMALL_SVM_DIR_NAME, stampFileFor(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME), smallSVMDirectory)
+			{
+				protected void addInputs(StageStamp stageStamp)
+				{
+					addTextInputs(stageStamp, textDirectory, keyFile, signatureFile, featureType, maxGap, modelNumber);
+					stageStamp.addParameter("fused", Boolean.TRUE);
+					textToSVM.addSettings(stageStamp);
+					svmToSmallSVM.addSettings(stageStamp);
+				}
+				
+				protected void runStage() throws IOException
+				{
+					textToSVM.setFusedSVMToSmallSVM(svmToSmallSVM);
+					
+					try
+					{
+						textToSVM.processFiles(textDirectory, maxGap, featureType, keyFile.getAbsolutePath(), signatureFile.getAbsolutePath(), smallSVMDirectory, pipelineSettings.getThreadCount());
+					}
+					finally
+					{
+						textToSVM.setFusedSVMToSmallSVM(null);
+					}
+					
+					//The map is saved beside the model, just as the remap stage of the two pass pipeline saves it
+					svmToSmallSVM.largeToSmallHashMapFile = new File(modelDirectory, svmToSmallSVM.largeToSmallHashMapFile.getName());
+					svmToSmallSVM.saveMap();
+				}
+			});
+		}
+		else
+		{
+			stageScheduler.addStage(TextToSVM.SVM_DIR_NAME, newSVMStage(textToSVM, textDirectory, maxGap, featureType, modelNumber, modelDirectory, pipelineSettings, TextToSVM.SVM_DIR_NAME));
+			addRemapStage(stageScheduler, SVMToSmallSVM.SMALL_SVM_DIR_NAME, TextToSVM.SVM_DIR_NAME, svmToSmallSVM, modelDirectory, pipelineSettings);
+		}
+		
+		addSliceStages(stageScheduler, "", SVMToSmallSVM.SMALL_SVM_DIR_NAME, modelDirectory, pipelineSettings);
+		
+		stageScheduler.run();
+	}
+	
+	/**
+	 * Runs the pipeline for several feature types at once.  The text is lexed once for every feature type that
+	 * is out of date, see TextToSVM.processFiles(File, int[], FeatureTypes[], String[], String[], File[], int), and
+	 * each feature type then has its own model directory, cmph directory, SVMToSmallSVM, remap stage and slice 
+	 * stages, exactly as if it had been run on its own with modelNumber.  featureTypes[k] is made with maxGaps[k]
+	 * and remapped by svmToSmallSVMs[k], and each SVMToSmallSVM must be its own object.  The fused mode holds the
+	 * map of one feature type, so it is not offered here.
+	 * 
+	 * A feature type may be given more than once with different maxGaps to sweep the gap.  Each maxGap then goes
+	 * to its own model directory, see modelDirectoryFor, and the OSBs of every maxGap come from one pass at the largest.
+	 */
+	public static void prepareTextForSVM(File corpusDirectory, final TextToSVM textToSVM, SVMToSmallSVM[] svmToSmallSVMs, int[] maxGaps, FeatureTypes[] featureTypes, int modelNumber, final PipelineSettings pipelineSettings) throws FileNotFoundException, IOException
+	{
+		final File textDirectory 				= new File(corpusDirectory, TextToSVM.TEXT_DIR_NAME);
+		final CheckpointedStage[] svmStages 	= new CheckpointedStage[featureTypes.length];
+		final FeatureTypes[] finalFeatureTypes = featureTypes;
+		final int[] finalMaxGaps 				= maxGaps;
+		final File[] modelDirectories 		= new File[featureTypes.length];
+		final String[] prefixes 					= new String[featureTypes.length];
+		StageScheduler stageScheduler 			= new StageScheduler(pipelineSettings.getStageThreads(), pipelineSettings.getStageRetries());
+		boolean gapSweep 							= false;
+		
+		for (int k = 1; k < maxGaps.length; k++)
+		{
+			gapSweep = gapSweep || maxGaps[k] != maxGaps[0];
+		}
+		
+		for (int k = 0; k < featureTypes.length; k++)
+		{
+			modelDirectories[k] 	= modelDirectoryFor(corpusDirectory, featureTypes[k], modelNumber, maxGaps[k], gapSweep);
+			prefixes[k] 				= featureTypes[k] + FILE_DELIM + modelDirectories[k].getName() + " ";
+			svmStages[k] 			= newSVMStage(textToSVM, textDirectory, maxGaps[k], featureTypes[k], modelNumber, modelDirectories[k], pipelineSettings, prefixes[k] + TextToSVM.SVM_DIR_NAME);
+			
+			prepareRemap(svmToSmallSVMs[k], modelDirectories[k], false, pipelineSettings.isDenseRemap());
+		}
+		
+		//One pass over the text for every feature type whose svmFiles are out of date
+		stageScheduler.addStage(TextToSVM.SVM_DIR_NAME, new Callable<Void>()
+		{
+			public Void call() throws IOException
+			{
+				Vector<Integer> outOfDate = new Vector<Integer>();
+				StageStamp[] stageStamps = new StageStamp[svmStages.length];
+				FeatureTypes[] featureTypes;
+				int[] maxGaps;
+				String[] keyFileNames;
+				String[] signatureFileNames;
+				File[] svmDirs;
+				int k;
+				
+				for (int i = 0; i < svmStages.length; i++)
+				{
+					stageStamps[i] = svmStages[i].checkInputs();
+					
+					if (stageStamps[i] != null)
+					{
+						outOfDate.add(i);
+					}
+				}
+				
+				if (outOfDate.isEmpty())
+				{
+					return null;
+				}
+				
+				featureTypes 			= new FeatureTypes[outOfDate.size()];
+				maxGaps 					= new int[outOfDate.size()];
+				keyFileNames 			= new String[outOfDate.size()];
+				signatureFileNames 	= new String[outOfDate.size()];
+				svmDirs 					= new File[outOfDate.size()];
+				
+				for (int i = 0; i < outOfDate.size(); i++)
+				{
+					k 								= outOfDate.get(i);
+					featureTypes[i] 			= finalFeatureTypes[k];
+					maxGaps[i] 					= finalMaxGaps[k];
+					keyFileNames[i] 			= new File(modelDirectories[k], TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.KEY_FILE_NAME).getAbsolutePath();
+					signatureFileNames[i] 	= new File(modelDirectories[k], TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.SIGNATURE_FILE_NAME).getAbsolutePath();
+					svmDirs[i] 				= new File(modelDirectories[k], TextToSVM.SVM_DIR_NAME);
+				}
+				
+				textToSVM.processFiles(textDirectory, maxGaps, featureTypes, keyFileNames, signatureFileNames, svmDirs, pipelineSettings.getThreadCount());
+				
+				for (int i = 0; i < outOfDate.size(); i++)
+				{
+					svmStages[outOfDate.get(i)].finish(stageStamps[outOfDate.get(i)]);
+				}
+				
+				return null;
+			}
+		});
+		
+		for (int k = 0; k < featureTypes.length; k++)
+		{
+			addRemapStage(stageScheduler, prefixes[k] + SVMToSmallSVM.SMALL_SVM_DIR_NAME, TextToSVM.SVM_DIR_NAME, svmToSmallSVMs[k], modelDirectories[k], pipelineSettings);
+			addSliceStages(stageScheduler, prefixes[k], prefixes[k] + SVMToSmallSVM.SMALL_SVM_DIR_NAME, modelDirectories[k], pipelineSettings);
+		}
+		
+		stageScheduler.run();
+	}
+	
+	/**
+	 * Finds the model directory of a feature type.  In a gap sweep each maxGap of a feature type that uses
+	 * maxGap is its own model, named modelNumber + GAP_MODEL_DELIM + maxGap, such as 0-gap3, with its own cmph
+	 * directory.  Otherwise the model is named modelNumber.
+	 * 
+	 * @param corpusDirectory directory holding the text directory
+	 * @param featureType type of feature the model is made of
+	 * @param modelNumber number of the model
+	 * @param maxGap maxGap the features are made with
+	 * @param gapSweep true if more than one maxGap is being made
+	 * @return the model directory
+	 */
+	public static File modelDirectoryFor(File corpusDirectory, FeatureTypes featureType, int modelNumber, int maxGap, boolean gapSweep)
+	{
+		String modelName = Integer.toString(modelNumber);
+		
+		//NGrams have a fixed distance and ignore maxGap
+		if (gapSweep && featureType.distance() == 0)
+		{
+			modelName = modelName + GAP_MODEL_DELIM + maxGap;
+		}
 		
-		textToSVM.processFiles(textDirectory, nCrossValidation, featureType, keyFile.getAbsolutePath(), signatureFile.getAbsolutePath(), largeSVMDirectory);
+		return new File(new File(corpusDirectory, featureType.toString()), modelName);
+	}
+	
+	/**
+	 * Gets svmToSmallSVM ready to remap the model in modelDirectory.
+	 */
+	private static void prepareRemap(SVMToSmallSVM svmToSmallSVM, File modelDirectory, boolean fused, boolean denseRemap) throws FileNotFoundException, IOException
+	{
+		//An incremental run carries on from the map the earlier runs saved beside the model
+		if (svmToSmallSVM.isIncremental() && !fused && !svmToSmallSVM.isMappedRemap())
+		{
+			svmToSmallSVM.largeToSmallHashMapFile = new File(modelDirectory, svmToSmallSVM.largeToSmallHashMapFile.getName());
+			
+			try
+			{
+				svmToSmallSVM.initlializeLargeToSmallHashMap(svmToSmallSVM.largeToSmallHashMapFile);
+			}
+			catch (ClassNotFoundException e)
+			{
+				throw new IOException(svmToSmallSVM.largeToSmallHashMapFile + " is not a remap table", e);
+			}
+		}
 		
-		SVMToSmallSVM svmToSmallSVM = new SVMToSmallSVM();
+		if (denseRemap)
+		{
+			svmToSmallSVM.setDenseRemap(new File(modelDirectory, TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.KEY_FILE_NAME));
+		}
+	}
+	
+	/**
+	 * Makes the stage that turns the text into the svmFiles of the model in modelDirectory.
+	 */
+	private static CheckpointedStage newSVMStage(final TextToSVM textToSVM, final File textDirectory, final int maxGap, final FeatureTypes featureType, final int modelNumber, File modelDirectory, final PipelineSettings pipelineSettings, String stageName)
+	{
+		final File largeSVMDirectory 	= new File(modelDirectory, TextToSVM.SVM_DIR_NAME);
+		final File keyFile 					= new File(modelDirectory, TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.KEY_FILE_NAME);
+		final File signatureFile 			= new File(modelDirectory, TextToSVM.CMPH_DIR_NAME + FILE_DELIM + TextToSVM.SIGNATURE_FILE_NAME);
 		
-		svmToSmallSVM.processLargeSVMDirectory(largeSVMDirectory);
+		return new CheckpointedStage(stageName, stampFileFor(modelDirectory, TextToSVM.SVM_DIR_NAME), largeSVMDirectory)
+		{
+			protected void addInputs(StageStamp stageStamp)
+			{
+				addTextInputs(stageStamp, textDirectory, keyFile, signatureFile, featureType, maxGap, modelNumber);
+				textToSVM.addSettings(stageStamp);
+			}
+			
+			protected void runStage() throws IOException
+			{
+				textToSVM.processFiles(textDirectory, maxGap, featureType, keyFile.getAbsolutePath(), signatureFile.getAbsolutePath(), largeSVMDirectory, pipelineSettings.getThreadCount());
+			}
+		};
+	}
+	
+	/**
+	 * Adds the stage that remaps the svmFiles of the model in modelDirectory into its smallSVMFiles.
+	 */
+	private static void addRemapStage(StageScheduler stageScheduler, String stageName, String svmStage, final SVMToSmallSVM svmToSmallSVM, final File modelDirectory, PipelineSettings pipelineSettings)
+	{
+		final int threadCount 				= pipelineSettings.getThreadCount();
+		final boolean deterministicRemap 	= pipelineSettings.isDeterministicRemap();
+		final File largeSVMDirectory 	= new File(modelDirectory, TextToSVM.SVM_DIR_NAME);
+		final File smallSVMDirectory 	= new File(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME);
+		final File svmStampFile 			= stampFileFor(modelDirectory, TextToSVM.SVM_DIR_NAME);
 		
-		File smallSVMDirectory = new File(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME);
+		stageScheduler.addStage(stageName, new CheckpointedStage(stageName, stampFileFor(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME), smallSVMDirectory)
+		{
+			protected void addInputs(StageStamp stageStamp) throws IOException
+			{
+				stageStamp.addStamp(TextToSVM.SVM_DIR_NAME, svmStampFile);
+				stageStamp.addParameter("fused", Boolean.FALSE);
+				stageStamp.addParameter("deterministicRemap", deterministicRemap || threadCount < 2);
+				svmToSmallSVM.addSettings(stageStamp);
+			}
+			
+			protected void runStage() throws IOException
+			{
+				if (svmToSmallSVM.isIncremental())
+				{
+					svmToSmallSVM.processLargeSVMDirectoryIncremental(largeSVMDirectory, smallSVMDirectory, threadCount, deterministicRemap);
+				}
+				else
+				{
+					//Single threaded or not, the map is saved beside the model so an incremental run can carry on from it
+					svmToSmallSVM.largeToSmallHashMapFile = new File(modelDirectory, svmToSmallSVM.largeToSmallHashMapFile.getName());
+					svmToSmallSVM.processLargeSVMDirectory(largeSVMDirectory, smallSVMDirectory, threadCount, deterministicRemap);
+				}
+			}
+		}, svmStage);
+	}
+	
+	/**
+	 * Adds a stage for every group type and group size of slices of the smallSVMFiles of the model in modelDirectory.
+	 * With inMemoryFolds there is instead a stage for every group size, which writes the folds of FoldBuilder.  If
+	 * liblinearParameter is not null, there is also a stage for every group size that trains and predicts its folds
+	 * with a LibLinearFoldTrainer and writes the ConfusionMatrix of all of them.  The first of these stages to run
+	 * loads smallSVMFiles into an SVMDataset, and the rest share it.  A liblinearParameter is only allowed with
+	 * inMemoryFolds, since LibLinearFoldTrainer predicts the folds of FoldBuilder, which are not cut the same way as
+	 * the slices GroupAndSlice writes, so its predictions would not match the slices on disk.
+	 */
+	private static void addSliceStages(StageScheduler stageScheduler, String prefix, String smallSVMStage, File modelDirectory, PipelineSettings pipelineSettings)
+	{
+		int[] groupSizes 						= pipelineSettings.getGroupSizes();
+		final int titleDigits 				= pipelineSettings.getTitleDigits();
+		final int groupDigits 				= pipelineSettings.getGroupDigits();
+		final int nCrossValidation 		= pipelineSettings.getNCrossValidation();
+		final int threadCount 				= pipelineSettings.getThreadCount();
+		final Parameter liblinearParameter = pipelineSettings.getLiblinearParameter();
+		final File smallSVMDirectory 	= new File(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME);
+		final File smallSVMStampFile 	= stampFileFor(modelDirectory, SVMToSmallSVM.SMALL_SVM_DIR_NAME);
+		final FoldBuilder[] foldBuilder = new FoldBuilder[1];
+		String stageName;
 		
 		//File sliceDirectory;
 		
-		for (GroupTypes groupType:GroupTypes.values())
+		if (liblinearParameter != null && !pipelineSettings.isInMemoryFolds())
+		{
+			throw new IllegalArgumentException("A liblinearParameter needs inMemoryFolds, it predicts the folds of FoldBuilder");
+		}
+		
+		if (pipelineSettings.isInMemoryFolds())
+		{
+			for (int i = 0; i < groupSizes.length; i++)
+			{
+				final int groupSize = groupSizes[i];
+				stageName = "folds-" + groupSize;
+				
+				stageScheduler.addStage(prefix + stageName, new CheckpointedStage(prefix + stageName, stampFileFor(modelDirectory, stageName), FoldBuilder.foldDirectoryFor(smallSVMDirectory, groupSize, nCrossValidation))
+				{
+					protected void addInputs(StageStamp stageStamp) throws IOException
+					{
+						stageStamp.addStamp(SVMToSmallSVM.SMALL_SVM_DIR_NAME, smallSVMStampFile);
+						stageStamp.addParameter("groupSize", groupSize);
+						stageStamp.addParameter("groupDigits", groupDigits);
+						stageStamp.addParameter("nCrossValidation", nCrossValidation);
+					}
+					
+					protected void runStage() throws IOException
+					{
+						loadFoldBuilder(foldBuilder, smallSVMDirectory, nCrossValidation).writeFolds(smallSVMDirectory, groupSize, groupDigits);
+					}
+				}, smallSVMStage);
+			}
+		}
+		else
+		{
+			//Each group type and size writes its own slice directory, so they only wait on smallSVMFiles
+			for (final GroupTypes groupType:GroupTypes.values())
+				for (int i = 0; i < groupSizes.length; i++)
+				{
+					final int groupSize = groupSizes[i];
+					stageName = "slices-" + groupType + "-" + groupSize;
+				
+					stageScheduler.addStage(prefix + stageName, new CheckpointedStage(prefix + stageName, stampFileFor(modelDirectory, stageName), new File(new File(smallSVMDirectory, groupType.dirName()), Integer.toString(groupSize)))
+					{
+						protected void addInputs(StageStamp stageStamp) throws IOException
+						{
+							stageStamp.addStamp(SVMToSmallSVM.SMALL_SVM_DIR_NAME, smallSVMStampFile);
+							stageStamp.addParameter("groupType", groupType);
+							stageStamp.addParameter("groupSize", groupSize);
+							stageStamp.addParameter("titleDigits", titleDigits);
+							stageStamp.addParameter("nCrossValidation", nCrossValidation);
+						}
+					
+						protected void runStage() throws IOException
+						{
+							GroupAndSlice.groupAndSlicePrep(smallSVMDirectory, groupType, groupSize, titleDigits, nCrossValidation);
+							//sliceDirectory = new File(smallSVMDirectory, groupType.dirName() + FILE_DELIM + groupSizes[i] + FILE_DELIM + nCrossValidation);
+							//LibLinearManager.dummyPredictDirectory(sliceDirectory);
+							//MergeAndAnalyze.makeMergeAndAnalysisFiles(sliceDirectory);
+						}
+					}, smallSVMStage);
+				}
+		}
+		
+		if (liblinearParameter != null)
+		{
+			//Predictions are written into the fold directories but need only smallSVMFiles, not the fold files
 			for (int i = 0; i < groupSizes.length; i++)
 			{
-				//REMINDER !!!!!!This is NOT the way we'd chain this for a qsub job!!!!!
-				GroupAndSlice.groupAndSlicePrep(smallSVMDirectory, groupType, groupSizes[i], titleDigits, nCrossValidation);
-				//sliceDirectory = new File(smallSVMDirectory, groupType.dirName() + FILE_DELIM + groupSizes[i] + FILE_DELIM + nCrossValidation);
-				//LibLinearManager.dummyPredictDirectory(sliceDirectory);
-				//MergeAndAnalyze.makeMergeAndAnalysisFiles(sliceDirectory);
+				final int groupSize = groupSizes[i];
+				final String predictStageName = prefix + "predict-" + groupSize;
+				
+				stageScheduler.addStage(predictStageName, new CheckpointedStage(predictStageName, stampFileFor(modelDirectory, "predict-" + groupSize), new File(FoldBuilder.foldDirectoryFor(smallSVMDirectory, groupSize, nCrossValidation), ConfusionMatrix.FILE_NAME))
+				{
+					protected void addInputs(StageStamp stageStamp) throws IOException
+					{
+						stageStamp.addStamp(SVMToSmallSVM.SMALL_SVM_DIR_NAME, smallSVMStampFile);
+						stageStamp.addParameter("groupSize", groupSize);
+						stageStamp.addParameter("groupDigits", groupDigits);
+						stageStamp.addParameter("nCrossValidation", nCrossValidation);
+						stageStamp.addParameter("solverType", liblinearParameter.getSolverType());
+						stageStamp.addParameter("cost", liblinearParameter.getC());
+						stageStamp.addParameter("epsilon", liblinearParameter.getEps());
+					}
+					
+					protected void runStage() throws IOException
+					{
+						ConfusionMatrix confusionMatrix = new LibLinearFoldTrainer(loadFoldBuilder(foldBuilder, smallSVMDirectory, nCrossValidation), liblinearParameter).trainAndPredict(smallSVMDirectory, groupSize, groupDigits, threadCount);
+						
+						confusionMatrix.write(new File(FoldBuilder.foldDirectoryFor(smallSVMDirectory, groupSize, nCrossValidation), ConfusionMatrix.FILE_NAME));
+						System.out.println(predictStageName + " accuracy " + confusionMatrix.getAccuracy() + ", macro F1 " + confusionMatrix.getMacroF1() + " over " + confusionMatrix.getTotal() + " utterances");
+					}
+				}, smallSVMStage);
+			}
+		}
+	}
+	
+	/**
+	 * @return the FoldBuilder in foldBuilder[0], first loading smallSVMDirectory into it if no stage has yet
+	 */
+	private static FoldBuilder loadFoldBuilder(FoldBuilder[] foldBuilder, File smallSVMDirectory, int nCrossValidation) throws IOException
+	{
+		synchronized (foldBuilder)
+		{
+			if (foldBuilder[0] == null)
+			{
+				foldBuilder[0] = new FoldBuilder(SVMDataset.load(smallSVMDirectory), nCrossValidation);
 			}
+			
+			return foldBuilder[0];
+		}
+	}
+	
+	/**
+	 * @return the file the stamp of stageName is kept in, in the stageStamps directory of the model in modelDirectory
+	 */
+	private static File stampFileFor(File modelDirectory, String stageName)
+	{
+		return new File(new File(modelDirectory, StageStamp.STAMP_DIR_NAME), stageName + StageStamp.STAMP_SUFFIX);
+	}
+	
+	/**
+	 * Records the inputs of the stage that reads the text: every text file, keys.mph, the signature file and the
+	 * parameters of the features made from them.
+	 */
+	private static void addTextInputs(StageStamp stageStamp, File textDirectory, File keyFile, File signatureFile, FeatureTypes featureType, int maxGap, int modelNumber)
+	{
+		stageStamp.addDirectory(textDirectory);
+		stageStamp.addFile(keyFile);
+		stageStamp.addFile(signatureFile);
+		stageStamp.addParameter("featureType", featureType);
+		stageStamp.addParameter("maxGap", maxGap);
+		stageStamp.addParameter("modelNumber", modelNumber);
 	}
 	
 	/**
 	 * --parent
 	 * --gap
+	 * --gaps several maxGaps, each made into its own model (such as 0-gap3) from one pass over the text
 	 *  --featuretype
+	 * --featuretypes several feature types, each made from one pass over the text into its own model
 	 * --groupsize
 	 * --titledigits
+	 * --groupdigits number of digits group numbers are padded to in the group directories of --inmemoryfolds
 	 * --slices number of slices in cross validation
+	 * --threads number of text files (and svm files) to process at the same time
+	 * --stagethreads number of pipeline stages, such as the slices of each group size, to run at the same time
+	 * --stageretries number of times a failed pipeline stage is run again
+	 * --fastremap let parallel remapping give out small values in any order
+	 * --denseremap remap through an int[] sized to the number of keys in keys.mph
+	 * --mappedremap memory map this remap table file and append new small values to it
+	 * --remaporder FIRST_SEEN or FREQUENCY, the order small feature values are given out in
+	 * --incremental only remap the svm files that are new or changed since the last run.  With --mindf,
+	 *  --mintotalcount, --maxfeatures or --remaporder FREQUENCY, the counts are taken over the changed files only,
+	 *  so features are pruned and ordered by their frequency in those files, not in the whole corpus
+	 * --mindf prune features found on fewer lines than this
+	 * --mintotalcount prune features whose counts add up to less than this
+	 * --maxfeatures keep at most this many of the most frequent features (0 for no limit)
+	 * --cachesize number of features each feature index cache holds (0 for no cache)
+	 * --cachepolicy LEAST_RECENTLY_USED or FIRST_IN_FIRST_OUT
+	 * --outputbuffer number of bytes buffered for each SVM file written
+	 * --svmformat LIBSVM or BINARY for the large SVM files
+	 * --fused write smallSVMFiles straight from the text without writing svmFiles, not with --remaporder FREQUENCY or pruning
+	 * --inmemoryfolds make the slices of every group size from one in memory copy of smallSVMFiles
+	 * --liblinear train and predict every slice in this process, only with --inmemoryfolds
+	 * --solver liblinear SolverType to train with, such as L2R_L2LOSS_SVC_DUAL
+	 * --cost liblinear cost (C) of constraint violation
+	 * --epsilon liblinear tolerance of the stopping criterion
+	 * --mappedinput memory map the text files instead of reading them through a FileReader
+	 * --charset Charset the text files were written in, such as UTF-8
 	 * 
 	 * @param args
 	 * @throws IOException 
@@ -86,9 +546,28 @@ public class CorpusSVMTester
 		int 						maxGap					= 3;
 		FeatureTypes 	featureType			= FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM;
 		int[] 					groupSizes			= {5, 10, 25, 50, 75, 150};
-		int 						titleDigits				= 3;
-		int 						nCrossValidation = 5;
 		int						modelNumber		= 0;
+		int						cacheSize				= 0;
+		CacheEvictionPolicy cachePolicy	= CacheEvictionPolicy.LEAST_RECENTLY_USED;
+		TextToSVM			textToSVM			= new TextToSVM();
+		PipelineSettings	pipelineSettings	= new PipelineSettings();
+		FeatureTypes[]	featureTypes		= null;
+		int[]					maxGaps				= null;
+		Vector<FeatureTypes> modelFeatureTypes = new Vector<FeatureTypes>();
+		Vector<Integer>	modelMaxGaps		= new Vector<Integer>();
+		File						mappedRemapFile	= null;
+		RemapOrder			remapOrder			= RemapOrder.FIRST_SEEN;
+		boolean				incremental			= false;
+		SVMToSmallSVM[]	svmToSmallSVMs;
+		boolean				liblinear				= false;
+		SolverType			solverType			= SolverType.L2R_L2LOSS_SVC_DUAL;
+		double					cost						= 1;
+		double					epsilon					= 0.1;
+		int						minDocumentFrequency = 1;
+		int						minTotalCount		= 1;
+		int						maxFeatures			= 0;
+		boolean				mappedInput		= false;
+		Charset				inputCharset		= Charset.defaultCharset();
 		
 		//Initialize the count for groupSizes
 		int						groupSizesCount	= 0;
@@ -110,6 +589,42 @@ public class CorpusSVMTester
 				featureType = FeatureTypes.valueOf(args[i + 1]);
 				i++;
 			}
+			else if(args[i].equalsIgnoreCase("--gaps"))
+			{
+				int j = i + 1;
+				
+				while ((j < args.length) && (!args[j].startsWith("--")))
+				{
+					j++;
+				}
+				
+				maxGaps = new int[j - i - 1];
+				
+				for (int k = 0; k < maxGaps.length; k++)
+				{
+					maxGaps[k] = Integer.parseInt(args[i + 1 + k]);
+				}
+				
+				i = j - 1;
+			}
+			else if(args[i].equalsIgnoreCase("--featuretypes"))
+			{
+				int j = i + 1;
+				
+				while ((j < args.length) && (!args[j].startsWith("--")))
+				{
+					j++;
+				}
+				
+				featureTypes = new FeatureTypes[j - i - 1];
+				
+				for (int k = 0; k < featureTypes.length; k++)
+				{
+					featureTypes[k] = FeatureTypes.valueOf(args[i + 1 + k]);
+				}
+				
+				i = j - 1;
+			}
 			else if(args[i].equalsIgnoreCase("--groupsizes"))
 			{
 				i++;
@@ -130,12 +645,17 @@ public class CorpusSVMTester
 			}
 			else if(args[i].equalsIgnoreCase("--titledigits"))
 			{
-				titleDigits = Integer.parseInt(args[i+1]);
+				pipelineSettings.setTitleDigits(Integer.parseInt(args[i+1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--groupdigits"))
+			{
+				pipelineSettings.setGroupDigits(Integer.parseInt(args[i+1]));
 				i++;
 			}
 			else if(args[i].equalsIgnoreCase("--slices"))
 			{
-				nCrossValidation = Integer.parseInt(args[i+1]);
+				pipelineSettings.setNCrossValidation(Integer.parseInt(args[i+1]));
 				i++;
 			}
 			else if(args[i].equalsIgnoreCase("--modelNumber"))
@@ -143,8 +663,195 @@ public class CorpusSVMTester
 				modelNumber = Integer.parseInt(args[i+1]);
 				i++;
 			}
+			else if(args[i].equalsIgnoreCase("--threads"))
+			{
+				pipelineSettings.setThreadCount(Integer.parseInt(args[i+1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--stagethreads"))
+			{
+				pipelineSettings.setStageThreads(Integer.parseInt(args[i+1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--stageretries"))
+			{
+				pipelineSettings.setStageRetries(Integer.parseInt(args[i+1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--cachesize"))
+			{
+				cacheSize = Integer.parseInt(args[i+1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--cachepolicy"))
+			{
+				cachePolicy = CacheEvictionPolicy.valueOf(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--outputbuffer"))
+			{
+				textToSVM.setOutputBufferSize(Integer.parseInt(args[i + 1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--svmformat"))
+			{
+				textToSVM.setOutputFormat(SVMFormat.valueOf(args[i + 1]));
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--fused"))
+			{
+				pipelineSettings.setFused(true);
+			}
+			else if(args[i].equalsIgnoreCase("--inmemoryfolds"))
+			{
+				pipelineSettings.setInMemoryFolds(true);
+			}
+			else if(args[i].equalsIgnoreCase("--liblinear"))
+			{
+				liblinear = true;
+			}
+			else if(args[i].equalsIgnoreCase("--solver"))
+			{
+				solverType = SolverType.valueOf(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--cost"))
+			{
+				cost = Double.parseDouble(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--epsilon"))
+			{
+				epsilon = Double.parseDouble(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--fastremap"))
+			{
+				pipelineSettings.setDeterministicRemap(false);
+			}
+			else if(args[i].equalsIgnoreCase("--denseremap"))
+			{
+				pipelineSettings.setDenseRemap(true);
+			}
+			else if(args[i].equalsIgnoreCase("--mappedremap"))
+			{
+				mappedRemapFile = new File(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--remaporder"))
+			{
+				remapOrder = RemapOrder.valueOf(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--incremental"))
+			{
+				incremental = true;
+			}
+			else if(args[i].equalsIgnoreCase("--mindf"))
+			{
+				minDocumentFrequency = Integer.parseInt(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--mintotalcount"))
+			{
+				minTotalCount = Integer.parseInt(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--maxfeatures"))
+			{
+				maxFeatures = Integer.parseInt(args[i + 1]);
+				i++;
+			}
+			else if(args[i].equalsIgnoreCase("--mappedinput"))
+			{
+				mappedInput = true;
+			}
+			else if(args[i].equalsIgnoreCase("--charset"))
+			{
+				inputCharset = Charset.forName(args[i + 1]);
+				i++;
+			}
+		}
+		
+		textToSVM.setFeatureIndexCache(cacheSize, cachePolicy);
+		textToSVM.setInputMode(mappedInput, inputCharset);
+		
+		pipelineSettings.setGroupSizes(groupSizes);
+		
+		if (liblinear && !pipelineSettings.isInMemoryFolds())
+		{
+			System.out.println("--liblinear predicts the folds made by --inmemoryfolds, so it cannot be used without it");
+			return;
+		}
+		
+		if (pipelineSettings.isFused() && (remapOrder == RemapOrder.FREQUENCY || minDocumentFrequency > 1 || minTotalCount > 1 || maxFeatures > 0))
+		{
+			System.out.println("--fused never counts the corpus, so it cannot be used with --remaporder FREQUENCY, --mindf, --mintotalcount or --maxfeatures");
+			return;
+		}
+		
+		if (liblinear)
+		{
+			pipelineSettings.setLiblinearParameter(new Parameter(solverType, cost, epsilon));
+		}
+		
+		if (featureTypes == null || featureTypes.length == 0)
+		{
+			featureTypes = new FeatureTypes[] {featureType};
+		}
+		
+		if (maxGaps == null || maxGaps.length == 0)
+		{
+			maxGaps = new int[] {maxGap};
+		}
+		
+		//Each feature type that uses maxGap is made once for every maxGap
+		for (int k = 0; k < featureTypes.length; k++)
+		{
+			for (int g = 0; g < (featureTypes[k].distance() == 0 ? maxGaps.length : 1); g++)
+			{
+				modelFeatureTypes.add(featureTypes[k]);
+				modelMaxGaps.add(maxGaps[g]);
+			}
+		}
+		
+		if (modelFeatureTypes.size() > 1 && (pipelineSettings.isFused() || mappedRemapFile != null))
+		{
+			System.out.println("--fused and --mappedremap keep the map of one model, so they cannot be used with more than one feature type or gap");
+			return;
+		}
+		
+		//Each model is remapped through its own map
+		svmToSmallSVMs = new SVMToSmallSVM[modelFeatureTypes.size()];
+		
+		for (int k = 0; k < svmToSmallSVMs.length; k++)
+		{
+			svmToSmallSVMs[k] = new SVMToSmallSVM();
+			svmToSmallSVMs[k].setRemapOrder(remapOrder);
+			svmToSmallSVMs[k].setIncremental(incremental);
+			svmToSmallSVMs[k].setPruning(minDocumentFrequency, minTotalCount, maxFeatures);
+			
+			if (mappedRemapFile != null)
+			{
+				svmToSmallSVMs[k].setMappedRemap(mappedRemapFile);
+			}
+		}
+		
+		if (svmToSmallSVMs.length == 1)
+		{
+			prepareTextForSVM(corpusDirectory, textToSVM, svmToSmallSVMs[0], modelMaxGaps.get(0), modelFeatureTypes.get(0), modelNumber, pipelineSettings);
+		}
+		else
+		{
+			maxGaps = new int[modelMaxGaps.size()];
+			
+			for (int k = 0; k < maxGaps.length; k++)
+			{
+				maxGaps[k] = modelMaxGaps.get(k);
+			}
+			
+			prepareTextForSVM(corpusDirectory, textToSVM, svmToSmallSVMs, maxGaps, modelFeatureTypes.toArray(new FeatureTypes[0]), modelNumber, pipelineSettings);
 		}
-		prepareTextForSVM(corpusDirectory, maxGap, featureType, modelNumber, groupSizes, titleDigits, nCrossValidation);
 	}
 
 }
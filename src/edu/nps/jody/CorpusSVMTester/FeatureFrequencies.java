@@ -0,0 +1,273 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/**
+ * Counts how often each large (minimum perfect hash) feature shows up in a set of large SVM files.  For each
+ * feature it keeps the document frequency, the number of lines (utterances) it appears in, and its total
+ * count, the sum of its counts over every line.  Both libSVM text and binary large SVM files can be counted.
+ * The counts of separate files can be made on separate threads and then added together with add().
+ * 
+ * This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FeatureFrequencies 
+{
+	//Data Members
+	private IntIntHashMap 	documentFrequencies;
+	private IntIntHashMap 	totalCounts;
+	private int 					lineCount;
+	
+	//Constructors
+	/**
+	 * Constructor for an empty FeatureFrequencies.
+	 */
+	public FeatureFrequencies()
+	{
+		documentFrequencies 	= new IntIntHashMap();
+		totalCounts 				= new IntIntHashMap();
+	}
+	
+	//Methods
+	/**
+	 * Counts one appearance of feature on a line.
+	 * 
+	 * @param feature large (minimum perfect hash) feature
+	 * @param count count of feature on the line
+	 */
+	public void addFeature(int feature, int count)
+	{
+		documentFrequencies.increment(feature, 1);
+		totalCounts.increment(feature, count);
+	}
+	
+	/**
+	 * Counts one more line.  Call this once for each line whose features are added.
+	 */
+	public void addLine()
+	{
+		lineCount++;
+	}
+	
+	/**
+	 * Adds every count of other to this one.
+	 * 
+	 * @param other counts to add
+	 */
+	public void add(FeatureFrequencies other)
+	{
+		int[] features = other.documentFrequencies.keysInInsertionOrder();
+		
+		for (int i = 0; i < features.length; i++)
+		{
+			documentFrequencies.increment(features[i], other.getDocumentFrequency(features[i]));
+			totalCounts.increment(features[i], other.getTotalCount(features[i]));
+		}
+		
+		lineCount = lineCount + other.lineCount;
+	}
+	
+	/**
+	 * Counts every line of a large SVM file.  A pair without a count delimiter ends its line, just as it 
+	 * does in SVMToSmallSVM.convert.
+	 * 
+	 * @param largeFile libSVM text or binary large SVM file
+	 * @throws IOException if largeFile cannot be read
+	 */
+	public void addFile(File largeFile) throws IOException
+	{
+		BufferedReader largeBufferedReader;
+		BinarySVMFileReader binarySVMFileReader;
+		StringTokenizer tokenizer;
+		String pair;
+		String line;
+		int delimIndex;
+		int[] features;
+		int[] counts;
+		
+		if (BinarySVMFileReader.isBinarySVMFile(largeFile))
+		{
+			binarySVMFileReader = new BinarySVMFileReader(largeFile);
+			
+			try
+			{
+				while (binarySVMFileReader.next())
+				{
+					features 	= binarySVMFileReader.getFeatures();
+					counts 		= binarySVMFileReader.getCounts();
+					
+					for (int i = 0; i < binarySVMFileReader.getLength(); i++)
+					{
+						addFeature(features[i], counts[i]);
+					}
+					
+					addLine();
+				}
+			}
+			finally
+			{
+				binarySVMFileReader.close();
+			}
+			
+			return;
+		}
+		
+		largeBufferedReader = new BufferedReader(new FileReader(largeFile));
+		
+		try
+		{
+			while ((line = largeBufferedReader.readLine()) != null)
+			{
+				tokenizer = new StringTokenizer(line);
+				
+				//Skip the id of this line
+				if (tokenizer.hasMoreTokens())
+				{
+					tokenizer.nextToken();
+				}
+				
+				while (tokenizer.hasMoreTokens())
+				{
+					pair 			= tokenizer.nextToken();
+					delimIndex 	= pair.indexOf(SVMToSmallSVM.FEATURE_COUNT_DELIM);
+					
+					if (delimIndex < 0)
+					{
+						break;
+					}
+					
+					addFeature(Integer.parseInt(pair.substring(0, delimIndex)), Integer.parseInt(pair.substring(delimIndex + 1)));
+				}
+				
+				addLine();
+			}
+		}
+		finally
+		{
+			largeBufferedReader.close();
+		}
+	}
+	
+	/**
+	 * @param feature large (minimum perfect hash) feature
+	 * @return number of lines feature appears in
+	 */
+	public int getDocumentFrequency(int feature)
+	{
+		return documentFrequencies.get(feature, 0);
+	}
+	
+	/**
+	 * @param feature large (minimum perfect hash) feature
+	 * @return sum of the counts of feature over every line
+	 */
+	public int getTotalCount(int feature)
+	{
+		return totalCounts.get(feature, 0);
+	}
+	
+	/**
+	 * @return number of distinct features counted
+	 */
+	public int getFeatureCount()
+	{
+		return documentFrequencies.size();
+	}
+	
+	/**
+	 * @return number of lines counted
+	 */
+	public int getLineCount()
+	{
+		return lineCount;
+	}
+	
+	/**
+	 * Returns every feature counted, the most frequent first.  Features are ordered by document frequency, then 
+	 * by total count, then by feature value, so the order is the same however the counts were gathered.
+	 * 
+	 * @return every feature counted, in descending order of frequency
+	 */
+	public int[] featuresByFrequency()
+	{
+		int[] features = documentFrequencies.keysInInsertionOrder();
+		long[] keys = new long[features.length];
+		int[] order = new int[features.length];
+		
+		//Sorting on (frequency, position) keys avoids boxing every feature for a Comparator
+		for (int i = 0; i < features.length; i++)
+		{
+			keys[i] = ((long)(Integer.MAX_VALUE - getDocumentFrequency(features[i])) << 32) | i;
+		}
+		
+		Arrays.sort(keys);
+		
+		for (int i = 0; i < features.length; i++)
+		{
+			order[i] = features[(int)keys[i]];
+		}
+		
+		sortTies(order);
+		
+		return order;
+	}
+	
+	/**
+	 * Within each run of features that share a document frequency, sorts by descending total count and then 
+	 * by ascending feature value.
+	 * 
+	 * @param order features in descending order of document frequency
+	 */
+	private void sortTies(int[] order)
+	{
+		int start = 0;
+		int end;
+		long[] keys;
+		
+		while (start < order.length)
+		{
+			end = start + 1;
+			
+			while (end < order.length && getDocumentFrequency(order[end]) == getDocumentFrequency(order[start]))
+			{
+				end++;
+			}
+			
+			if (end - start > 1)
+			{
+				keys = new long[end - start];
+				
+				for (int i = start; i < end; i++)
+				{
+					keys[i - start] = ((long)(Integer.MAX_VALUE - getTotalCount(order[i])) << 32) | (order[i] + 0x80000000L);
+				}
+				
+				Arrays.sort(keys);
+				
+				for (int i = start; i < end; i++)
+				{
+					order[i] = (int)(keys[i - start] - 0x80000000L);
+				}
+			}
+			
+			start = end;
+		}
+	}
+}
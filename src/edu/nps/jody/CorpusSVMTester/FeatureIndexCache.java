@@ -0,0 +1,154 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.nps.jody.HashFinder.MembershipChecker;
+
+/**
+ * A bounded cache that sits in front of MembershipChecker.getIndex.  Each entry maps a feature
+ * instance to its final CHD minimum perfect hash value, after the &lt;UNK&gt; fallback in
+ * TextToSVM.getCHDIndex has been tried, so a feature that turned out not to be a member (-1) is
+ * cached as well and never costs the three MembershipChecker lookups again.  When the cache is full
+ * the entry chosen by its CacheEvictionPolicy is forgotten.
+ * 
+ * Hit, miss and eviction counts are kept so a run can report how well the cache worked.  This class
+ * is not safe to share between threads; give each worker thread its own cache.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FeatureIndexCache 
+{
+	//Data Members
+	private MembershipChecker 					membershipChecker;
+	private LinkedHashMap<String, Integer> 	cacheMap;
+	private CacheEvictionPolicy 				evictionPolicy;
+	private int 										maxEntries;
+	private long 										hits;
+	private long 										misses;
+	private long 										evictions;
+	
+	//Constructors
+	/**
+	 * Sole constructor for FeatureIndexCache.
+	 * 
+	 * @param membershipChecker an object that checks a given instance against a precomputed minimum perfect hash function
+	 * for membership and then against a traditional hash function "signature" for collision detection.
+	 * @param maxEntries largest number of features the cache will hold, must be at least 1
+	 * @param evictionPolicy how to choose the feature to forget when the cache is full
+	 */
+	public FeatureIndexCache(MembershipChecker membershipChecker, int maxEntries, CacheEvictionPolicy evictionPolicy)
+	{
+		if (maxEntries < 1)
+		{
+			throw new IllegalArgumentException("A FeatureIndexCache must hold at least 1 entry, not " + maxEntries);
+		}
+		
+		final int finalMaxEntries = maxEntries;
+		
+		this.membershipChecker 	= membershipChecker;
+		this.maxEntries 				= maxEntries;
+		this.evictionPolicy 			= evictionPolicy;
+		
+		cacheMap = new LinkedHashMap<String, Integer>(Math.min(maxEntries, 1 << 16), 0.75f, evictionPolicy.accessOrder())
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest)
+			{
+				if (size() > finalMaxEntries)
+				{
+					evictions++;
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	//Methods
+	/**
+	 * Finds the CHD minimum perfect hash value of feature, going to the MembershipChecker only if 
+	 * feature is not already in the cache.
+	 * 
+	 * @param feature text instance (unigram, bigram, Gappy Bigram, OSB, etc) to look up
+	 * @return the minimum perfect hash value of the instance, or -1 if the instance is not a member
+	 */
+	public int getIndex(String feature)
+	{
+		Integer index = cacheMap.get(feature);
+		
+		if (index != null)
+		{
+			hits++;
+			return index;
+		}
+		
+		misses++;
+		index = TextToSVM.getCHDIndex(feature, membershipChecker);
+		cacheMap.put(feature, index);
+		
+		return index;
+	}
+	
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+	
+	/**
+	 * @return number of lookups that had to go to the MembershipChecker
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+	
+	/**
+	 * @return number of features forgotten to make room for new ones
+	 */
+	public long getEvictions()
+	{
+		return evictions;
+	}
+	
+	/**
+	 * @return number of features currently held
+	 */
+	public int size()
+	{
+		return cacheMap.size();
+	}
+	
+	/**
+	 * @return largest number of features the cache will hold
+	 */
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	
+	/**
+	 * @return how the cache chooses the feature to forget when it is full
+	 */
+	public CacheEvictionPolicy getEvictionPolicy()
+	{
+		return evictionPolicy;
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * A reusable scratch buffer that FeatureMaker writes each feature instance into, one
+ * after another, instead of concatenating a new String for every feature.  The characters
+ * in the buffer are exactly the characters of the String the feature would have been, so
+ * a FeatureKey can be hashed and compared directly (see FeatureKeyTable) and only turned 
+ * into a String when one is really needed.
+ * 
+ * A FeatureKey handed to a FeatureKeySink is only valid until the sink returns.  This class
+ * is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FeatureKey implements CharSequence
+{
+	//Data Members
+	private static final int 	DEFAULT_CAPACITY = 64;
+	private char[] 					buffer;
+	private int 						length;
+	
+	//Constructors
+	/**
+	 * Sole constructor for FeatureKey.  Creates an empty key.
+	 */
+	public FeatureKey()
+	{
+		buffer = new char[DEFAULT_CAPACITY];
+		length = 0;
+	}
+	
+	//Methods
+	/**
+	 * Empties the key so the next feature can be written.
+	 * 
+	 * @return this FeatureKey
+	 */
+	public FeatureKey clear()
+	{
+		length = 0;
+		return this;
+	}
+	
+	/**
+	 * Shortens the key back to a length it had earlier, such as the length just after the first
+	 * word of a bigram was written, so that prefix does not have to be written again.
+	 * 
+	 * @param newLength new length of the key, no greater than the current length
+	 * @return this FeatureKey
+	 */
+	public FeatureKey setLength(int newLength)
+	{
+		if (newLength < 0 || newLength > length)
+		{
+			throw new IndexOutOfBoundsException("Length " + newLength + " is outside 0 to " + length);
+		}
+		
+		length = newLength;
+		return this;
+	}
+	
+	/**
+	 * Appends every character of string to the key.
+	 * 
+	 * @param string characters to append
+	 * @return this FeatureKey
+	 */
+	public FeatureKey append(String string)
+	{
+		int stringLength = string.length();
+		
+		ensureCapacity(length + stringLength);
+		string.getChars(0, stringLength, buffer, length);
+		length = length + stringLength;
+		
+		return this;
+	}
+	
+	/**
+	 * Appends a single character to the key.
+	 * 
+	 * @param c character to append
+	 * @return this FeatureKey
+	 */
+	public FeatureKey append(char c)
+	{
+		ensureCapacity(length + 1);
+		buffer[length] = c;
+		length++;
+		
+		return this;
+	}
+	
+	/**
+	 * Appends the decimal digits of number to the key without making a String.
+	 * 
+	 * @param number number to append
+	 * @return this FeatureKey
+	 */
+	public FeatureKey append(int number)
+	{
+		if (number < 0)
+		{
+			if (number == Integer.MIN_VALUE)
+			{
+				return append(Integer.toString(number));
+			}
+			
+			append('-');
+			number = -number;
+		}
+		
+		int digits = 1;
+		
+		for (int remaining = number / 10; remaining > 0; remaining = remaining / 10)
+		{
+			digits++;
+		}
+		
+		ensureCapacity(length + digits);
+		
+		for (int i = length + digits - 1; i >= length; i--)
+		{
+			buffer[i] = (char)('0' + (number % 10));
+			number = number / 10;
+		}
+		
+		length = length + digits;
+		
+		return this;
+	}
+	
+	/**
+	 * @return number of characters in the key
+	 */
+	public int length()
+	{
+		return length;
+	}
+	
+	/**
+	 * @param index position of the character wanted
+	 * @return character at index
+	 */
+	public char charAt(int index)
+	{
+		if (index >= length)
+		{
+			throw new IndexOutOfBoundsException("Index " + index + " is past length " + length);
+		}
+		
+		return buffer[index];
+	}
+	
+	/**
+	 * @param start index of the first character, inclusive
+	 * @param end index of the last character, exclusive
+	 * @return a new String of the characters from start to end
+	 */
+	public CharSequence subSequence(int start, int end)
+	{
+		if (end > length)
+		{
+			throw new IndexOutOfBoundsException("End " + end + " is past length " + length);
+		}
+		
+		return new String(buffer, start, end - start);
+	}
+	
+	/**
+	 * Computes the same hash value String.hashCode would compute for the characters in the key, 
+	 * straight from the buffer.
+	 * 
+	 * @return hash value of the characters in the key
+	 */
+	public int contentHash()
+	{
+		int hash = 0;
+		
+		for (int i = 0; i < length; i++)
+		{
+			hash = 31 * hash + buffer[i];
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * @param string String to compare against
+	 * @return true if string has exactly the characters currently in the key
+	 */
+	public boolean contentEquals(String string)
+	{
+		if (string.length() != length)
+		{
+			return false;
+		}
+		
+		for (int i = 0; i < length; i++)
+		{
+			if (string.charAt(i) != buffer[i])
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Makes a new String of the characters currently in the key.
+	 * 
+	 * @return the feature instance as a String
+	 */
+	@Override
+	public String toString()
+	{
+		return new String(buffer, 0, length);
+	}
+	
+	/**
+	 * Grows the buffer so it holds at least capacity characters.
+	 * 
+	 * @param capacity number of characters the buffer must hold
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > buffer.length)
+		{
+			char[] newBuffer = new char[Math.max(capacity, buffer.length << 1)];
+			System.arraycopy(buffer, 0, newBuffer, 0, length);
+			buffer = newBuffer;
+		}
+	}
+}
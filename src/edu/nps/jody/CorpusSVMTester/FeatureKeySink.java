@@ -0,0 +1,30 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * Receives feature instances from FeatureMaker as the characters in a reused FeatureKey
+ * buffer rather than as new Strings.  The FeatureKey is overwritten by the next feature, 
+ * so a sink that needs to keep a feature must copy it (or call toString()) before returning.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public interface FeatureKeySink 
+{
+	/**
+	 * Called once for every feature instance FeatureMaker creates, in the same order
+	 * the features would have appeared in the Vector returned by FeatureMaker.parse.
+	 * 
+	 * @param featureKey buffer holding a single feature instance such as "the quick 2"
+	 */
+	public void addFeature(FeatureKey featureKey);
+}
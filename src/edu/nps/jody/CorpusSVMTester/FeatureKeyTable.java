@@ -0,0 +1,178 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.Arrays;
+
+/**
+ * Turns the characters in a FeatureKey into a String without making a new String every
+ * time the same feature is seen.  The table hashes the FeatureKey buffer directly and compares
+ * it character by character against the Strings already in the table, so a feature that has
+ * been seen before is found without any allocation.  Only the first occurrence of a feature
+ * makes a String, and that String is kept and handed back for every later occurrence.
+ * 
+ * MembershipChecker.getIndex only accepts Strings, so this is where the FeatureKey path
+ * meets the minimum perfect hash lookup.  The table holds at most maxEntries Strings; once it 
+ * is full it is cleared and starts over, so a table can be kept from file to file without growing
+ * past its limit.  This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FeatureKeyTable 
+{
+	//Data Members
+	public static final int 		DEFAULT_MAX_ENTRIES 	= 1 << 20;
+	private static final int 		INITIAL_CAPACITY 			= 1024;
+	private String[] 					strings;
+	private int[] 						hashes;
+	private int 							mask;
+	private int 							size;
+	private int 							maxEntries;
+	
+	//Constructors
+	/**
+	 * Constructor for a FeatureKeyTable that holds up to DEFAULT_MAX_ENTRIES features.
+	 */
+	public FeatureKeyTable()
+	{
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	/**
+	 * Constructor for a FeatureKeyTable that holds up to maxEntries features.
+	 * 
+	 * @param maxEntries largest number of distinct features that will be kept
+	 */
+	public FeatureKeyTable(int maxEntries)
+	{
+		this.maxEntries = maxEntries;
+		allocate(INITIAL_CAPACITY);
+	}
+	
+	//Methods
+	/**
+	 * Finds the String with the same characters as featureKey.  If there is none, a String is made from
+	 * featureKey and kept for the next time, clearing the table first if it is full.
+	 * 
+	 * @param featureKey buffer holding a single feature instance
+	 * @return a String with exactly the characters of featureKey
+	 */
+	public String getString(FeatureKey featureKey)
+	{
+		int hash = featureKey.contentHash();
+		int slot = findSlot(featureKey, hash);
+		String string;
+		
+		if (strings[slot] != null)
+		{
+			return strings[slot];
+		}
+		
+		string = featureKey.toString();
+		
+		if (size >= maxEntries)
+		{
+			clear();
+			slot = findSlot(featureKey, hash);
+		}
+		
+		if (size >= (mask + 1) >> 1)
+		{
+			grow();
+			slot = findSlot(featureKey, hash);
+		}
+		
+		strings[slot] 	= string;
+		hashes[slot] 	= hash;
+		size++;
+		
+		return string;
+	}
+	
+	/**
+	 * Forgets every String in the table, keeping the slots already allocated.
+	 */
+	public void clear()
+	{
+		Arrays.fill(strings, null);
+		size = 0;
+	}
+	
+	/**
+	 * @return number of distinct features kept in the table
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Finds the slot holding the String equal to featureKey or the empty slot where it would go.
+	 * 
+	 * @param featureKey buffer holding a single feature instance
+	 * @param hash contentHash of featureKey
+	 * @return index into strings and hashes
+	 */
+	private int findSlot(FeatureKey featureKey, int hash)
+	{
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		
+		while (strings[slot] != null && (hashes[slot] != hash || !featureKey.contentEquals(strings[slot])))
+		{
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Doubles the number of slots and reinserts every String.
+	 */
+	private void grow()
+	{
+		String[] 	oldStrings 	= strings;
+		int[] 		oldHashes 	= hashes;
+		int slot;
+		
+		allocate(oldStrings.length << 1);
+		
+		for (int i = 0; i < oldStrings.length; i++)
+		{
+			if (oldStrings[i] != null)
+			{
+				slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+				
+				while (strings[slot] != null)
+				{
+					slot = (slot + 1) & mask;
+				}
+				
+				strings[slot] 	= oldStrings[i];
+				hashes[slot] 	= oldHashes[i];
+				size++;
+			}
+		}
+	}
+	
+	/**
+	 * Creates empty arrays for capacity slots.
+	 * 
+	 * @param capacity number of slots, must be a power of 2
+	 */
+	private void allocate(int capacity)
+	{
+		strings 	= new String[capacity];
+		hashes 	= new int[capacity];
+		mask 		= capacity - 1;
+		size 		= 0;
+	}
+}
@@ -10,15 +10,15 @@
  */
 package edu.nps.jody.CorpusSVMTester;
 
-import java.util.Iterator;
 import java.util.Vector;
 
 /**
  * Contains an entry point to several feature making methods such
  * as making N-Grams 1 <= N <= 5, Gappy Bigrams, Tagged Gappy Bigrams,
  * and Orthogonal Sparse Bigrams (OSB).  All these major methods
- * take a Vector of Strings (tokens) as an input and return a Vector of
- * Strings (features).
+ * take a Vector of Strings (tokens) as an input and either return a Vector of
+ * Strings (features) or push each feature to a FeatureSink (as a String) or a
+ * FeatureKeySink (as the characters in a reused FeatureKey) as it is made.
  * @author Jody Grady, CS Masters Student, Naval Postgraduate School
  *
  */
@@ -49,8 +49,8 @@ public class FeatureMaker
 	 * Entry point method for parsing a tokenized text Vector into a feature
 	 * such as a unigram (ONE_GRAM), bigram (TWO_GRAM), orthogonal
 	 * sparse bigram (OSB)(ORTHOGONAL_SPARSE_BIGRAM), etc.  This method
-	 * is simply a switch statement that invokes the appropriate feature
-	 * method as indicated in the parameter, featureType.
+	 * collects every feature into a Vector.  When the features are only going 
+	 * to be read once, the FeatureSink version of parse avoids building the Vector.
 	 * 
 	 * @param tokenizedText a Vector of individual text tokens (words)
 	 * @param maxGap the maximum "distance" in words that this feature should manipulate (ie unigram, bigram, OSB-3, etc)
@@ -59,47 +59,83 @@ public class FeatureMaker
 	 */
 	public static Vector<String> parse(Vector<String> tokenizedText, int maxGap, FeatureTypes featureType)
 	{
-		Vector<String> featureVector = null;
+		final Vector<String> featureVector = new Vector<String>();
+		
+		parse(tokenizedText, maxGap, featureType, new FeatureSink()
+		{
+			public void addFeature(String feature)
+			{
+				featureVector.add(feature);
+			}
+		});
+		
+		return featureVector;
+	}
+	
+	/**
+	 * Entry point method for parsing a tokenized text Vector into a feature
+	 * such as a unigram (ONE_GRAM), bigram (TWO_GRAM), orthogonal
+	 * sparse bigram (OSB)(ORTHOGONAL_SPARSE_BIGRAM), etc.  Each feature is
+	 * handed to featureSink as a String as soon as it is made and is not kept 
+	 * by FeatureMaker.
+	 * 
+	 * @param tokenizedText a Vector of individual text tokens (words)
+	 * @param maxGap the maximum "distance" in words that this feature should manipulate (ie unigram, bigram, OSB-3, etc)
+	 * @param featureType type of feature to create (ie unigram, bigram, gappy bigram, orthogonal sparse bigram, etc)
+	 * @param featureSink consumer that receives every feature instance in order
+	 */
+	public static void parse(Vector<String> tokenizedText, int maxGap, FeatureTypes featureType, final FeatureSink featureSink)
+	{
+		parse(tokenizedText, maxGap, featureType, new FeatureKey(), new FeatureKeySink()
+		{
+			public void addFeature(FeatureKey featureKey)
+			{
+				featureSink.addFeature(featureKey.toString());
+			}
+		});
+	}
+	
+	/**
+	 * Entry point method for parsing a tokenized text Vector into a feature
+	 * such as a unigram (ONE_GRAM), bigram (TWO_GRAM), orthogonal
+	 * sparse bigram (OSB)(ORTHOGONAL_SPARSE_BIGRAM), etc.  This method
+	 * is simply a switch statement that invokes the appropriate feature
+	 * method as indicated in the parameter, featureType.  Each feature is
+	 * written into featureKey and handed to featureKeySink, so no String
+	 * is made for any feature.
+	 * 
+	 * @param tokenizedText a Vector of individual text tokens (words)
+	 * @param maxGap the maximum "distance" in words that this feature should manipulate (ie unigram, bigram, OSB-3, etc)
+	 * @param featureType type of feature to create (ie unigram, bigram, gappy bigram, orthogonal sparse bigram, etc)
+	 * @param featureKey scratch buffer each feature is written into, reused for every feature
+	 * @param featureKeySink consumer that receives every feature instance in order
+	 */
+	public static void parse(Vector<String> tokenizedText, int maxGap, FeatureTypes featureType, FeatureKey featureKey, FeatureKeySink featureKeySink)
+	{
 		switch (featureType)
 		{
 		case ONE_GRAM:
-		{
-			featureVector = parseNGram(tokenizedText, featureType.distance());
-			break;
-		}
 		case TWO_GRAM:
-		{
-			featureVector = parseNGram(tokenizedText, featureType.distance());
-			break;
-		}
 		case THREE_GRAM:
-		{
-			featureVector = parseNGram(tokenizedText, featureType.distance());
-			break;
-		}
 		case FOUR_GRAM:
-		{
-			featureVector = parseNGram(tokenizedText, featureType.distance());
-			break;
-		}
 		case FIVE_GRAM:
 		{
-			featureVector = parseNGram(tokenizedText, featureType.distance());
+			parseNGram(tokenizedText, featureType.distance(), featureKey, featureKeySink);
 			break;
 		}
 		case GAPPY_BIGRAM:
 		{
-			featureVector = parseGB(tokenizedText, maxGap);
+			parseGB(tokenizedText, maxGap, featureKey, featureKeySink);
 			break;
 		}
 		case GAPPY_BIGRAM_TAGGED:
 		{
-			featureVector = parseGBwithTag(tokenizedText, maxGap);
+			parseGBwithTag(tokenizedText, maxGap, featureKey, featureKeySink);
 			break;
 		}
 		case ORTHOGONAL_SPARSE_BIGRAM:
 		{
-			featureVector = parseOSB(tokenizedText, maxGap);
+			parseOSB(tokenizedText, maxGap, featureKey, featureKeySink);
 			break;
 		}
 		default:
@@ -107,90 +143,42 @@ public class FeatureMaker
 			System.out.print("NOT A VALID OPTION");
 		}
 		}
-		
-		return featureVector;
-	}
-	
-	/**
-	 * Concatenate a Vector of Strings into a single String with each String from
-	 * the Vector separated by a space with no leading or trailing spaces
-	 * 
-	 * @param sourceVector Vector of Strings to be concatenated
-	 * @return concated String constructed from all Strings in sourceVector 
-	 *     separated by a space with no leading or trailing spaces
-	 */
-	private static String catVector(Vector<String>sourceVector)
-	{
-		Iterator<String> iterator = sourceVector.iterator();
-		
-		String string = null;
-		
-		while (iterator.hasNext())
-		{
-			string = iterator.next() + " ";
-		}
-		
-		return string.trim();
 	}
 	
-	//FIXME test that a 1 gets a unigram and a 2 gets a bigram, etc
-
 	/**
 	 * Uses String tokens in tokenizedText (words) to create N-Grams and
-	 * then provides all those N-Grams back to the calling method.  A N-Gram
+	 * then provides all those N-Grams to featureKeySink.  A N-Gram
 	 * consists of a "sliding window" of N tokens.  For instance the 2-Grams 
 	 * (bigrams) of "the quick brown fox" are "the quick", "quick brown",
 	 * "brown fox" and the 3-Grams are "the quick brown", "quick brown fox".
 	 * 
  	 * @param tokenizedText a Vector of individual text tokens (words)
 	 * @param maxGap the maximum "distance" in words that this feature should manipulate (ie unigram, bigram, trigram)
-	 * @return Vector of NGrams in the form of Strings
+	 * @param featureKey scratch buffer each NGram is written into
+	 * @param featureKeySink consumer that receives the NGrams
 	 */
-	private static Vector<String> parseNGram(Vector<String> tokenizedText, int maxGap)
+	private static void parseNGram(Vector<String> tokenizedText, int maxGap, FeatureKey featureKey, FeatureKeySink featureKeySink)
 	{
-		//Create Vector of NGrams to be returned
-		Vector<String> NGramsVector = new Vector<String>();
-		Iterator<String> iterator = NGramsVector.iterator();
-		
-		//Create a "fixed size" sliding window to move over the tokenizedText Vector
-		Vector<String> slidingWindow = new Vector<String>();
+		int totalTokens = tokenizedText.size();
 		
-		//Preload the textVector "sliding window"
-		for (int i = 0; i < maxGap; i++)
+		//Slide a fixed size window of maxGap tokens over tokenizedText.  Not enough tokens means no NGrams.
+		for (int i=0; i + maxGap <= totalTokens; i++)
 		{
-			if (iterator.hasNext())
-			{
-				slidingWindow.add(iterator.next());
-			}
-			else
+			featureKey.clear().append(tokenizedText.get(i));
+			
+			for (int j=1; j < maxGap; j++)
 			{
-				//Not enough tokens in tokenizedText to make the required size of NGram, return empty vector
-				return NGramsVector;
+				featureKey.append(' ').append(tokenizedText.get(i + j));
 			}
+			
+			featureKeySink.addFeature(featureKey);
 		}
-		
-		//Initial "sliding window" filled, commit to NGramsVector and then move into processing the rest of tokenizedText
-		NGramsVector.add(catVector(slidingWindow));
-		
-		//Continue moving strings from tokenizedText through the fixed textVector buffer
-		while(iterator.hasNext())
-		{
-			//Pull first word out of "sliding window"
-			slidingWindow.remove(0);
-			//Put next word in tokenizedText into "sliding window"
-			slidingWindow.add(iterator.next());
-			//Add current "sliding window"
-			NGramsVector.add(catVector(slidingWindow));
-		}
-
-		//No more words in tokenizedText, return the NGrams
-		return NGramsVector;
 	}
 	
 	//FIXME add reference to GB paper
 	/**
 	 * Uses String tokens in tokenizedText (words) to create Gappy Bigrams and
-	 * then provides all those Gappy Bigrams back to the calling method.  A Gappy Bigram
+	 * then provides all those Gappy Bigrams to featureKeySink.  A Gappy Bigram
 	 * is a two token combination where the two tokens occur within a given distance. 
 	 * For example: "the quick brown fox jumps over the lazy dog" results in Gappy
 	 * Bigrams (maxGap 3) of "the quick", "the brown", "the fox", "the jumps", "quick brown",
@@ -199,16 +187,20 @@ public class FeatureMaker
 	 * 
  	 * @param tokenizedText a Vector of individual text tokens (words)
 	 * @param maxGap the maximum "distance" in words that this feature should manipulate
-	 * @return Vector of Gappy Bigrams (distance = maxGap) in the form of Strings
+	 * @param featureKey scratch buffer each Gappy Bigram is written into
+	 * @param featureKeySink consumer that receives the Gappy Bigrams (distance = maxGap)
 	 */
-	private static Vector<String> parseGB(Vector<String> tokenizedText, int maxGap)
+	private static void parseGB(Vector<String> tokenizedText, int maxGap, FeatureKey featureKey, FeatureKeySink featureKeySink)
 	{
-		Vector<String> GBVector = new Vector<String>();
 		int totalTokens = tokenizedText.size();
+		int word1Length;
 		
 		//Create loop for word1. Use totalTokens vice words.length to save cycles.
 		for (int i=0; i < totalTokens; i++)
 		{
+			//Write "word1 " once and reuse it for every word2
+			word1Length = featureKey.clear().append(tokenizedText.get(i)).append(' ').length();
+			
 			//Create loop for word2.  Going from 1 to (< maxGap + 1) vice traditional 0 to (< maxGap).
 			for (int j=1; j < maxGap + 1; j++)
 			{
@@ -217,17 +209,16 @@ public class FeatureMaker
 				{
 					break; //Get out of current word2 loop, but continue word1 loop.
 				}			
-					GBVector.add(tokenizedText.get(i) + " " + tokenizedText.get(i + j));
+					featureKey.setLength(word1Length).append(tokenizedText.get(i + j));
+					featureKeySink.addFeature(featureKey);
 			}
 		}
-		
-		return GBVector;
 	}
 	
 	//FIXME add reference to GB paper
 	/**
 	 * Uses String tokens in tokenizedText (words) to create Gappy Bigrams and
-	 * then provides all those Gappy Bigrams back to the calling method.  A Gappy Bigram
+	 * then provides all those Gappy Bigrams to featureKeySink.  A Gappy Bigram
 	 * is a two token combination where the two tokens occur within a given distance. 
 	 * For example: "the quick brown fox jumps over the lazy dog" results in Gappy
 	 * Bigrams (maxGap 3) of "the quick", "the brown", "the fox", "the jumps", "quick brown",
@@ -239,16 +230,20 @@ public class FeatureMaker
 	 * 
  	 * @param tokenizedText a Vector of individual text tokens (words)
 	 * @param maxGap the maximum "distance" in words that this feature should manipulate
-	 * @return Vector of Gappy Bigrams (distance = maxGap) in the form of Strings
+	 * @param featureKey scratch buffer each Gappy Bigram is written into
+	 * @param featureKeySink consumer that receives the Gappy Bigrams (distance = maxGap)
 	 */
-	private static Vector<String> parseGBwithTag(Vector<String> tokenizedText, int maxGap)
+	private static void parseGBwithTag(Vector<String> tokenizedText, int maxGap, FeatureKey featureKey, FeatureKeySink featureKeySink)
 	{
-		Vector<String> GBVector = new Vector<String>();
 		int totalTokens = tokenizedText.size();
+		int word1Length;
 		
 		//Create loop for word1. Use totalTokens vice words.length to save cycles.
 		for (int i=0; i < totalTokens; i++)
 		{
+			//Write "word1 " once and reuse it for every word2
+			word1Length = featureKey.clear().append(tokenizedText.get(i)).append(' ').length();
+			
 			//Create loop for word2.  Going from 1 to (< maxGap + 1) vice traditional 0 to (< maxGap).
 			for (int j=1; j < maxGap + 1; j++)
 			{
@@ -257,17 +252,16 @@ public class FeatureMaker
 				{
 					break; //Get out of current word2 loop, but continue word1 loop.
 				}			
-					GBVector.add(tokenizedText.get(i) + " " + tokenizedText.get(i + j) + " " + (maxGap));
+					featureKey.setLength(word1Length).append(tokenizedText.get(i + j)).append(' ').append(maxGap);
+					featureKeySink.addFeature(featureKey);
 			}
 		}
-		
-		return GBVector;
 	}
 	
 	//FIXME add reference to OSB paper
 	/**
 	* Uses String tokens in tokenizedText (words) to create Orthogonal Sparse Bigrams 
-	* (OSB) and then provides all those OSBs back to the calling method.  An OSB
+	* (OSB) and then provides all those OSBs to featureKeySink.  An OSB
 	 * is a two token combination where the two tokens occur within a given distance. 
 	 * For example: "the quick brown fox jumps over the lazy dog" results in Gappy
 	 * Bigrams (maxGap 3) of "the quick 0", "the quick 1", "the quick 2", "the quick 3",
@@ -276,16 +270,21 @@ public class FeatureMaker
 	 * 
 	 * @param tokenizedText a Vector of individual text tokens (words)
 	 * @param maxGap the maximum "distance" in words that this feature should manipulate
-	 * @return Vector of Gappy Bigrams (distance = maxGap) in the form of Strings
+	 * @param featureKey scratch buffer each OSB is written into
+	 * @param featureKeySink consumer that receives the OSBs (distance = maxGap)
 	 */
-	private static Vector<String> parseOSB(Vector<String> tokenizedText, int maxGap)
+	private static void parseOSB(Vector<String> tokenizedText, int maxGap, FeatureKey featureKey, FeatureKeySink featureKeySink)
 	{
-		Vector<String> OSBVector = new Vector<String>();
 		int totalTokens = tokenizedText.size();
+		int word1Length;
+		int word2Length;
 		
 		//Create loop for word1. Use totalTokens vice words.length to save cycles.
 		for (int i=0; i < totalTokens; i++)
 		{
+			//Write "word1 " once and reuse it for every word2
+			word1Length = featureKey.clear().append(tokenizedText.get(i)).append(' ').length();
+			
 			//Create loop for word2.  Going from 1 to (< maxGap + 1) vice traditional 0 to (< maxGap).
 			for (int j=1; j < maxGap + 1; j++)
 			{
@@ -294,14 +293,17 @@ public class FeatureMaker
 				{
 					break; //Get out of current word2 loop, but continue word1 loop.
 				}
+				
+				//Write "word1 word2 " once and reuse it for every k
+				word2Length = featureKey.setLength(word1Length).append(tokenizedText.get(i + j)).append(' ').length();
+				
 				//k goes from the current gap out to the maxGap
 				for (int k=(j - 1); k < maxGap; k++)
 				{
-					OSBVector.add(tokenizedText.get(i) + " " + tokenizedText.get(i + j)+ " " + k);
+					featureKey.setLength(word2Length).append(k);
+					featureKeySink.addFeature(featureKey);
 				}
 			}
 		}
-		
-		return OSBVector;
 	}
 }
@@ -0,0 +1,31 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * Receives feature instances (unigrams, bigrams, Gappy Bigrams, OSBs, etc) one at a
+ * time as FeatureMaker creates them.  This lets a consumer, such as the CHD counter
+ * in TextToSVM, handle each feature as soon as it is made instead of waiting for
+ * FeatureMaker to fill a Vector of every feature in the utterance.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public interface FeatureSink 
+{
+	/**
+	 * Called once for every feature instance FeatureMaker creates, in the same order
+	 * the features would have appeared in the Vector returned by FeatureMaker.parse.
+	 * 
+	 * @param feature a single feature instance such as "the quick 2"
+	 */
+	public void addFeature(String feature);
+}
@@ -0,0 +1,222 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Makes the n cross validation folds of every group size from an SVMDataset, so the small SVM files are read
+ * once for all of the group sizes rather than once for each.  The authors, in file name order, are split into
+ * groups of groupSize consecutive authors, and the authors left over after the last whole group are left out.
+ * Each author's utterances are split into nCrossValidation slices of consecutive utterances, as even in size as
+ * can be.  Fold s of a group tests on slice s of every author in the group and trains on the other slices.
+ *
+ * A fold is a view of the dataset given by getFirstAuthor, getSliceStart and getSliceEnd, so nothing is copied
+ * to make one.  writeFold and writeFolds stream folds to disk for tools that read files.
+ *
+ * A FoldBuilder is not changed once made, so any number of threads can read it at once.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FoldBuilder
+{
+	//Data Members
+	public static final String 	FOLD_DIR_NAME 		= "folds";
+	public static final String 	GROUP_PREFIX 		= "group";
+	public static final String 	TRAIN_SUFFIX 		= ".train";
+	public static final String 	TEST_SUFFIX 		= ".test";
+	private static final byte[] 	LINE_SEPARATOR 	= {'\n'};
+	private static final int 		BUFFER_SIZE 		= 1 << 16;
+	private SVMDataset 				svmDataset;
+	private int 						nCrossValidation;
+
+	//Constructors
+	/**
+	 * Sole constructor for FoldBuilder.
+	 *
+	 * @param svmDataset small SVM files to make the folds of
+	 * @param nCrossValidation number of slices of each author, and so number of folds of each group
+	 */
+	public FoldBuilder(SVMDataset svmDataset, int nCrossValidation)
+	{
+		if (nCrossValidation < 1)
+		{
+			throw new IllegalArgumentException("nCrossValidation must be at least 1, not " + nCrossValidation);
+		}
+
+		this.svmDataset 			= svmDataset;
+		this.nCrossValidation 	= nCrossValidation;
+	}
+
+	//Methods
+	/**
+	 * @return the small SVM files the folds are made of
+	 */
+	public SVMDataset getDataset()
+	{
+		return svmDataset;
+	}
+
+	/**
+	 * @return number of slices of each author, and so number of folds of each group
+	 */
+	public int getNCrossValidation()
+	{
+		return nCrossValidation;
+	}
+
+	/**
+	 * @param groupSize number of authors in each group
+	 * @return number of whole groups of groupSize authors
+	 */
+	public int getGroupCount(int groupSize)
+	{
+		return groupSize < 1 ? 0 : svmDataset.getAuthorCount() / groupSize;
+	}
+
+	/**
+	 * @param group index of the group
+	 * @param groupSize number of authors in each group
+	 * @return index of the first author in the group, whose authors are this one and the groupSize - 1 after it
+	 */
+	public int getFirstAuthor(int group, int groupSize)
+	{
+		return group * groupSize;
+	}
+
+	/**
+	 * @param author index of the author
+	 * @param slice index of the slice
+	 * @return index of the first utterance of the author in slice
+	 */
+	public int getSliceStart(int author, int slice)
+	{
+		return (int)((long)svmDataset.getUtteranceCount(author) * slice / nCrossValidation);
+	}
+
+	/**
+	 * @param author index of the author
+	 * @param slice index of the slice
+	 * @return index one past the last utterance of the author in slice
+	 */
+	public int getSliceEnd(int author, int slice)
+	{
+		return getSliceStart(author, slice + 1);
+	}
+
+	/**
+	 * Writes one fold as a training file and a testing file of small SVM lines, author by author.
+	 *
+	 * @param group index of the group
+	 * @param groupSize number of authors in each group
+	 * @param slice index of the slice tested on
+	 * @param trainFile file to write the training lines to
+	 * @param testFile file to write the testing lines to
+	 * @throws IOException if either file cannot be written
+	 */
+	public void writeFold(int group, int groupSize, int slice, File trainFile, File testFile) throws IOException
+	{
+		LibSVMFileWriter trainWriter 	= new LibSVMFileWriter(trainFile, BUFFER_SIZE);
+		LibSVMFileWriter testWriter 	= null;
+		int firstAuthor 					= getFirstAuthor(group, groupSize);
+		int sliceStart;
+		int sliceEnd;
+
+		try
+		{
+			testWriter = new LibSVMFileWriter(testFile, BUFFER_SIZE);
+
+			for (int author = firstAuthor; author < firstAuthor + groupSize; author++)
+			{
+				sliceStart 	= getSliceStart(author, slice);
+				sliceEnd 	= getSliceEnd(author, slice);
+
+				for (int utterance = 0; utterance < svmDataset.getUtteranceCount(author); utterance++)
+				{
+					svmDataset.writeUtterance(author, utterance, utterance >= sliceStart && utterance < sliceEnd ? testWriter : trainWriter, LINE_SEPARATOR);
+				}
+			}
+		}
+		finally
+		{
+			trainWriter.close();
+
+			if (testWriter != null)
+			{
+				testWriter.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes every fold of every group of groupSize authors into the directory given by foldDirectoryFor.  Group g
+	 * is the directory GROUP_PREFIX + g, with g padded to groupDigits digits, and holds s + TRAIN_SUFFIX and
+	 * s + TEST_SUFFIX for each slice s.
+	 *
+	 * @param smallSVMDirectory directory the small SVM files were read from
+	 * @param groupSize number of authors in each group
+	 * @param groupDigits number of digits group numbers are padded to in the names of group directories
+	 * @throws IOException if a directory cannot be made or a file cannot be written
+	 */
+	public void writeFolds(File smallSVMDirectory, int groupSize, int groupDigits) throws IOException
+	{
+		File groupDirectory;
+
+		for (int group = 0; group < getGroupCount(groupSize); group++)
+		{
+			groupDirectory = groupDirectoryFor(smallSVMDirectory, groupSize, group, groupDigits);
+
+			groupDirectory.mkdirs();
+
+			if (!groupDirectory.isDirectory())
+			{
+				throw new IOException("Could not make " + groupDirectory);
+			}
+
+			for (int slice = 0; slice < nCrossValidation; slice++)
+			{
+				writeFold(group, groupSize, slice, new File(groupDirectory, slice + TRAIN_SUFFIX), new File(groupDirectory, slice + TEST_SUFFIX));
+			}
+		}
+	}
+
+	/**
+	 * @param smallSVMDirectory directory the small SVM files were read from
+	 * @param groupSize number of authors in each group
+	 * @param group index of the group
+	 * @param groupDigits number of digits group numbers are padded to in the names of group directories
+	 * @return the directory writeFolds writes the folds of group into
+	 */
+	public File groupDirectoryFor(File smallSVMDirectory, int groupSize, int group, int groupDigits)
+	{
+		String groupName = Integer.toString(group);
+
+		while (groupName.length() < groupDigits)
+		{
+			groupName = "0" + groupName;
+		}
+
+		return new File(foldDirectoryFor(smallSVMDirectory, groupSize, nCrossValidation), GROUP_PREFIX + groupName);
+	}
+
+	/**
+	 * @param smallSVMDirectory directory the small SVM files were read from
+	 * @param groupSize number of authors in each group
+	 * @param nCrossValidation number of folds of each group
+	 * @return the directory writeFolds writes the folds of groupSize into, smallSVMFiles/folds/groupSize/nCrossValidation
+	 */
+	public static File foldDirectoryFor(File smallSVMDirectory, int groupSize, int nCrossValidation)
+	{
+		return new File(new File(new File(smallSVMDirectory, FOLD_DIR_NAME), Integer.toString(groupSize)), Integer.toString(nCrossValidation));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * Splits the Orthogonal Sparse Bigrams of the largest of several maxGaps among the sinks of every maxGap.
+ * An OSB "word1 word2 k" is made for every maxGap greater than k, in the same order within each maxGap, so
+ * the OSBs of every smaller maxGap are exactly those of the largest with k less than that maxGap.  Handing
+ * FeatureMaker this sink with getMaxGap() makes the OSBs once for all of the maxGaps, rather than once for each.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class GapSweepSink implements FeatureKeySink
+{
+	//Data Members
+	private FeatureKeySink[] 	featureKeySinks;
+	private int[] 					maxGaps;
+	private int 					largestMaxGap;
+
+	//Constructors
+	/**
+	 * Sole constructor for GapSweepSink.
+	 *
+	 * @param featureKeySinks sink of each maxGap
+	 * @param maxGaps maxGap of each sink, in any order
+	 */
+	public GapSweepSink(FeatureKeySink[] featureKeySinks, int[] maxGaps)
+	{
+		this.featureKeySinks 	= featureKeySinks;
+		this.maxGaps 			= maxGaps;
+		largestMaxGap 			= 0;
+
+		for (int i = 0; i < maxGaps.length; i++)
+		{
+			largestMaxGap = Math.max(largestMaxGap, maxGaps[i]);
+		}
+	}
+
+	//Methods
+	/**
+	 * @return the maxGap to make the OSBs with, the largest of the maxGaps
+	 */
+	public int getMaxGap()
+	{
+		return largestMaxGap;
+	}
+
+	/**
+	 * Hands an OSB to the sink of every maxGap greater than its gap.
+	 *
+	 * @param featureKey buffer holding an OSB such as "the quick 2"
+	 */
+	public void addFeature(FeatureKey featureKey)
+	{
+		int gap 			= 0;
+		int position 		= featureKey.length() - 1;
+		int place 			= 1;
+		char c;
+
+		//The gap is the number after the last space
+		while (position >= 0 && (c = featureKey.charAt(position)) != ' ')
+		{
+			gap 			= gap + (c - '0') * place;
+			place 		= place * 10;
+			position--;
+		}
+
+		for (int i = 0; i < featureKeySinks.length; i++)
+		{
+			if (gap < maxGaps[i])
+			{
+				featureKeySinks[i].addFeature(featureKey);
+			}
+		}
+	}
+}
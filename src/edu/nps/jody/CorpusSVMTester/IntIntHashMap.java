@@ -0,0 +1,301 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map of primitive int keys to primitive int values.  No
+ * Integer objects are made for keys, values or increments, and the map is meant to
+ * be reused: clear() only touches the slots that were filled, so counting the features
+ * of one utterance after another does not allocate once the map has grown to fit the
+ * largest utterance.  The keys can be handed back in ascending order through sortedKeys(),
+ * which is what a libSVM sparse formatted line needs.
+ *
+ * Integer.MIN_VALUE marks an empty slot and so cannot be used as a key.  This class is
+ * not safe to share between threads.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class IntIntHashMap
+{
+	//Data Members
+	public static final int 	FREE_KEY 					= Integer.MIN_VALUE;
+	private static final int 	DEFAULT_CAPACITY 	= 64;
+	private static final float	LOAD_FACTOR 			= 0.75f;
+	private int[] 					keys;
+	private int[] 					values;
+	private int[] 					usedSlots;
+	private int[] 					sortedKeys;
+	private int 						size;
+	private int 						mask;
+	private int 						resizeThreshold;
+
+	//Constructors
+	/**
+	 * Constructor for an IntIntHashMap with a small default capacity.
+	 */
+	public IntIntHashMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for an IntIntHashMap that can hold expectedSize entries before it has to grow.
+	 *
+	 * @param expectedSize number of entries expected to be placed in the map
+	 */
+	public IntIntHashMap(int expectedSize)
+	{
+		int capacity = 2;
+
+		while (capacity * LOAD_FACTOR < expectedSize)
+		{
+			capacity = capacity << 1;
+		}
+
+		allocate(capacity);
+		sortedKeys = new int[0];
+	}
+
+	//Methods
+	/**
+	 * @return number of keys in the map
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return true if there are no keys in the map
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @param key key to look for
+	 * @return true if key is in the map
+	 */
+	public boolean containsKey(int key)
+	{
+		return keys[findSlot(key)] != FREE_KEY;
+	}
+
+	/**
+	 * @param key key to look up
+	 * @param defaultValue value to return if key is not in the map
+	 * @return the value stored for key or defaultValue if key is not in the map
+	 */
+	public int get(int key, int defaultValue)
+	{
+		int slot = findSlot(key);
+
+		if (keys[slot] == FREE_KEY)
+		{
+			return defaultValue;
+		}
+
+		return values[slot];
+	}
+
+	/**
+	 * Stores value for key, replacing any value already stored for key.
+	 *
+	 * @param key key to store, cannot be FREE_KEY
+	 * @param value value to store
+	 */
+	public void put(int key, int value)
+	{
+		//insertSlot may grow the map, so find the slot before touching values
+		int slot = insertSlot(key);
+
+		values[slot] = value;
+	}
+
+	/**
+	 * Adds delta to the value stored for key.  If key is not in the map, it is
+	 * added with a value of delta.
+	 *
+	 * @param key key to increment, cannot be FREE_KEY
+	 * @param delta amount to add to the value of key
+	 * @return the new value of key
+	 */
+	public int increment(int key, int delta)
+	{
+		int slot = insertSlot(key);
+
+		values[slot] = values[slot] + delta;
+
+		return values[slot];
+	}
+
+	/**
+	 * Removes every key from the map.  Only the slots that were filled are
+	 * cleared, so this is cheap no matter how large the map has grown.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			keys[usedSlots[i]] = FREE_KEY;
+		}
+
+		size = 0;
+	}
+
+	/**
+	 * Returns the keys of this map in ascending order.  The returned array belongs to the map and
+	 * is reused by the next call, and only its first size() entries are keys.
+	 *
+	 * @return array whose first size() entries are the keys of this map in ascending order
+	 */
+	public int[] sortedKeys()
+	{
+		if (sortedKeys.length < size)
+		{
+			sortedKeys = new int[usedSlots.length];
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			sortedKeys[i] = keys[usedSlots[i]];
+		}
+
+		Arrays.sort(sortedKeys, 0, size);
+
+		return sortedKeys;
+	}
+
+	/**
+	 * Returns the keys of this map in the order they were first added.  The returned array is a copy.
+	 *
+	 * @return array of the keys of this map in insertion order
+	 */
+	public int[] keysInInsertionOrder()
+	{
+		int[] insertionOrder = new int[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			insertionOrder[i] = keys[usedSlots[i]];
+		}
+
+		return insertionOrder;
+	}
+
+	/**
+	 * Finds the slot holding key or, if key is not in the map, the empty slot where it would go.
+	 *
+	 * @param key key to find
+	 * @return index into keys and values
+	 */
+	private int findSlot(int key)
+	{
+		int slot = mix(key) & mask;
+
+		while (keys[slot] != FREE_KEY && keys[slot] != key)
+		{
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Finds the slot holding key, adding key with a value of 0 if it is not already in the map.
+	 *
+	 * @param key key to find or add
+	 * @return index into keys and values
+	 */
+	private int insertSlot(int key)
+	{
+		if (key == FREE_KEY)
+		{
+			throw new IllegalArgumentException(key + " cannot be used as a key");
+		}
+
+		int slot = findSlot(key);
+
+		if (keys[slot] == FREE_KEY)
+		{
+			if (size >= resizeThreshold)
+			{
+				grow();
+				slot = findSlot(key);
+			}
+
+			keys[slot] 				= key;
+			values[slot] 			= 0;
+			usedSlots[size] 	= slot;
+			size++;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the map and reinserts every key, keeping insertion order.
+	 */
+	private void grow()
+	{
+		int[] oldKeys 			= keys;
+		int[] oldValues 		= values;
+		int[] oldUsedSlots 	= usedSlots;
+		int oldSize 				= size;
+		int slot;
+
+		allocate(keys.length << 1);
+
+		for (int i = 0; i < oldSize; i++)
+		{
+			slot 						= findSlot(oldKeys[oldUsedSlots[i]]);
+			keys[slot] 			= oldKeys[oldUsedSlots[i]];
+			values[slot] 		= oldValues[oldUsedSlots[i]];
+			usedSlots[i] 	= slot;
+		}
+
+		size = oldSize;
+	}
+
+	/**
+	 * Creates empty arrays for capacity slots.
+	 *
+	 * @param capacity number of slots, must be a power of 2
+	 */
+	private void allocate(int capacity)
+	{
+		keys 						= new int[capacity];
+		values 					= new int[capacity];
+		usedSlots 				= new int[(int)(capacity * LOAD_FACTOR) + 1];
+		mask 						= capacity - 1;
+		resizeThreshold 	= (int)(capacity * LOAD_FACTOR);
+		size 						= 0;
+
+		Arrays.fill(keys, FREE_KEY);
+	}
+
+	/**
+	 * Spreads the bits of key so that sequential keys do not land in sequential slots.
+	 *
+	 * @param key key to mix
+	 * @return mixed hash of key
+	 */
+	private static int mix(int key)
+	{
+		int hash = key * 0x9E3779B9;
+
+		return hash ^ (hash >>> 16);
+	}
+}
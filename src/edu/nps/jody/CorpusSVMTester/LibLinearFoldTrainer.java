@@ -0,0 +1,389 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.bwaldvogel.liblinear.FeatureNode;
+import de.bwaldvogel.liblinear.Linear;
+import de.bwaldvogel.liblinear.Model;
+import de.bwaldvogel.liblinear.Parameter;
+import de.bwaldvogel.liblinear.Problem;
+
+/**
+ * Trains liblinear on every fold of a FoldBuilder and predicts the fold's testing utterances, in this process
+ * rather than through liblinear jobs that read the fold files.  Folds run at the same time on a pool of threadCount
+ * threads.  The utterances of a group are parsed into FeatureNodes once, when its first fold runs, and every fold
+ * of the group builds its Problem from the same FeatureNode arrays, so nothing is parsed or copied per fold.  A
+ * group's FeatureNodes are let go once all of its folds have run, so at most about threadCount groups are held.
+ *
+ * The predicted label of each testing utterance is written, one per line, in the order of the fold's testing file,
+ * to s + PREDICT_SUFFIX in the group directory of FoldBuilder, just as liblinear's predict would write it.  No bias
+ * feature is added, as with liblinear's default of -B -1.  Each fold also counts its predictions into its own
+ * ConfusionMatrix as they are made, and the folds' matrices are merged as they finish, so the results of every fold
+ * of every group come back from trainAndPredict without the prediction files being read.
+ *
+ * Linear shares one Random among all of its callers, so solvers that shuffle may give slightly different models
+ * from one run to the next when more than one fold trains at once.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class LibLinearFoldTrainer
+{
+	//Data Members
+	public static final String 	PREDICT_SUFFIX 	= ".predict";
+	private static final int 		BUFFER_SIZE 		= 1 << 16;
+	private FoldBuilder 				foldBuilder;
+	private Parameter 				parameter;
+
+	//Constructors
+	/**
+	 * Sole constructor for LibLinearFoldTrainer.
+	 *
+	 * @param foldBuilder folds to train and predict
+	 * @param parameter solver, cost and stopping tolerance to train with
+	 */
+	public LibLinearFoldTrainer(FoldBuilder foldBuilder, Parameter parameter)
+	{
+		this.foldBuilder 	= foldBuilder;
+		this.parameter 	= parameter;
+	}
+
+	//Methods
+	/**
+	 * Trains and predicts every fold of every group of groupSize authors.
+	 *
+	 * @param smallSVMDirectory directory the small SVM files were read from, under which the predictions are written
+	 * @param groupSize number of authors in each group
+	 * @param groupDigits number of digits group numbers are padded to in the names of group directories
+	 * @param threadCount number of folds to run at the same time
+	 * @return the predictions of every fold of every group
+	 * @throws IOException if an utterance is malformed or a prediction file cannot be written
+	 */
+	public ConfusionMatrix trainAndPredict(final File smallSVMDirectory, int groupSize, final int groupDigits, int threadCount) throws IOException
+	{
+		Vector<Future<Void>> futureVector 		= new Vector<Future<Void>>();
+		final ConfusionMatrix confusionMatrix 	= new ConfusionMatrix();
+		ExecutorService executorService;
+		File groupDirectory;
+
+		Linear.disableDebugOutput();
+
+		//Every group directory is made here, before any fold runs, so no two folds race to make the same one
+		for (int group = 0; group < foldBuilder.getGroupCount(groupSize); group++)
+		{
+			groupDirectory = foldBuilder.groupDirectoryFor(smallSVMDirectory, groupSize, group, groupDigits);
+			groupDirectory.mkdirs();
+
+			if (!groupDirectory.isDirectory())
+			{
+				throw new IOException("Could not make " + groupDirectory);
+			}
+		}
+
+		executorService = Executors.newFixedThreadPool(threadCount);
+
+		try
+		{
+			//Folds are handed out group by group, so a group's FeatureNodes are only held while its folds run
+			for (int group = 0; group < foldBuilder.getGroupCount(groupSize); group++)
+			{
+				final GroupRows groupRows = new GroupRows(group, groupSize);
+
+				for (int slice = 0; slice < foldBuilder.getNCrossValidation(); slice++)
+				{
+					final int finalSlice = slice;
+
+					futureVector.add(executorService.submit(new Callable<Void>()
+					{
+						public Void call() throws IOException
+						{
+							ConfusionMatrix foldMatrix;
+
+							try
+							{
+								foldMatrix = trainAndPredict(groupRows, finalSlice, foldBuilder.groupDirectoryFor(smallSVMDirectory, groupRows.groupSize, groupRows.group, groupDigits));
+							}
+							finally
+							{
+								groupRows.release();
+							}
+
+							synchronized (confusionMatrix)
+							{
+								confusionMatrix.merge(foldMatrix);
+							}
+
+							return null;
+						}
+					}));
+				}
+			}
+
+			TextToSVM.waitForFutures(futureVector);
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+
+		return confusionMatrix;
+	}
+
+	/**
+	 * Trains on every slice of a group but one and predicts that one.
+	 *
+	 * @param groupRows utterances of the group
+	 * @param slice index of the slice tested on
+	 * @param groupDirectory directory to write the predictions to, which must already exist
+	 * @return the predictions of the fold
+	 * @throws IOException if an utterance is malformed or the predictions cannot be written
+	 */
+	private ConfusionMatrix trainAndPredict(GroupRows groupRows, int slice, File groupDirectory) throws IOException
+	{
+		FeatureNode[][][] rows 		= groupRows.acquire();
+		int firstAuthor 				= foldBuilder.getFirstAuthor(groupRows.group, groupRows.groupSize);
+		Problem problem 				= new Problem();
+		ConfusionMatrix foldMatrix 	= new ConfusionMatrix();
+		LibSVMFileWriter libSVMFileWriter;
+		Model model;
+		int sliceStart;
+		int sliceEnd;
+		int predicted;
+		int row = 0;
+
+		for (int author = 0; author < rows.length; author++)
+		{
+			problem.l = problem.l + rows[author].length - (foldBuilder.getSliceEnd(firstAuthor + author, slice) - foldBuilder.getSliceStart(firstAuthor + author, slice));
+		}
+
+		problem.n 		= groupRows.maxIndex;
+		problem.bias 	= -1;
+		problem.x 		= new FeatureNode[problem.l][];
+		problem.y 		= new int[problem.l];
+
+		for (int author = 0; author < rows.length; author++)
+		{
+			sliceStart 	= foldBuilder.getSliceStart(firstAuthor + author, slice);
+			sliceEnd 	= foldBuilder.getSliceEnd(firstAuthor + author, slice);
+
+			for (int utterance = 0; utterance < rows[author].length; utterance++)
+			{
+				if (utterance < sliceStart || utterance >= sliceEnd)
+				{
+					problem.x[row] 	= rows[author][utterance];
+					problem.y[row] 	= groupRows.labels[author][utterance];
+					row++;
+				}
+			}
+		}
+
+		model = Linear.train(problem, parameter);
+
+		libSVMFileWriter = new LibSVMFileWriter(new File(groupDirectory, slice + PREDICT_SUFFIX), BUFFER_SIZE);
+
+		try
+		{
+			for (int author = 0; author < rows.length; author++)
+			{
+				sliceEnd = foldBuilder.getSliceEnd(firstAuthor + author, slice);
+
+				for (int utterance = foldBuilder.getSliceStart(firstAuthor + author, slice); utterance < sliceEnd; utterance++)
+				{
+					predicted = Linear.predict(model, rows[author][utterance]);
+
+					foldMatrix.add(groupRows.labels[author][utterance], predicted);
+					libSVMFileWriter.writeInt(predicted);
+					libSVMFileWriter.writeByte('\n');
+				}
+			}
+		}
+		finally
+		{
+			libSVMFileWriter.close();
+		}
+
+		return foldMatrix;
+	}
+
+	/**
+	 * Parses an utterance of "label feature:count feature:count ..." into its label and FeatureNodes.
+	 *
+	 * @param svmDataset small SVM files holding the utterance
+	 * @param author index of the author
+	 * @param utterance index of the utterance
+	 * @param labels array to put the label in, at labels[utterance]
+	 * @return the FeatureNodes of the utterance, in the order written
+	 * @throws IOException if the utterance is not a small SVM line
+	 */
+	private static FeatureNode[] parseUtterance(SVMDataset svmDataset, int author, int utterance, int[] labels) throws IOException
+	{
+		byte[] bytes 		= svmDataset.getBytes(author);
+		int position 		= svmDataset.getUtteranceStart(author, utterance);
+		int end 				= svmDataset.getUtteranceEnd(author, utterance);
+		int pairCount 		= 0;
+		FeatureNode[] featureNodes;
+		int[] number 		= new int[2];
+
+		for (int i = position; i < end; i++)
+		{
+			if (bytes[i] == ':')
+			{
+				pairCount++;
+			}
+		}
+
+		featureNodes = new FeatureNode[pairCount];
+
+		position 					= parseInt(bytes, position, end, number, svmDataset, author);
+		labels[utterance] 		= number[0];
+
+		for (int i = 0; i < pairCount; i++)
+		{
+			position 	= parseInt(bytes, position, end, number, svmDataset, author);
+			number[1] 	= number[0];
+
+			if (position >= end || bytes[position] != ':')
+			{
+				throw new IOException(svmDataset.getAuthorName(author) + " has a malformed line at byte " + position);
+			}
+
+			position 				= parseInt(bytes, position + 1, end, number, svmDataset, author);
+			featureNodes[i] 	= new FeatureNode(number[1], number[0]);
+		}
+
+		return featureNodes;
+	}
+
+	/**
+	 * Reads a non-negative decimal integer, skipping any spaces before it.
+	 *
+	 * @param bytes bytes of the author's file
+	 * @param position offset to start reading at
+	 * @param end offset one past the end of the utterance
+	 * @param number array to put the integer in, at number[0]
+	 * @param svmDataset small SVM files, for the message if there is no integer
+	 * @param author index of the author, for the message if there is no integer
+	 * @return offset one past the last digit
+	 * @throws IOException if there is no integer at position
+	 */
+	private static int parseInt(byte[] bytes, int position, int end, int[] number, SVMDataset svmDataset, int author) throws IOException
+	{
+		int start;
+
+		while (position < end && bytes[position] == ' ')
+		{
+			position++;
+		}
+
+		start 			= position;
+		number[0] 	= 0;
+
+		while (position < end && bytes[position] >= '0' && bytes[position] <= '9')
+		{
+			number[0] = number[0] * 10 + (bytes[position] - '0');
+			position++;
+		}
+
+		if (position == start)
+		{
+			throw new IOException(svmDataset.getAuthorName(author) + " has a malformed line at byte " + position);
+		}
+
+		return position;
+	}
+
+	/**
+	 * The parsed utterances of one group, made by the first of its folds to run and let go by the last.
+	 */
+	private class GroupRows
+	{
+		//Data Members
+		private int 						group;
+		private int 						groupSize;
+		private int 						remaining;
+		private FeatureNode[][][] 	rows;
+		private int[][] 				labels;
+		private int 						maxIndex;
+
+		//Constructors
+		/**
+		 * Sole constructor for GroupRows.
+		 *
+		 * @param group index of the group
+		 * @param groupSize number of authors in each group
+		 */
+		private GroupRows(int group, int groupSize)
+		{
+			this.group 			= group;
+			this.groupSize 	= groupSize;
+			remaining 			= foldBuilder.getNCrossValidation();
+		}
+
+		//Methods
+		/**
+		 * @return the FeatureNodes of each utterance of each author of the group, parsing them if this is the first fold
+		 * @throws IOException if an utterance is malformed
+		 */
+		private synchronized FeatureNode[][][] acquire() throws IOException
+		{
+			SVMDataset svmDataset 	= foldBuilder.getDataset();
+			int firstAuthor 			= foldBuilder.getFirstAuthor(group, groupSize);
+			FeatureNode[] featureNodes;
+
+			if (rows == null)
+			{
+				rows 		= new FeatureNode[groupSize][][];
+				labels 	= new int[groupSize][];
+
+				for (int author = 0; author < groupSize; author++)
+				{
+					rows[author] 		= new FeatureNode[svmDataset.getUtteranceCount(firstAuthor + author)][];
+					labels[author] 	= new int[rows[author].length];
+
+					for (int utterance = 0; utterance < rows[author].length; utterance++)
+					{
+						featureNodes 						= parseUtterance(svmDataset, firstAuthor + author, utterance, labels[author]);
+						rows[author][utterance] 	= featureNodes;
+
+						if (featureNodes.length > 0)
+						{
+							maxIndex = Math.max(maxIndex, featureNodes[featureNodes.length - 1].index);
+						}
+					}
+				}
+			}
+
+			return rows;
+		}
+
+		/**
+		 * Records that a fold of the group has run, letting go of the FeatureNodes after the last.
+		 */
+		private synchronized void release()
+		{
+			remaining--;
+
+			if (remaining == 0)
+			{
+				rows 		= null;
+				labels 	= null;
+			}
+		}
+	}
+}
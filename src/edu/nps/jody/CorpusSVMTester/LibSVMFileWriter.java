@@ -0,0 +1,270 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes libSVM sparse formatted lines into a large byte buffer and only hands the buffer to
+ * the file when it is full or when the writer is closed.  Integers are formatted straight into
+ * the buffer as ASCII digits, so no Strings are made for labels, features or counts.  The text 
+ * written is exactly the text TextToSVM.writeCHDMapToSVMFile prints: the label, a space, then 
+ * "feature:count " for every feature in ascending order, then a newline.
+ * 
+ * This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class LibSVMFileWriter implements SVMRecordWriter
+{
+	//Data Members
+	public static final int 		DEFAULT_BUFFER_SIZE 	= 1 << 20;
+	private static final int 		MAX_INT_DIGITS 			= 11;
+	private OutputStream 			outputStream;
+	private byte[] 					buffer;
+	private int 						position;
+	
+	//Constructors
+	/**
+	 * Constructor for a LibSVMFileWriter with a DEFAULT_BUFFER_SIZE buffer.
+	 * 
+	 * @param file file to write, replaced if it already exists
+	 * @throws FileNotFoundException if file cannot be created
+	 */
+	public LibSVMFileWriter(File file) throws FileNotFoundException
+	{
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Constructor for a LibSVMFileWriter with a bufferSize byte buffer.
+	 * 
+	 * @param file file to write, replaced if it already exists
+	 * @param bufferSize number of bytes held before they are written to the file
+	 * @throws FileNotFoundException if file cannot be created
+	 */
+	public LibSVMFileWriter(File file, int bufferSize) throws FileNotFoundException
+	{
+		this(new FileOutputStream(file), bufferSize);
+	}
+	
+	/**
+	 * Constructor for a LibSVMFileWriter that writes to an already open stream.
+	 * 
+	 * @param outputStream stream to write to, closed when this writer is closed
+	 * @param bufferSize number of bytes held before they are written to the stream
+	 */
+	public LibSVMFileWriter(OutputStream outputStream, int bufferSize)
+	{
+		this.outputStream 	= outputStream;
+		buffer 					= new byte[Math.max(bufferSize, MAX_INT_DIGITS * 4)];
+		position 				= 0;
+	}
+	
+	//Methods
+	/**
+	 * Writes one utterance as a libSVM line.  Empty utterances are not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param chdCounts primitive map of CHD miminum perfect hash values mapped to number of occurrences
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeCHDCounts(int label, IntIntHashMap chdCounts) throws IOException
+	{
+		int size = chdCounts.size();
+		int[] sortedKeys;
+		
+		if (size == 0)
+		{
+			return;
+		}
+		
+		sortedKeys = chdCounts.sortedKeys();
+		
+		writeInt(label);
+		writeByte(' ');
+		
+		for (int i = 0; i < size; i++)
+		{
+			writePair(sortedKeys[i], chdCounts.get(sortedKeys[i], 0));
+			writeByte(' ');
+		}
+		
+		writeByte('\n');
+	}
+	
+	/**
+	 * Writes one utterance as a libSVM line, in the same form as writeCHDCounts.  Empty utterances 
+	 * are not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param features feature numbers in ascending order
+	 * @param counts counts[i] is the number of occurrences of features[i]
+	 * @param length number of entries of features and counts to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeRecord(int label, int[] features, int[] counts, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return;
+		}
+		
+		writeInt(label);
+		writeByte(' ');
+		
+		for (int i = 0; i < length; i++)
+		{
+			writePair(features[i], counts[i]);
+			writeByte(' ');
+		}
+		
+		writeByte('\n');
+	}
+	
+	/**
+	 * Writes "feature:count" with no surrounding spaces.
+	 * 
+	 * @param feature feature number
+	 * @param count number of times the feature occurred
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writePair(int feature, int count) throws IOException
+	{
+		writeInt(feature);
+		writeByte(TextToSVM.PAIR_DELIM.charAt(0));
+		writeInt(count);
+	}
+	
+	/**
+	 * Writes the decimal digits of number.
+	 * 
+	 * @param number number to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeInt(int number) throws IOException
+	{
+		long value = number;
+		int digits = 1;
+		
+		if (position + MAX_INT_DIGITS > buffer.length)
+		{
+			flushBuffer();
+		}
+		
+		if (value < 0)
+		{
+			buffer[position++] = '-';
+			value = -value;
+		}
+		
+		for (long remaining = value / 10; remaining > 0; remaining = remaining / 10)
+		{
+			digits++;
+		}
+		
+		for (int i = position + digits - 1; i >= position; i--)
+		{
+			buffer[i] = (byte)('0' + (value % 10));
+			value = value / 10;
+		}
+		
+		position = position + digits;
+	}
+	
+	/**
+	 * Writes a single ASCII character.
+	 * 
+	 * @param c character to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeByte(int c) throws IOException
+	{
+		if (position == buffer.length)
+		{
+			flushBuffer();
+		}
+		
+		buffer[position++] = (byte)c;
+	}
+	
+	/**
+	 * Writes raw bytes, such as a line already formatted elsewhere.
+	 * 
+	 * @param bytes array holding the bytes
+	 * @param offset index of the first byte to write
+	 * @param length number of bytes to write
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void writeBytes(byte[] bytes, int offset, int length) throws IOException
+	{
+		if (length > buffer.length - position)
+		{
+			flushBuffer();
+			
+			if (length > buffer.length)
+			{
+				outputStream.write(bytes, offset, length);
+				return;
+			}
+		}
+		
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position = position + length;
+	}
+	
+	/**
+	 * Writes everything held in the buffer to the file and flushes the file.
+	 * 
+	 * @throws IOException if the buffer cannot be written to the file
+	 */
+	public void flush() throws IOException
+	{
+		flushBuffer();
+		outputStream.flush();
+	}
+	
+	/**
+	 * Writes everything held in the buffer to the file and closes the file.
+	 * 
+	 * @throws IOException if the buffer cannot be written or the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			flushBuffer();
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Hands the buffer to the stream and empties it.
+	 * 
+	 * @throws IOException if the buffer cannot be written to the stream
+	 */
+	private void flushBuffer() throws IOException
+	{
+		if (position > 0)
+		{
+			outputStream.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
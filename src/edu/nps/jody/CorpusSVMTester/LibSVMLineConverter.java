@@ -0,0 +1,370 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Converts a libSVM sparse formatted large SVM file into a small SVM file without making a String
+ * for any line, pair or number.  Bytes are read straight into a reusable line buffer, the digits
+ * of each feature and count are parsed in place, each feature is remapped through SVMToSmallSVM.checkFeature
+ * into a reusable array of packed (small feature, count) longs, the array is sorted, and the line is
+ * formatted straight into the byte buffer of a LibSVMFileWriter.
+ *
+ * The small SVM file is the same as the one SVMToSmallSVM.convert would make line by line.  A line this
+ * class cannot parse, or a line naming the same small feature twice, is handed to SVMToSmallSVM.convert
+ * as a String so that it is treated exactly as before.  The input is expected to be in an ASCII
+ * compatible charset, as the large SVM files written by TextToSVM are.
+ *
+ * A LibSVMLineConverter is not safe to share between threads; make one for each file being converted.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class LibSVMLineConverter
+{
+	//Data Members
+	public static final int 			DEFAULT_READ_BUFFER_SIZE 	= 1 << 16;
+	private static final byte[] 	LINE_SEPARATOR 					= System.getProperty("line.separator").getBytes();
+	private SVMToSmallSVM 			svmToSmallSVM;
+	private byte[] 						readBuffer;
+	private byte[] 						line;
+	private int 							lineLength;
+	private int[] 							largeFeatures;
+	private int[] 							counts;
+	private long[] 						pairs;
+	private int 							labelEnd;
+	private LibSVMFileWriter 			libSVMFileWriter;
+
+	//Constructors
+	/**
+	 * Sole constructor for LibSVMLineConverter.
+	 *
+	 * @param svmToSmallSVM converter whose checkFeature assigns the small features
+	 */
+	public LibSVMLineConverter(SVMToSmallSVM svmToSmallSVM)
+	{
+		this.svmToSmallSVM 	= svmToSmallSVM;
+		readBuffer 					= new byte[DEFAULT_READ_BUFFER_SIZE];
+		line 							= new byte[256];
+		largeFeatures 				= new int[64];
+		counts 						= new int[64];
+		pairs 							= new long[64];
+	}
+
+	//Methods
+	/**
+	 * Converts every line of largeFile and writes the result to smallFile.  Lines end at "\n", "\r" or
+	 * "\r\n", just as BufferedReader.readLine splits them.
+	 *
+	 * @param largeFile libSVM formatted file containing minimum perfect hash values
+	 * @param smallFile libSVM formatted file to write
+	 * @throws IOException if largeFile cannot be read or smallFile cannot be written
+	 */
+	public void convertFile(File largeFile, File smallFile) throws IOException
+	{
+		InputStream inputStream = new FileInputStream(largeFile);
+		boolean skipLineFeed 	= false;
+		int bytesRead;
+		byte b;
+
+		try
+		{
+			libSVMFileWriter 	= new LibSVMFileWriter(smallFile);
+			lineLength 			= 0;
+
+			while ((bytesRead = inputStream.read(readBuffer)) != -1)
+			{
+				for (int i = 0; i < bytesRead; i++)
+				{
+					b = readBuffer[i];
+
+					if (skipLineFeed)
+					{
+						skipLineFeed = false;
+
+						if (b == '\n')
+						{
+							continue;
+						}
+					}
+
+					if (b == '\n' || b == '\r')
+					{
+						convertLine();
+						lineLength 		= 0;
+						skipLineFeed 	= (b == '\r');
+					}
+					else
+					{
+						if (lineLength == line.length)
+						{
+							line = Arrays.copyOf(line, line.length << 1);
+						}
+
+						line[lineLength++] = b;
+					}
+				}
+			}
+
+			//A last line without a line separator is still a line
+			if (lineLength > 0)
+			{
+				convertLine();
+			}
+		}
+		finally
+		{
+			inputStream.close();
+
+			if (libSVMFileWriter != null)
+			{
+				libSVMFileWriter.close();
+				libSVMFileWriter = null;
+			}
+		}
+	}
+
+	/**
+	 * Converts the line held in line[0, lineLength) and writes it.
+	 *
+	 * @throws IOException if the line cannot be written
+	 */
+	private void convertLine() throws IOException
+	{
+		int parsedCount 	= parseLine();
+		int pairCount 		= 0;
+		int smallFeature;
+
+		if (parsedCount >= 0)
+		{
+			for (int i = 0; i < parsedCount; i++)
+			{
+				smallFeature = svmToSmallSVM.checkFeature(largeFeatures[i]);
+
+				//Pruned features are left off the line
+				if (smallFeature != SVMToSmallSVM.PRUNED_FEATURE)
+				{
+					pairs[pairCount++] = ((long)smallFeature << 32) | (counts[i] & 0xFFFFFFFFL);
+				}
+			}
+
+			Arrays.sort(pairs, 0, pairCount);
+
+			if (!hasDuplicateFeature(pairCount))
+			{
+				writeSortedPairs(pairCount);
+				return;
+			}
+		}
+
+		//Anything unusual goes through the String version so it is handled just as it always has been
+		byte[] newLine = String.valueOf(svmToSmallSVM.convert(new String(line, 0, lineLength))).getBytes();
+
+		libSVMFileWriter.writeBytes(newLine, 0, newLine.length);
+		libSVMFileWriter.writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+	}
+
+	/**
+	 * Splits the line into its label and feature:count pairs.  The label is left in line[0, labelEnd) and the
+	 * pairs are parsed into largeFeatures and counts.
+	 *
+	 * @return number of pairs, or -1 if the line is not a plain "label int:int int:int" line
+	 */
+	private int parseLine()
+	{
+		int position 		= 0;
+		int pairCount 	= 0;
+		int colon;
+		int end;
+		long value;
+
+		//Blank lines and leading blanks are left to the String version
+		if (lineLength == 0 || isSpace(line[0]))
+		{
+			return -1;
+		}
+
+		//The label is copied as it is, so only its end is needed
+		while (position < lineLength && !isSpace(line[position]))
+		{
+			position++;
+		}
+
+		labelEnd = position;
+		position = skipSpaces(position);
+
+		while (position < lineLength)
+		{
+			end = position;
+
+			while (end < lineLength && !isSpace(line[end]))
+			{
+				end++;
+			}
+
+			colon = position;
+
+			while (colon < end && line[colon] != SVMToSmallSVM.FEATURE_COUNT_DELIM)
+			{
+				colon++;
+			}
+
+			if (colon == end)
+			{
+				return -1;
+			}
+
+			if (pairCount == largeFeatures.length)
+			{
+				largeFeatures 	= Arrays.copyOf(largeFeatures, pairCount << 1);
+				counts 			= Arrays.copyOf(counts, pairCount << 1);
+				pairs 				= new long[pairCount << 1];
+			}
+
+			value = parseInt(position, colon, true);
+
+			if (value == Long.MIN_VALUE)
+			{
+				return -1;
+			}
+
+			largeFeatures[pairCount] = (int)value;
+
+			//Counts are copied as they are by the String version, so only counts that print the same stay on this path
+			value = parseInt(colon + 1, end, false);
+
+			if (value == Long.MIN_VALUE || (line[colon + 1] == '0' && end - colon > 2))
+			{
+				return -1;
+			}
+
+			counts[pairCount] = (int)value;
+			pairCount++;
+
+			position = skipSpaces(end);
+		}
+
+		return pairCount;
+	}
+
+	/**
+	 * Parses the decimal digits in line[start, end).
+	 *
+	 * @param start first byte of the number
+	 * @param end one past the last byte of the number
+	 * @param signed true to allow a leading '-'
+	 * @return the number, or Long.MIN_VALUE if the bytes are not a number that fits in an int
+	 */
+	private long parseInt(int start, int end, boolean signed)
+	{
+		boolean negative = false;
+		long value = 0;
+
+		if (signed && start < end && line[start] == '-')
+		{
+			negative = true;
+			start++;
+		}
+
+		if (start == end || end - start > 10)
+		{
+			return Long.MIN_VALUE;
+		}
+
+		for (int i = start; i < end; i++)
+		{
+			if (line[i] < '0' || line[i] > '9')
+			{
+				return Long.MIN_VALUE;
+			}
+
+			value = value * 10 + (line[i] - '0');
+		}
+
+		if (negative)
+		{
+			value = -value;
+		}
+
+		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
+		{
+			return Long.MIN_VALUE;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Writes the label and the first pairCount sorted pairs as one small SVM line.
+	 *
+	 * @param pairCount number of packed pairs
+	 * @throws IOException if the line cannot be written
+	 */
+	private void writeSortedPairs(int pairCount) throws IOException
+	{
+		libSVMFileWriter.writeBytes(line, 0, labelEnd);
+
+		for (int i = 0; i < pairCount; i++)
+		{
+			libSVMFileWriter.writeByte(SVMToSmallSVM.PAIRS_DELIM.charAt(0));
+			libSVMFileWriter.writeInt((int)(pairs[i] >> 32));
+			libSVMFileWriter.writeByte(SVMToSmallSVM.FEATURE_COUNT_DELIM);
+			libSVMFileWriter.writeInt((int)pairs[i]);
+		}
+
+		libSVMFileWriter.writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+	}
+
+	/**
+	 * @param pairCount number of sorted packed pairs
+	 * @return true if two pairs have the same small feature
+	 */
+	private boolean hasDuplicateFeature(int pairCount)
+	{
+		for (int i = 1; i < pairCount; i++)
+		{
+			if ((pairs[i] >> 32) == (pairs[i - 1] >> 32))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param position index into line
+	 * @return index of the first byte at or after position that is not a blank
+	 */
+	private int skipSpaces(int position)
+	{
+		while (position < lineLength && isSpace(line[position]))
+		{
+			position++;
+		}
+
+		return position;
+	}
+
+	/**
+	 * @param b byte of a line
+	 * @return true if StringTokenizer would treat b as a delimiter
+	 */
+	private static boolean isSpace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == '\f';
+	}
+}
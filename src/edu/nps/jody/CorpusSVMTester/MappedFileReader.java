@@ -0,0 +1,217 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A Reader that memory maps a text file and decodes it with an explicit Charset straight into
+ * the caller's char array, which for Yylex is its zzBuffer.  There is no InputStreamReader or 
+ * byte buffer copy in between and no read system call per block; the operating system pages the
+ * file in as the decoder walks through it.  Files larger than the mapping window are mapped one 
+ * window at a time, so multi gigabyte author files do not need a single huge mapping.
+ * 
+ * Malformed or unmappable input is replaced, just as FileReader does.  This class is not safe to 
+ * share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class MappedFileReader extends Reader
+{
+	//Data Members
+	public static final long 		DEFAULT_WINDOW_SIZE = 1L << 28;
+	private static final long 	MIN_WINDOW_SIZE 		= 64;
+	private RandomAccessFile 	randomAccessFile;
+	private FileChannel 				fileChannel;
+	private CharsetDecoder 		charsetDecoder;
+	private MappedByteBuffer 	mappedByteBuffer;
+	private long 						fileSize;
+	private long 						windowStart;
+	private long 						windowSize;
+	private boolean 					decoded;
+	private boolean 					flushed;
+	private char[] 					pairArray;
+	private boolean 					pendingChar;
+	
+	//Constructors
+	/**
+	 * Constructor for a MappedFileReader with a DEFAULT_WINDOW_SIZE mapping window.
+	 * 
+	 * @param file text file to read
+	 * @param charset Charset the text file was written in
+	 * @throws FileNotFoundException if file does not exist
+	 * @throws IOException if file cannot be mapped
+	 */
+	public MappedFileReader(File file, Charset charset) throws FileNotFoundException, IOException
+	{
+		this(file, charset, DEFAULT_WINDOW_SIZE);
+	}
+	
+	/**
+	 * Constructor for a MappedFileReader that maps at most windowSize bytes of file at a time.
+	 * 
+	 * @param file text file to read
+	 * @param charset Charset the text file was written in
+	 * @param windowSize largest number of bytes mapped at once, raised if needed so any single character fits
+	 * @throws FileNotFoundException if file does not exist
+	 * @throws IOException if file cannot be mapped
+	 */
+	public MappedFileReader(File file, Charset charset, long windowSize) throws FileNotFoundException, IOException
+	{
+		randomAccessFile 	= new RandomAccessFile(file, "r");
+		fileChannel 			= randomAccessFile.getChannel();
+		fileSize 				= fileChannel.size();
+		this.windowSize 	= Math.min(Math.max(windowSize, MIN_WINDOW_SIZE), Integer.MAX_VALUE);
+		decoded 				= false;
+		flushed 				= false;
+		pairArray 				= new char[2];
+		pendingChar 			= false;
+		charsetDecoder 	= charset.newDecoder()
+										.onMalformedInput(CodingErrorAction.REPLACE)
+										.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		
+		mapWindow(0);
+	}
+	
+	//Methods
+	/**
+	 * Decodes up to length characters into charArray.  A character outside the Basic Multilingual Plane is two
+	 * chars, so when only one is asked for it is decoded into pairArray, and the second char is held back for
+	 * the next read rather than returning 0.
+	 * 
+	 * @param charArray array to decode into
+	 * @param offset index of the first char to fill
+	 * @param length largest number of chars to fill
+	 * @return number of chars filled, or -1 at the end of the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	@Override
+	public int read(char[] charArray, int offset, int length) throws IOException
+	{
+		CharBuffer charBuffer;
+		CoderResult coderResult;
+		boolean lastWindow;
+		int pairCount;
+		
+		if (length == 0)
+		{
+			return 0;
+		}
+		
+		if (fileChannel == null)
+		{
+			throw new IOException("MappedFileReader is closed");
+		}
+		
+		if (pendingChar)
+		{
+			charArray[offset] 	= pairArray[1];
+			pendingChar 			= false;
+			return 1;
+		}
+		
+		if (length == 1)
+		{
+			//Two chars always have room for one more character, so this never returns 0
+			pairCount = read(pairArray, 0, 2);
+			
+			if (pairCount == -1)
+			{
+				return -1;
+			}
+			
+			charArray[offset] 	= pairArray[0];
+			pendingChar 			= pairCount == 2;
+			return 1;
+		}
+		
+		charBuffer = CharBuffer.wrap(charArray, offset, length);
+		
+		while (charBuffer.position() == offset)
+		{
+			if (!decoded)
+			{
+				lastWindow 	= windowStart + mappedByteBuffer.limit() >= fileSize;
+				coderResult = charsetDecoder.decode(mappedByteBuffer, charBuffer, lastWindow);
+				
+				if (coderResult.isOverflow())
+				{
+					break;
+				}
+				
+				if (!lastWindow)
+				{
+					//Start the next window at the first byte not yet decoded, which may be part of a character
+					mapWindow(windowStart + mappedByteBuffer.position());
+					continue;
+				}
+				
+				decoded = true;
+			}
+			
+			if (flushed)
+			{
+				return -1;
+			}
+			
+			//Every byte is decoded, push out anything the decoder is still holding
+			if (charsetDecoder.flush(charBuffer).isOverflow())
+			{
+				break;
+			}
+			
+			flushed = true;
+		}
+		
+		return charBuffer.position() - offset;
+	}
+	
+	/**
+	 * Closes the file.  The mapping itself is released when it is garbage collected.
+	 * 
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (fileChannel != null)
+		{
+			fileChannel.close();
+			randomAccessFile.close();
+			fileChannel 			= null;
+			mappedByteBuffer 	= null;
+		}
+	}
+	
+	/**
+	 * Maps the window of the file starting at start.
+	 * 
+	 * @param start byte offset of the start of the window
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private void mapWindow(long start) throws IOException
+	{
+		windowStart 			= start;
+		mappedByteBuffer 	= fileChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+	}
+}
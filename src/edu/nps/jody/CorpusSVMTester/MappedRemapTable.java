@@ -0,0 +1,407 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * A large to small feature map read straight out of a RemapTable file through a memory map, rather than
+ * loaded onto the heap.  Opening one only reads the 16 byte header, so a short conversion can start
+ * right away, and the pages of the file are read in by the operating system as lookups touch them.
+ * Every process mapping the same file shares those pages through the page cache.
+ *
+ * The sorted (large, small) pairs written by RemapTable.write are the base region, searched with a binary
+ * search.  New small values are not written into the base region.  They are appended to the end of the file
+ * as more (large, small) pairs, the append region, while holding an exclusive FileLock on it, so that many
+ * processes can give out small values from the same file without handing out the same one twice.  The
+ * append region is small and is kept in an IntIntHashMap, which is brought up to date whenever a large
+ * value is not found.
+ *
+ * RemapTable.read loads a file with an append region like any other file, and writing that RemapTable back
+ * out folds the append region into a new sorted base region.  That should only be done when no other process
+ * has the file open.
+ *
+ * Every method is synchronized, so one MappedRemapTable can be shared by the threads of a process.  Two
+ * MappedRemapTables on the same file in one process would trip over each other's FileLocks, so open each
+ * file once.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class MappedRemapTable
+{
+	//Data Members
+	private static final int 		PAIR_BYTES 		= 8;
+	private static final int 		READ_BYTES 		= 1 << 16;
+	private File 						file;
+	private RandomAccessFile 		randomAccessFile;
+	private FileChannel 			fileChannel;
+	private IntBuffer 				baseRegion;
+	private int 						baseCount;
+	private long 						appendStart;
+	private long 						appendRead;
+	private IntIntHashMap 		appended;
+	private int 						mapMax;
+	private ByteBuffer 				readBuffer;
+	private ByteBuffer 				pairBuffer;
+
+	//Constructors
+	/**
+	 * Sole constructor for MappedRemapTable.  If file does not exist or is empty, an empty RemapTable file is
+	 * made first.
+	 *
+	 * @param file RemapTable file to map
+	 * @throws IOException if file cannot be opened, is not a RemapTable file, or has a base region over 2GB
+	 */
+	public MappedRemapTable(File file) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(RemapTable.HEADER_INTS * 4);
+		long baseBytes;
+
+		this.file 			= file;
+		randomAccessFile 	= new RandomAccessFile(file, "rw");
+		fileChannel 		= randomAccessFile.getChannel();
+		readBuffer 			= ByteBuffer.allocate(READ_BYTES);
+		pairBuffer 			= ByteBuffer.allocate(PAIR_BYTES);
+		appended 			= new IntIntHashMap();
+
+		try
+		{
+			writeHeaderIfEmpty();
+
+			while (header.hasRemaining() && fileChannel.read(header, header.position()) > 0)
+			{
+				//Keep reading until the whole header is in
+			}
+
+			header.flip();
+
+			if (header.remaining() < RemapTable.HEADER_INTS * 4 || header.getInt(0) != RemapTable.MAGIC)
+			{
+				throw new IOException(file + " is not a remap table");
+			}
+
+			if (header.getInt(4) != RemapTable.VERSION)
+			{
+				throw new IOException(file + " is remap table version " + header.getInt(4) + ", expected " + RemapTable.VERSION);
+			}
+
+			mapMax 		= Math.max(header.getInt(8), 1);
+			baseCount 	= header.getInt(12);
+			baseBytes 	= (long)baseCount * PAIR_BYTES;
+
+			if (baseBytes > Integer.MAX_VALUE)
+			{
+				throw new IOException(file + " has " + baseCount + " entries, too many to map at once");
+			}
+
+			appendStart = RemapTable.HEADER_INTS * 4 + baseBytes;
+			appendRead 	= appendStart;
+			baseRegion 	= fileChannel.map(FileChannel.MapMode.READ_ONLY, RemapTable.HEADER_INTS * 4, baseBytes).asIntBuffer();
+		}
+		catch (IOException e)
+		{
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	//Methods
+	/**
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large, or RemapTable.NOT_MAPPED if none has been assigned
+	 * @throws IOException if the append region cannot be read
+	 */
+	public synchronized int get(int large) throws IOException
+	{
+		int small = findSeen(large);
+
+		//Only a value this process has not seen costs a look at the size of the file
+		if (small == RemapTable.NOT_MAPPED)
+		{
+			readAppended();
+			small = appended.get(large, RemapTable.NOT_MAPPED);
+		}
+
+		return small;
+	}
+
+	/**
+	 * Finds the small value assigned to large.  If large has not been seen by this or any other process,
+	 * the next small value is appended to the file for it.
+	 *
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large
+	 * @throws IOException if the file cannot be locked, read or written
+	 */
+	public synchronized int getOrAssign(int large) throws IOException
+	{
+		int small = findSeen(large);
+		FileLock fileLock;
+
+		if (small != RemapTable.NOT_MAPPED)
+		{
+			return small;
+		}
+
+		fileLock = RemapTable.lockAppendRegion(fileChannel, appendStart);
+
+		try
+		{
+			//Another process may have assigned large while this one waited for the lock
+			readAppended();
+			small = appended.get(large, RemapTable.NOT_MAPPED);
+
+			if (small == RemapTable.NOT_MAPPED)
+			{
+				small = mapMax;
+
+				pairBuffer.clear();
+				pairBuffer.putInt(large).putInt(small);
+				pairBuffer.flip();
+
+				while (pairBuffer.hasRemaining())
+				{
+					fileChannel.write(pairBuffer, appendRead + pairBuffer.position());
+				}
+
+				appendRead 	= appendRead + PAIR_BYTES;
+				mapMax 		= small + 1;
+				appended.put(large, small);
+			}
+		}
+		finally
+		{
+			fileLock.release();
+		}
+
+		return small;
+	}
+
+	/**
+	 * @return the next small value that will be handed out, as far as this process has seen
+	 * @throws IOException if the append region cannot be read
+	 */
+	public synchronized int getMapMax() throws IOException
+	{
+		readAppended();
+
+		return mapMax;
+	}
+
+	/**
+	 * @return number of large values that have small values, as far as this process has seen
+	 * @throws IOException if the append region cannot be read
+	 */
+	public synchronized int size() throws IOException
+	{
+		readAppended();
+
+		return baseCount + appended.size();
+	}
+
+	/**
+	 * Copies the base region and the append region into a RemapTable on the heap.
+	 *
+	 * @return a RemapTable holding every entry of the file
+	 * @throws IOException if the append region cannot be read
+	 */
+	public synchronized RemapTable toRemapTable() throws IOException
+	{
+		RemapTable remapTable;
+		int[] largeValues;
+
+		readAppended();
+
+		remapTable 	= new RemapTable(new IntIntHashMap(baseCount + appended.size()), mapMax);
+		largeValues = appended.keysInInsertionOrder();
+
+		for (int i = 0; i < baseCount; i++)
+		{
+			remapTable.put(baseRegion.get(2 * i), baseRegion.get(2 * i + 1));
+		}
+
+		for (int i = 0; i < largeValues.length; i++)
+		{
+			remapTable.put(largeValues[i], appended.get(largeValues[i], RemapTable.NOT_MAPPED));
+		}
+
+		return remapTable;
+	}
+
+	/**
+	 * Forces the small values appended by this process out to the disk.
+	 *
+	 * @throws IOException if the file cannot be forced
+	 */
+	public synchronized void force() throws IOException
+	{
+		fileChannel.force(false);
+	}
+
+	/**
+	 * Closes the file.  The mapped base region stays readable until it is garbage collected, but this
+	 * table should not be used again.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	public synchronized void close() throws IOException
+	{
+		randomAccessFile.close();
+	}
+
+	/**
+	 * @return the RemapTable file this table maps
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Looks for large in the base region and in the appended entries already read, without reading the file.
+	 *
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large, or RemapTable.NOT_MAPPED if this process has not seen one
+	 */
+	private int findSeen(int large)
+	{
+		int small = find(large);
+
+		if (small == RemapTable.NOT_MAPPED)
+		{
+			small = appended.get(large, RemapTable.NOT_MAPPED);
+		}
+
+		return small;
+	}
+
+	/**
+	 * Binary searches the base region for large.
+	 *
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value stored for large in the base region, or RemapTable.NOT_MAPPED
+	 */
+	private int find(int large)
+	{
+		int low 	= 0;
+		int high 	= baseCount - 1;
+		int middle;
+		int middleLarge;
+
+		while (low <= high)
+		{
+			middle 			= (low + high) >>> 1;
+			middleLarge 	= baseRegion.get(2 * middle);
+
+			if (middleLarge < large)
+			{
+				low = middle + 1;
+			}
+			else if (middleLarge > large)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return baseRegion.get(2 * middle + 1);
+			}
+		}
+
+		return RemapTable.NOT_MAPPED;
+	}
+
+	/**
+	 * Reads any whole pairs other processes have appended since the last read into the append map.  A pair
+	 * only partly written by a process that died is ignored, and is written over by the next new small value.
+	 *
+	 * @throws IOException if the append region cannot be read
+	 */
+	private void readAppended() throws IOException
+	{
+		long appendEnd = fileChannel.size();
+		int bytesRead;
+		int large;
+		int small;
+
+		appendEnd = appendStart + ((appendEnd - appendStart) / PAIR_BYTES) * PAIR_BYTES;
+
+		while (appendRead < appendEnd)
+		{
+			readBuffer.clear();
+			readBuffer.limit((int)Math.min(readBuffer.capacity(), appendEnd - appendRead));
+
+			while (readBuffer.hasRemaining())
+			{
+				bytesRead = fileChannel.read(readBuffer, appendRead + readBuffer.position());
+
+				if (bytesRead < 0)
+				{
+					throw new IOException(file + " was truncated while being read");
+				}
+			}
+
+			readBuffer.flip();
+
+			while (readBuffer.remaining() >= PAIR_BYTES)
+			{
+				large = readBuffer.getInt();
+				small = readBuffer.getInt();
+
+				appended.put(large, small);
+
+				if (small >= mapMax)
+				{
+					mapMax = small + 1;
+				}
+			}
+
+			appendRead = appendRead + readBuffer.position();
+		}
+	}
+
+	/**
+	 * Writes the header of an empty RemapTable if the file is empty, holding a lock on the whole file so that
+	 * two processes opening a new file at once do not both write it.
+	 *
+	 * @throws IOException if the file cannot be locked or written
+	 */
+	private void writeHeaderIfEmpty() throws IOException
+	{
+		FileLock fileLock = fileChannel.lock();
+		ByteBuffer header;
+
+		try
+		{
+			if (fileChannel.size() == 0)
+			{
+				header = ByteBuffer.allocate(RemapTable.HEADER_INTS * 4);
+				header.putInt(RemapTable.MAGIC).putInt(RemapTable.VERSION).putInt(1).putInt(0);
+				header.flip();
+
+				while (header.hasRemaining())
+				{
+					fileChannel.write(header, header.position());
+				}
+			}
+		}
+		finally
+		{
+			fileLock.release();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import edu.nps.jody.HashFinder.MembershipChecker;
+
+/**
+ * A MembershipChecker that can be shared by all the worker threads of a parallel
+ * TextToSVM run without a lock.  MembershipChecker makes no promises about its own
+ * thread safety, so rather than guard every lookup with one monitor, which made the
+ * workers wait on each other for every feature, each thread looks up through its own
+ * MembershipChecker, loaded from the same keys.mph and signature files the first time
+ * that thread calls getIndex.  This costs one copy of the hash per worker thread.
+ * 
+ * The files are also loaded once by the constructor, so a missing or unreadable file
+ * is reported before any worker starts.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class PerThreadMembershipChecker extends MembershipChecker
+{
+	//Data Members
+	private ThreadLocal<MembershipChecker> 	threadChecker;
+
+	//Constructors
+	/**
+	 * Sole constructor for PerThreadMembershipChecker.  Loads the minimum perfect
+	 * hash keys and signatures exactly as MembershipChecker does.
+	 *
+	 * @param keyFileName path and filename of the CHD keys.mph file
+	 * @param signatureFileName path and filename of the signature file
+	 * @throws FileNotFoundException if either file does not exist
+	 * @throws IOException if either file cannot be read
+	 */
+	public PerThreadMembershipChecker(final String keyFileName, final String signatureFileName) throws FileNotFoundException, IOException
+	{
+		super(keyFileName, signatureFileName);
+
+		threadChecker = new ThreadLocal<MembershipChecker>()
+		{
+			protected MembershipChecker initialValue()
+			{
+				try
+				{
+					return new MembershipChecker(keyFileName, signatureFileName);
+				}
+				catch (IOException e)
+				{
+					throw new IllegalStateException("Could not load " + keyFileName + " and " + signatureFileName + " for " + Thread.currentThread().getName(), e);
+				}
+			}
+		};
+	}
+
+	//Methods
+	/**
+	 * Returns the minimum perfect hash value of instance, or -1 if instance is not
+	 * a member, from the MembershipChecker of the calling thread.
+	 *
+	 * @param instance feature instance (unigram, bigram, OSB, etc) to look up
+	 * @return minimum perfect hash value of instance or -1 if it is not a member
+	 */
+	@Override
+	public int getIndex(String instance)
+	{
+		return threadChecker.get().getIndex(instance);
+	}
+}
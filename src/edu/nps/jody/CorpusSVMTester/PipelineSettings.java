@@ -0,0 +1,241 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import de.bwaldvogel.liblinear.Parameter;
+
+/**
+ * The options of a run of CorpusSVMTester.prepareTextForSVM, read by its stages: how the cross validation slices
+ * are made, how many threads each stage and the pipeline as a whole use, and which of the optional modes are on.
+ * A new PipelineSettings holds the same defaults as CorpusSVMTester.main.  The settings should not be changed
+ * while a pipeline that was handed them is running.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class PipelineSettings
+{
+	//Data Members
+	private int[] 			groupSizes 				= {5, 10, 25, 50, 75, 150};
+	private int 				titleDigits 				= 3;
+	private int 				groupDigits 				= 3;
+	private int 				nCrossValidation 		= 5;
+	private int 				threadCount 				= 1;
+	private int 				stageThreads 			= 0;
+	private int 				stageRetries 			= 0;
+	private boolean 		fused 						= false;
+	private boolean 		deterministicRemap 	= true;
+	private boolean 		denseRemap 				= false;
+	private boolean 		inMemoryFolds 			= false;
+	private Parameter 		liblinearParameter 	= null;
+
+	//Constructors
+	/**
+	 * Constructor for PipelineSettings with the defaults of CorpusSVMTester.main.
+	 */
+	public PipelineSettings()
+	{
+	}
+
+	//Methods
+	/**
+	 * @param groupSizes number of authors in each group, one set of slices per group size
+	 */
+	public void setGroupSizes(int[] groupSizes)
+	{
+		this.groupSizes = groupSizes;
+	}
+
+	/**
+	 * @return number of authors in each group, one set of slices per group size
+	 */
+	public int[] getGroupSizes()
+	{
+		return groupSizes;
+	}
+
+	/**
+	 * @param titleDigits number of digits in the titles of the text files, handed to GroupAndSlice
+	 */
+	public void setTitleDigits(int titleDigits)
+	{
+		this.titleDigits = titleDigits;
+	}
+
+	/**
+	 * @return number of digits in the titles of the text files, handed to GroupAndSlice
+	 */
+	public int getTitleDigits()
+	{
+		return titleDigits;
+	}
+
+	/**
+	 * @param groupDigits number of digits group numbers are padded to in the names of the group directories of FoldBuilder
+	 */
+	public void setGroupDigits(int groupDigits)
+	{
+		this.groupDigits = groupDigits;
+	}
+
+	/**
+	 * @return number of digits group numbers are padded to in the names of the group directories of FoldBuilder
+	 */
+	public int getGroupDigits()
+	{
+		return groupDigits;
+	}
+
+	/**
+	 * @param nCrossValidation number of slices in cross validation
+	 */
+	public void setNCrossValidation(int nCrossValidation)
+	{
+		this.nCrossValidation = nCrossValidation;
+	}
+
+	/**
+	 * @return number of slices in cross validation
+	 */
+	public int getNCrossValidation()
+	{
+		return nCrossValidation;
+	}
+
+	/**
+	 * @param threadCount number of files, or folds, each stage works on at the same time
+	 */
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * @return number of files, or folds, each stage works on at the same time
+	 */
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	/**
+	 * @param stageThreads number of pipeline stages to run at the same time, or 0 for as many as threadCount
+	 */
+	public void setStageThreads(int stageThreads)
+	{
+		this.stageThreads = stageThreads;
+	}
+
+	/**
+	 * @return number of pipeline stages to run at the same time
+	 */
+	public int getStageThreads()
+	{
+		return stageThreads < 1 ? threadCount : stageThreads;
+	}
+
+	/**
+	 * @param stageRetries number of times a failed pipeline stage is run again
+	 */
+	public void setStageRetries(int stageRetries)
+	{
+		this.stageRetries = stageRetries;
+	}
+
+	/**
+	 * @return number of times a failed pipeline stage is run again
+	 */
+	public int getStageRetries()
+	{
+		return stageRetries;
+	}
+
+	/**
+	 * @param fused true to write smallSVMFiles straight from the text without writing svmFiles
+	 */
+	public void setFused(boolean fused)
+	{
+		this.fused = fused;
+	}
+
+	/**
+	 * @return true to write smallSVMFiles straight from the text without writing svmFiles
+	 */
+	public boolean isFused()
+	{
+		return fused;
+	}
+
+	/**
+	 * @param deterministicRemap false to let parallel remapping give out small values in any order
+	 */
+	public void setDeterministicRemap(boolean deterministicRemap)
+	{
+		this.deterministicRemap = deterministicRemap;
+	}
+
+	/**
+	 * @return false to let parallel remapping give out small values in any order
+	 */
+	public boolean isDeterministicRemap()
+	{
+		return deterministicRemap;
+	}
+
+	/**
+	 * @param denseRemap true to remap through an int[] sized to the number of keys in keys.mph
+	 */
+	public void setDenseRemap(boolean denseRemap)
+	{
+		this.denseRemap = denseRemap;
+	}
+
+	/**
+	 * @return true to remap through an int[] sized to the number of keys in keys.mph
+	 */
+	public boolean isDenseRemap()
+	{
+		return denseRemap;
+	}
+
+	/**
+	 * @param inMemoryFolds true to make the slices of every group size with a FoldBuilder rather than GroupAndSlice
+	 */
+	public void setInMemoryFolds(boolean inMemoryFolds)
+	{
+		this.inMemoryFolds = inMemoryFolds;
+	}
+
+	/**
+	 * @return true to make the slices of every group size with a FoldBuilder rather than GroupAndSlice
+	 */
+	public boolean isInMemoryFolds()
+	{
+		return inMemoryFolds;
+	}
+
+	/**
+	 * @param liblinearParameter parameter to train and predict every fold with in this process, or null not to,
+	 * which needs inMemoryFolds
+	 */
+	public void setLiblinearParameter(Parameter liblinearParameter)
+	{
+		this.liblinearParameter = liblinearParameter;
+	}
+
+	/**
+	 * @return parameter to train and predict every fold with in this process, or null not to
+	 */
+	public Parameter getLiblinearParameter()
+	{
+		return liblinearParameter;
+	}
+}
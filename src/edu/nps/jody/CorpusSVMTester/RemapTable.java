@@ -0,0 +1,508 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+
+/**
+ * The large to small feature map used by SVMToSmallSVM, kept in a primitive IntIntHashMap
+ * together with mapMax, the next small value to hand out.  A table with tens of millions of
+ * entries takes a fraction of the heap a HashMap&lt;Integer, Integer&gt; would.
+ * 
+ * The table is saved in a versioned binary file, all big endian ints:
+ * 
+ * <pre>
+ *   magic     "L2SM"
+ *   version   1
+ *   mapMax    next small value to hand out
+ *   count     number of entries
+ *   count pairs of (large, small), in ascending order of large
+ * </pre>
+ * 
+ * Loading reads the whole file in one bulk read and never has to scan the entries to find mapMax.
+ * 
+ * Since the large values are CHD minimum perfect hash values, they all fall in [0, keyCount) for the keyCount
+ * keys of keys.mph.  A dense table (see toDense) keeps those in a plain int[] of keyCount slots instead of the
+ * hash map, where 0 marks a slot with no small value, since small values start at 1.  Lookups are then a
+ * single array index, and the memory used is 4 bytes per key no matter how many have been seen.  Any large
+ * value outside the range still goes to the hash map.
+ * 
+ * This class is not safe to share between threads.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class RemapTable 
+{
+	//Data Members
+	public static final int 		MAGIC 				= ('L' << 24) | ('2' << 16) | ('S' << 8) | 'M';
+	public static final int 		VERSION 			= 1;
+	public static final int 		HEADER_INTS 	= 4;
+	public static final int 		NOT_MAPPED 	= -1;
+	private static final int 		UNASSIGNED 		= 0;
+	private IntIntHashMap 		largeToSmallMap;
+	private int[] 						denseMap;
+	private int 						denseSize;
+	private int 						mapMax;
+	
+	//Constructors
+	/**
+	 * Constructor for an empty RemapTable.  The first small value handed out is 1, since libSVM
+	 * feature numbers start at 1.
+	 */
+	public RemapTable()
+	{
+		this(new IntIntHashMap(), 1);
+	}
+	
+	/**
+	 * Constructor for a RemapTable holding an already filled map.
+	 * 
+	 * @param largeToSmallMap map of large (minimum perfect hash) values to small values
+	 * @param mapMax next small value to hand out
+	 */
+	public RemapTable(IntIntHashMap largeToSmallMap, int mapMax)
+	{
+		this.largeToSmallMap 	= largeToSmallMap;
+		this.mapMax 				= Math.max(mapMax, 1);
+	}
+	
+	/**
+	 * Constructor for a dense RemapTable holding an already filled int[], see toDense.
+	 * 
+	 * @param denseMap small value of every large value in [0, denseMap.length), or 0 for none
+	 * @param largeToSmallMap map of the large values outside the dense range to small values
+	 * @param mapMax next small value to hand out
+	 */
+	RemapTable(int[] denseMap, IntIntHashMap largeToSmallMap, int mapMax)
+	{
+		this(largeToSmallMap, mapMax);
+		
+		this.denseMap = denseMap;
+		
+		for (int i = 0; i < denseMap.length; i++)
+		{
+			if (denseMap[i] != UNASSIGNED)
+			{
+				denseSize++;
+			}
+		}
+	}
+	
+	//Methods
+	/**
+	 * Makes a dense copy of this table, with an int[] slot for every large value in [0, keyCount).
+	 * 
+	 * @param keyCount number of keys of the minimum perfect hash function
+	 * @return a dense table holding the same entries and mapMax as this table
+	 */
+	public RemapTable toDense(int keyCount)
+	{
+		RemapTable denseTable = new RemapTable(new IntIntHashMap(), mapMax);
+		int[] sortedLargeValues = sortedLargeValues();
+		int size = size();
+		
+		denseTable.denseMap = new int[keyCount];
+		
+		for (int i = 0; i < size; i++)
+		{
+			denseTable.put(sortedLargeValues[i], get(sortedLargeValues[i]));
+		}
+		
+		return denseTable;
+	}
+	
+	/**
+	 * @return true if this table keeps its large values in a dense int[]
+	 */
+	public boolean isDense()
+	{
+		return denseMap != null;
+	}
+	
+	/**
+	 * @return number of large values kept in the dense int[], or 0 if this table is not dense
+	 */
+	public int getDenseKeyCount()
+	{
+		return denseMap == null ? 0 : denseMap.length;
+	}
+	
+	/**
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large, or NOT_MAPPED if none has been assigned
+	 */
+	public int get(int large)
+	{
+		if (denseMap != null && large >= 0 && large < denseMap.length)
+		{
+			return denseMap[large] == UNASSIGNED ? NOT_MAPPED : denseMap[large];
+		}
+		
+		return largeToSmallMap.get(large, NOT_MAPPED);
+	}
+	
+	/**
+	 * Finds the small value assigned to large, assigning mapMax (and moving mapMax up by one) if 
+	 * large has not been seen before.
+	 * 
+	 * @param large large (minimum perfect hash) value
+	 * @return the small value assigned to large
+	 */
+	public int getOrAssign(int large)
+	{
+		int small;
+		
+		if (denseMap != null && large >= 0 && large < denseMap.length)
+		{
+			small = denseMap[large];
+			
+			if (small == UNASSIGNED)
+			{
+				small 				= mapMax;
+				mapMax 			= mapMax + 1;
+				denseMap[large] 	= small;
+				denseSize++;
+			}
+			
+			return small;
+		}
+		
+		small = largeToSmallMap.get(large, NOT_MAPPED);
+		
+		if (small == NOT_MAPPED)
+		{
+			small 	= mapMax;
+			mapMax 	= mapMax + 1;
+			largeToSmallMap.put(large, small);
+		}
+		
+		return small;
+	}
+	
+	/**
+	 * Assigns a specific small value to large.  mapMax is moved past small if needed.
+	 * 
+	 * @param large large (minimum perfect hash) value
+	 * @param small small value to assign
+	 */
+	public void put(int large, int small)
+	{
+		if (denseMap != null && large >= 0 && large < denseMap.length)
+		{
+			if (small == UNASSIGNED)
+			{
+				throw new IllegalArgumentException(small + " cannot be used as a small value in a dense table");
+			}
+			
+			if (denseMap[large] == UNASSIGNED)
+			{
+				denseSize++;
+			}
+			
+			denseMap[large] = small;
+		}
+		else
+		{
+			largeToSmallMap.put(large, small);
+		}
+		
+		if (small >= mapMax)
+		{
+			mapMax = small + 1;
+		}
+	}
+	
+	/**
+	 * @return the next small value that will be handed out
+	 */
+	public int getMapMax()
+	{
+		return mapMax;
+	}
+	
+	/**
+	 * @return number of large values that have small values
+	 */
+	public int size()
+	{
+		return denseSize + largeToSmallMap.size();
+	}
+	
+	/**
+	 * @return the large values in ascending order.  Only the first size() entries are values, and
+	 * the array is reused by the next call.
+	 */
+	public int[] sortedLargeValues()
+	{
+		int[] sortedLargeValues;
+		int[] sortedKeys;
+		int count = 0;
+		
+		if (denseMap == null)
+		{
+			return largeToSmallMap.sortedKeys();
+		}
+		
+		sortedLargeValues 	= new int[size()];
+		sortedKeys 			= largeToSmallMap.sortedKeys();
+		
+		for (int i = 0; i < denseMap.length; i++)
+		{
+			if (denseMap[i] != UNASSIGNED)
+			{
+				sortedLargeValues[count++] = i;
+			}
+		}
+		
+		//Only values outside [0, keyCount) are left in the hash map, so they sort around the dense ones
+		System.arraycopy(sortedKeys, 0, sortedLargeValues, count, largeToSmallMap.size());
+		Arrays.sort(sortedLargeValues);
+		
+		return sortedLargeValues;
+	}
+	
+	/**
+	 * Saves the table in the binary format described above, replacing file if it exists.  The table is written
+	 * to a temporary file beside file and then renamed over it, so a write that fails part way leaves the old
+	 * file as it was.
+	 * 
+	 * @param file file to write
+	 * @throws IOException if file cannot be written
+	 */
+	public void write(File file) throws IOException
+	{
+		File temporaryFile 	= new File(file.getPath() + ".tmp");
+		int size 				= size();
+		int[] sortedKeys 	= sortedLargeValues();
+		ByteBuffer byteBuffer = ByteBuffer.allocate((HEADER_INTS + 2 * size) * 4);
+		IntBuffer intBuffer 	= byteBuffer.asIntBuffer();
+		OutputStream outputStream;
+		
+		intBuffer.put(MAGIC).put(VERSION).put(mapMax).put(size);
+		
+		for (int i = 0; i < size; i++)
+		{
+			intBuffer.put(sortedKeys[i]).put(get(sortedKeys[i]));
+		}
+		
+		outputStream = new FileOutputStream(temporaryFile);
+		
+		try
+		{
+			outputStream.write(byteBuffer.array());
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		
+		//File.renameTo will not replace an existing file everywhere
+		if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file)))
+		{
+			throw new IOException("Could not replace " + file);
+		}
+	}
+	
+	/**
+	 * Appends every entry whose small value is fromSmall or more to the end of a file already written by write(), 
+	 * in the order the small values were given out.  read() and MappedRemapTable pick the appended entries up,
+	 * so a table that only grows can be saved without rewriting the entries already in the file.
+	 * 
+	 * @param file file written by write()
+	 * @param fromSmall smallest small value not already in file, usually the mapMax the file was read with
+	 * @throws IOException if file cannot be written
+	 */
+	public void appendTo(File file, int fromSmall) throws IOException
+	{
+		int size 				= size();
+		int[] sortedKeys 	= sortedLargeValues();
+		long[] newEntries 	= new long[size];
+		int newCount 		= 0;
+		int small;
+		ByteBuffer byteBuffer;
+		RandomAccessFile randomAccessFile;
+		long appendStart;
+		
+		for (int i = 0; i < size; i++)
+		{
+			small = get(sortedKeys[i]);
+			
+			if (small >= fromSmall)
+			{
+				newEntries[newCount++] = ((long)small << 32) | (sortedKeys[i] & 0xFFFFFFFFL);
+			}
+		}
+		
+		Arrays.sort(newEntries, 0, newCount);
+		byteBuffer = ByteBuffer.allocate(newCount * 8);
+		
+		for (int i = 0; i < newCount; i++)
+		{
+			byteBuffer.putInt((int)newEntries[i]).putInt((int)(newEntries[i] >> 32));
+		}
+		
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		
+		try
+		{
+			//The base count in the header gives where the append region starts
+			randomAccessFile.seek(12);
+			appendStart = HEADER_INTS * 4 + (long)randomAccessFile.readInt() * 8;
+			
+			//Wait for any MappedRemapTable appending to the same file
+			lockAppendRegion(randomAccessFile.getChannel(), appendStart);
+			
+			//A pair left half written by an earlier run is written over
+			randomAccessFile.seek(appendStart + ((randomAccessFile.length() - appendStart) / 8) * 8);
+			randomAccessFile.write(byteBuffer.array());
+		}
+		finally
+		{
+			//Closing the file releases the lock
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * Takes an exclusive lock on the append region of a RemapTable file, from appendStart to the end of any file
+	 * it could grow into.  appendTo and MappedRemapTable both lock through here, so they always lock the same
+	 * region and wait on each other while leaving the header and base region free to be read.
+	 * 
+	 * @param fileChannel channel of the file, opened for writing
+	 * @param appendStart byte offset of the first pair after the base region
+	 * @return the lock, released by the caller or by closing the channel
+	 * @throws IOException if the file cannot be locked
+	 */
+	static FileLock lockAppendRegion(FileChannel fileChannel, long appendStart) throws IOException
+	{
+		return fileChannel.lock(appendStart, Long.MAX_VALUE - appendStart, false);
+	}
+	
+	/**
+	 * Loads a table saved by write().
+	 * 
+	 * @param file file written by write()
+	 * @return the loaded table
+	 * @throws FileNotFoundException if file does not exist
+	 * @throws IOException if file cannot be read or is not a remap table
+	 */
+	public static RemapTable read(File file) throws FileNotFoundException, IOException
+	{
+		long fileLength = file.length();
+		byte[] bytes;
+		int[] ints;
+		int count;
+		IntIntHashMap largeToSmallMap;
+		RemapTable remapTable;
+		DataInputStream dataInputStream;
+		
+		if (fileLength > Integer.MAX_VALUE || fileLength < HEADER_INTS * 4)
+		{
+			throw new IOException(file + " is not a remap table");
+		}
+		
+		bytes = new byte[(int)fileLength];
+		dataInputStream = new DataInputStream(new FileInputStream(file));
+		
+		try
+		{
+			dataInputStream.readFully(bytes);
+		}
+		finally
+		{
+			dataInputStream.close();
+		}
+		
+		ints = new int[bytes.length / 4];
+		ByteBuffer.wrap(bytes).asIntBuffer().get(ints);
+		
+		if (ints[0] != MAGIC)
+		{
+			throw new IOException(file + " is not a remap table");
+		}
+		
+		if (ints[1] != VERSION)
+		{
+			throw new IOException(file + " is remap table version " + ints[1] + ", expected " + VERSION);
+		}
+		
+		count = ints[3];
+		
+		if (ints.length < HEADER_INTS + 2 * count)
+		{
+			throw new IOException(file + " is shorter than its " + count + " entries");
+		}
+		
+		largeToSmallMap = new IntIntHashMap(count);
+		
+		for (int i = HEADER_INTS; i < HEADER_INTS + 2 * count; i = i + 2)
+		{
+			largeToSmallMap.put(ints[i], ints[i + 1]);
+		}
+		
+		remapTable = new RemapTable(largeToSmallMap, ints[2]);
+		
+		//Whole pairs after the sorted ones were appended by a MappedRemapTable
+		for (int i = HEADER_INTS + 2 * count; i + 1 < ints.length; i = i + 2)
+		{
+			remapTable.put(ints[i], ints[i + 1]);
+		}
+		
+		return remapTable;
+	}
+	
+	/**
+	 * Checks whether file starts with the remap table magic number.
+	 * 
+	 * @param file file to check
+	 * @return true if file is a remap table
+	 * @throws IOException if file cannot be read
+	 */
+	public static boolean isRemapTable(File file) throws IOException
+	{
+		byte[] header = new byte[4];
+		InputStream inputStream;
+		DataInputStream dataInputStream;
+		
+		if (file.length() < HEADER_INTS * 4)
+		{
+			return false;
+		}
+		
+		inputStream 		= new FileInputStream(file);
+		dataInputStream 	= new DataInputStream(inputStream);
+		
+		try
+		{
+			dataInputStream.readFully(header);
+		}
+		finally
+		{
+			dataInputStream.close();
+		}
+		
+		return Arrays.equals(header, ByteBuffer.allocate(4).putInt(MAGIC).array());
+	}
+}
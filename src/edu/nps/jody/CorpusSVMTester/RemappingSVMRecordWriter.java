@@ -0,0 +1,183 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An SVMRecordWriter that remaps each utterance's minimum perfect hash values through an
+ * SVMToSmallSVM as the utterance is written, and writes the small SVM line directly.  This fuses
+ * TextToSVM and SVMToSmallSVM into a single pass: the large SVM files are never written and
+ * never read back.
+ * 
+ * Features are given to SVMToSmallSVM.checkFeature in ascending order of their large values,
+ * which is the order SVMToSmallSVM.convert sees them in, so the small values handed out and the
+ * lines written are the same as the two pass pipeline produces when files are processed in the 
+ * same order.  Every record is remapped while holding the SVMToSmallSVM's lock, so writers for
+ * several files may share one SVMToSmallSVM across threads, although the small values handed out
+ * then depend on the order the threads get there.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class RemappingSVMRecordWriter implements SVMRecordWriter
+{
+	//Data Members
+	private static final byte[] 	LINE_SEPARATOR = System.getProperty("line.separator").getBytes();
+	private SVMToSmallSVM 		svmToSmallSVM;
+	private LibSVMFileWriter 		libSVMFileWriter;
+	private long[] 					pairs;
+	
+	//Constructors
+	/**
+	 * Sole constructor for RemappingSVMRecordWriter.
+	 * 
+	 * @param svmToSmallSVM converter holding the large to small map, shared by every file in the run
+	 * @param smallFile small SVM file to write, replaced if it already exists
+	 * @param bufferSize number of bytes held before they are written to the file
+	 * @throws FileNotFoundException if smallFile cannot be created
+	 */
+	public RemappingSVMRecordWriter(SVMToSmallSVM svmToSmallSVM, File smallFile, int bufferSize) throws FileNotFoundException
+	{
+		this.svmToSmallSVM 	= svmToSmallSVM;
+		libSVMFileWriter 		= new LibSVMFileWriter(smallFile, bufferSize);
+		pairs 						= new long[64];
+	}
+	
+	//Methods
+	/**
+	 * Remaps and writes one utterance from its CHD counts.  Empty utterances are not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param chdCounts primitive map of CHD miminum perfect hash values mapped to number of occurrences
+	 * @throws IOException if the line cannot be written
+	 */
+	public void writeCHDCounts(int label, IntIntHashMap chdCounts) throws IOException
+	{
+		int size = chdCounts.size();
+		int pairCount = 0;
+		int smallFeature;
+		int[] sortedKeys;
+		
+		if (size == 0)
+		{
+			return;
+		}
+		
+		sortedKeys = chdCounts.sortedKeys();
+		ensureCapacity(size);
+		
+		synchronized (svmToSmallSVM)
+		{
+			//Small feature in the high half so sorting the longs sorts by small feature
+			for (int i = 0; i < size; i++)
+			{
+				smallFeature = svmToSmallSVM.checkFeature(sortedKeys[i]);
+				
+				if (smallFeature != SVMToSmallSVM.PRUNED_FEATURE)
+				{
+					pairs[pairCount++] = ((long)smallFeature << 32) | (chdCounts.get(sortedKeys[i], 0) & 0xFFFFFFFFL);
+				}
+			}
+		}
+		
+		writeSortedPairs(label, pairCount);
+	}
+	
+	/**
+	 * Remaps and writes one utterance from parallel arrays of features and counts.  Empty utterances are 
+	 * not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param features minimum perfect hash values in ascending order
+	 * @param counts counts[i] is the number of occurrences of features[i]
+	 * @param length number of entries of features and counts to write
+	 * @throws IOException if the line cannot be written
+	 */
+	public void writeRecord(int label, int[] features, int[] counts, int length) throws IOException
+	{
+		int pairCount = 0;
+		int smallFeature;
+		
+		if (length == 0)
+		{
+			return;
+		}
+		
+		ensureCapacity(length);
+		
+		synchronized (svmToSmallSVM)
+		{
+			for (int i = 0; i < length; i++)
+			{
+				smallFeature = svmToSmallSVM.checkFeature(features[i]);
+				
+				if (smallFeature != SVMToSmallSVM.PRUNED_FEATURE)
+				{
+					pairs[pairCount++] = ((long)smallFeature << 32) | (counts[i] & 0xFFFFFFFFL);
+				}
+			}
+		}
+		
+		writeSortedPairs(label, pairCount);
+	}
+	
+	/**
+	 * Writes anything still buffered and closes the small SVM file.
+	 * 
+	 * @throws IOException if the buffer cannot be written or the file cannot be closed
+	 */
+	public void close() throws IOException
+	{
+		libSVMFileWriter.close();
+	}
+	
+	/**
+	 * Sorts the first length packed pairs by small feature and writes them as one small SVM line,
+	 * "label feature:count feature:count", just as SVMToSmallSVM.convert formats it.
+	 * 
+	 * @param label label of the line
+	 * @param length number of packed pairs
+	 * @throws IOException if the line cannot be written
+	 */
+	private void writeSortedPairs(int label, int length) throws IOException
+	{
+		Arrays.sort(pairs, 0, length);
+		
+		libSVMFileWriter.writeInt(label);
+		
+		for (int i = 0; i < length; i++)
+		{
+			libSVMFileWriter.writeByte(SVMToSmallSVM.PAIRS_DELIM.charAt(0));
+			libSVMFileWriter.writeInt((int)(pairs[i] >> 32));
+			libSVMFileWriter.writeByte(SVMToSmallSVM.FEATURE_COUNT_DELIM);
+			libSVMFileWriter.writeInt((int)pairs[i]);
+		}
+		
+		libSVMFileWriter.writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+	}
+	
+	/**
+	 * Grows the packed pair array to hold at least length pairs.
+	 * 
+	 * @param length number of pairs needed
+	 */
+	private void ensureCapacity(int length)
+	{
+		if (length > pairs.length)
+		{
+			pairs = new long[Math.max(length, pairs.length << 1)];
+		}
+	}
+}
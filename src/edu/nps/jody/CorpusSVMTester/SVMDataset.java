@@ -0,0 +1,225 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The small SVM files of a directory held in memory, one author (file) at a time, so that every group,
+ * group size and slice can be made from them without reading the files again.  Each author's file is
+ * kept as it is, in one byte array, along with the offset of the start of each utterance (line), so an
+ * utterance costs 4 bytes of index on top of its own bytes.  Authors are in file name order.
+ *
+ * An SVMDataset is not changed once loaded, so any number of threads can read it at once.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class SVMDataset
+{
+	//Data Members
+	private String[] 	authorNames;
+	private byte[][] 	authorBytes;
+	private int[][] 		lineStarts;
+	private int[] 		lineCounts;
+
+	//Constructors
+	/**
+	 * Sole constructor for SVMDataset, see load.
+	 */
+	private SVMDataset(int authorCount)
+	{
+		authorNames 	= new String[authorCount];
+		authorBytes 	= new byte[authorCount][];
+		lineStarts 		= new int[authorCount][];
+		lineCounts 		= new int[authorCount];
+	}
+
+	//Methods
+	/**
+	 * Reads every small SVM file directly in smallSVMDirectory.  Subdirectories, such as the slices of
+	 * earlier runs, are left out, as are blank lines.
+	 *
+	 * @param smallSVMDirectory directory of small SVM files, one per author
+	 * @return the small SVM files in memory
+	 * @throws IOException if smallSVMDirectory cannot be listed or a file cannot be read
+	 */
+	public static SVMDataset load(File smallSVMDirectory) throws IOException
+	{
+		File[] fileArray = smallSVMDirectory.listFiles();
+		SVMDataset svmDataset;
+		int authorCount = 0;
+
+		if (fileArray == null)
+		{
+			throw new IOException(smallSVMDirectory + " is not a directory");
+		}
+
+		Arrays.sort(fileArray);
+
+		for (int i = 0; i < fileArray.length; i++)
+		{
+			if (fileArray[i].isFile())
+			{
+				fileArray[authorCount++] = fileArray[i];
+			}
+		}
+
+		svmDataset = new SVMDataset(authorCount);
+
+		for (int i = 0; i < authorCount; i++)
+		{
+			svmDataset.loadAuthor(i, fileArray[i]);
+		}
+
+		return svmDataset;
+	}
+
+	/**
+	 * Reads one author's file and finds the start of each of its lines.
+	 *
+	 * @param author index of the author
+	 * @param file small SVM file of the author
+	 * @throws IOException if file cannot be read or is over 2GB
+	 */
+	private void loadAuthor(int author, File file) throws IOException
+	{
+		DataInputStream dataInputStream;
+		byte[] bytes;
+		int[] starts = new int[64];
+		int count = 0;
+		int start = 0;
+
+		if (file.length() > Integer.MAX_VALUE)
+		{
+			throw new IOException(file + " is too large to hold in memory");
+		}
+
+		bytes 					= new byte[(int)file.length()];
+		dataInputStream 	= new DataInputStream(new FileInputStream(file));
+
+		try
+		{
+			dataInputStream.readFully(bytes);
+		}
+		finally
+		{
+			dataInputStream.close();
+		}
+
+		for (int i = 0; i <= bytes.length; i++)
+		{
+			if (i == bytes.length || bytes[i] == '\n' || bytes[i] == '\r')
+			{
+				if (i > start)
+				{
+					if (count == starts.length)
+					{
+						starts = Arrays.copyOf(starts, starts.length << 1);
+					}
+
+					starts[count++] = start;
+				}
+
+				start = i + 1;
+			}
+		}
+
+		authorNames[author] 	= file.getName();
+		authorBytes[author] 	= bytes;
+		lineStarts[author] 		= Arrays.copyOf(starts, count);
+		lineCounts[author] 		= count;
+	}
+
+	/**
+	 * @return number of authors (files)
+	 */
+	public int getAuthorCount()
+	{
+		return authorNames.length;
+	}
+
+	/**
+	 * @param author index of the author
+	 * @return file name of the author
+	 */
+	public String getAuthorName(int author)
+	{
+		return authorNames[author];
+	}
+
+	/**
+	 * @param author index of the author
+	 * @return number of utterances (lines) of the author
+	 */
+	public int getUtteranceCount(int author)
+	{
+		return lineCounts[author];
+	}
+
+	/**
+	 * @param author index of the author
+	 * @return the bytes of the author's file, which must not be changed
+	 */
+	public byte[] getBytes(int author)
+	{
+		return authorBytes[author];
+	}
+
+	/**
+	 * @param author index of the author
+	 * @param utterance index of the utterance
+	 * @return offset in getBytes(author) of the first byte of the utterance
+	 */
+	public int getUtteranceStart(int author, int utterance)
+	{
+		return lineStarts[author][utterance];
+	}
+
+	/**
+	 * @param author index of the author
+	 * @param utterance index of the utterance
+	 * @return offset in getBytes(author) one past the last byte of the utterance, leaving out the line separator
+	 */
+	public int getUtteranceEnd(int author, int utterance)
+	{
+		byte[] bytes 	= authorBytes[author];
+		int end 			= lineStarts[author][utterance];
+
+		while (end < bytes.length && bytes[end] != '\n' && bytes[end] != '\r')
+		{
+			end++;
+		}
+
+		return end;
+	}
+
+	/**
+	 * Writes an utterance as one line.
+	 *
+	 * @param author index of the author
+	 * @param utterance index of the utterance
+	 * @param libSVMFileWriter writer to write the line to
+	 * @param lineSeparator bytes to end the line with
+	 * @throws IOException if the line cannot be written
+	 */
+	public void writeUtterance(int author, int utterance, LibSVMFileWriter libSVMFileWriter, byte[] lineSeparator) throws IOException
+	{
+		int start = lineStarts[author][utterance];
+
+		libSVMFileWriter.writeBytes(authorBytes[author], start, getUtteranceEnd(author, utterance) - start);
+		libSVMFileWriter.writeBytes(lineSeparator, 0, lineSeparator.length);
+	}
+}
@@ -0,0 +1,17 @@
+/**
+ * 
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+/**
+ * File formats TextToSVM can write the large SVM files in.  SVMToSmallSVM reads
+ * either one and tells them apart by the BinarySVMFileWriter header.
+ * 
+ * @author jody
+ *
+ */
+public enum SVMFormat 
+{
+	 LIBSVM,
+	 BINARY;
+}
@@ -0,0 +1,180 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/**
+ * Converts SVM files between libSVM sparse formatted text and the binary format written by
+ * BinarySVMFileWriter.  This is a debugging aid: the pipeline itself never needs to convert, 
+ * since SVMToSmallSVM reads either format.  A binary file written by TextToSVM converts back
+ * to exactly the text TextToSVM would have written.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class SVMFormatConverter 
+{
+	//Constructors
+	
+	
+	//Methods
+	/**
+	 * Converts a binary SVM file into libSVM sparse formatted text.
+	 * 
+	 * @param binaryFile file written by BinarySVMFileWriter
+	 * @param libSVMFile text file to write, replaced if it already exists
+	 * @throws FileNotFoundException if binaryFile does not exist
+	 * @throws IOException if binaryFile cannot be read or libSVMFile cannot be written
+	 */
+	public static void binaryToLibSVM(File binaryFile, File libSVMFile) throws FileNotFoundException, IOException
+	{
+		BinarySVMFileReader reader = new BinarySVMFileReader(binaryFile);
+		LibSVMFileWriter writer = null;
+		
+		try
+		{
+			writer = new LibSVMFileWriter(libSVMFile);
+			
+			while (reader.next())
+			{
+				writer.writeRecord(reader.getLabel(), reader.getFeatures(), reader.getCounts(), reader.getLength());
+			}
+		}
+		finally
+		{
+			reader.close();
+			
+			if (writer != null)
+			{
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Converts a libSVM sparse formatted text file into a binary SVM file.  Pairs on a line do not have to
+	 * be in order.
+	 * 
+	 * @param libSVMFile libSVM sparse formatted text file with integer counts
+	 * @param binaryFile binary file to write, replaced if it already exists
+	 * @throws FileNotFoundException if libSVMFile does not exist
+	 * @throws IOException if libSVMFile cannot be read or is malformed, or binaryFile cannot be written
+	 */
+	public static void libSVMToBinary(File libSVMFile, File binaryFile) throws FileNotFoundException, IOException
+	{
+		BufferedReader bufferedReader = new BufferedReader(new FileReader(libSVMFile));
+		BinarySVMFileWriter writer = null;
+		StringTokenizer tokenizer;
+		String line;
+		String pair;
+		int delimIndex;
+		int label;
+		int length;
+		long[] pairs = new long[64];
+		int[] features = new int[64];
+		int[] counts = new int[64];
+		
+		try
+		{
+			writer = new BinarySVMFileWriter(binaryFile);
+			
+			while ((line = bufferedReader.readLine()) != null)
+			{
+				tokenizer = new StringTokenizer(line);
+				
+				if (!tokenizer.hasMoreTokens())
+				{
+					continue;
+				}
+				
+				label 	= Integer.parseInt(tokenizer.nextToken());
+				length 	= 0;
+				
+				while (tokenizer.hasMoreTokens())
+				{
+					pair = tokenizer.nextToken();
+					delimIndex = pair.indexOf(SVMToSmallSVM.FEATURE_COUNT_DELIM);
+					
+					if (delimIndex < 0)
+					{
+						throw new IOException(pair + " is a malformed pair in " + libSVMFile);
+					}
+					
+					if (length == pairs.length)
+					{
+						pairs = Arrays.copyOf(pairs, length << 1);
+					}
+					
+					//Feature in the high half so sorting the longs sorts by feature
+					pairs[length] = ((long)Integer.parseInt(pair.substring(0, delimIndex)) << 32) | (Integer.parseInt(pair.substring(delimIndex + 1)) & 0xFFFFFFFFL);
+					length++;
+				}
+				
+				Arrays.sort(pairs, 0, length);
+				
+				if (length > features.length)
+				{
+					features 	= new int[pairs.length];
+					counts 		= new int[pairs.length];
+				}
+				
+				for (int i = 0; i < length; i++)
+				{
+					features[i] 	= (int)(pairs[i] >> 32);
+					counts[i] 		= (int)pairs[i];
+				}
+				
+				writer.writeRecord(label, features, counts, length);
+			}
+		}
+		finally
+		{
+			bufferedReader.close();
+			
+			if (writer != null)
+			{
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * --tolibsvm binaryFile libSVMFile
+	 * --tobinary libSVMFile binaryFile
+	 * 
+	 * @param args
+	 * @throws IOException 
+	 * @throws FileNotFoundException 
+	 */
+	public static void main(String[] args) throws FileNotFoundException, IOException
+	{
+		if (args.length == 3 && args[0].equalsIgnoreCase("--tolibsvm"))
+		{
+			binaryToLibSVM(new File(args[1]), new File(args[2]));
+		}
+		else if (args.length == 3 && args[0].equalsIgnoreCase("--tobinary"))
+		{
+			libSVMToBinary(new File(args[1]), new File(args[2]));
+		}
+		else
+		{
+			System.out.println("Usage: SVMFormatConverter --tolibsvm binaryFile libSVMFile");
+			System.out.println("       SVMFormatConverter --tobinary libSVMFile binaryFile");
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.IOException;
+
+/**
+ * Something that SVM records (one label plus its feature:count pairs per utterance) can be
+ * written to.  LibSVMFileWriter writes them as libSVM sparse formatted text and 
+ * BinarySVMFileWriter writes them in the compact binary format.
+ * 
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public interface SVMRecordWriter 
+{
+	/**
+	 * Writes one utterance from its CHD counts.  Empty utterances are not written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param chdCounts primitive map of feature numbers mapped to number of occurrences
+	 * @throws IOException if the record cannot be written
+	 */
+	public void writeCHDCounts(int label, IntIntHashMap chdCounts) throws IOException;
+	
+	/**
+	 * Writes one utterance from parallel arrays of features and counts.  Empty utterances are not 
+	 * written at all.
+	 * 
+	 * @param label integer id representing the name of the original file the utterance was drawn from
+	 * @param features feature numbers, non-negative and in ascending order
+	 * @param counts counts[i] is the number of occurrences of features[i]
+	 * @param length number of entries of features and counts to write
+	 * @throws IOException if the record cannot be written
+	 */
+	public void writeRecord(int label, int[] features, int[] counts, int length) throws IOException;
+	
+	/**
+	 * Writes anything still buffered and closes the underlying file.
+	 * 
+	 * @throws IOException if the buffer cannot be written or the file cannot be closed
+	 */
+	public void close() throws IOException;
+}
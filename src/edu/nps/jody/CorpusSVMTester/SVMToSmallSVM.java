@@ -22,15 +22,15 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.SortedMap;
 import java.util.StringTokenizer;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class takes already created libSVM sparse formatted file containing
@@ -51,8 +51,21 @@ public class SVMToSmallSVM
 	public static final String						PAIRS_DELIM						=" ";//TODO make this selectable in the constructur, but still final
 	public static final char						FEATURE_COUNT_DELIM = ':';//TODO make this selectable in the constructor, but still final
 	public static final String 						SMALL_SVM_DIR_NAME 	= "smallSVMFiles";
-	private HashMap<Integer, Integer> largeToSmallHashMap;
-	private int 												mapMax = 1;
+	public static final int 							PRUNED_FEATURE 			= -1;
+	private static final byte[] 						LINE_SEPARATOR 			= System.getProperty("line.separator").getBytes();
+	private RemapTable 									largeToSmallMap;
+	private volatile ConcurrentRemapTable 		concurrentMap;
+	private MappedRemapTable 						mappedMap;
+	private int 												denseKeyCount = 0;
+	private RemapOrder 									remapOrder = RemapOrder.FIRST_SEEN;
+	private int 												minDocumentFrequency = 1;
+	private int 												minTotalCount = 1;
+	private int 												maxFeatures = 0;
+	private IntIntHashMap 								keptFeatures;
+	private int 												prunedFeatureCount;
+	private long 												prunedNonzeroCount;
+	private int 												savedMapMax = 1;
+	private boolean 											incremental = false;
 	public File													largeToSmallHashMapFile	= null;
 	
 	//FIXME maybe making a blank hashmap when a file is expected is not a good idea as a fallback plan
@@ -83,11 +96,10 @@ public class SVMToSmallSVM
 	public SVMToSmallSVM()
 	{
 		largeToSmallHashMapFile = new File("largeToSmallHashMapFile");
-		largeToSmallHashMap = new HashMap<Integer, Integer>();
+		largeToSmallMap = new RemapTable();
 	}
 	
 	//Methods
-	//FIXME figure out why we can write, but not read object file of hashMap
 	/**
 	 * Creates a hash map of Integer keys made up of minimum perfect hash values
 	 * and Integer values made up of sequential numbers that attempt to shrink down
@@ -109,48 +121,435 @@ public class SVMToSmallSVM
 	}
 	
 	/**
-	 * Creates a hash map of Integer keys made up of minimum perfect hash values
-	 * and Integer values made up of sequential numbers that attempt to shrink down
-	 * the search space to a size that libLinear can handle.
+	 * Loads the map of minimum perfect hash values to sequential small values from a file.  Files written 
+	 * by RemapTable.write are loaded in one bulk read, with mapMax taken from the file.  Older files 
+	 * holding a serialized HashMap&lt;Integer, Integer&gt; are still accepted and copied into a RemapTable.
 	 * 
-	 * @param filename file containing serialized hash map
-	 * @throws FileNotFoundException if there is no hash map file, make a new hash map
+	 * @param largeToSmallHashMapFile file containing the saved map
+	 * @throws FileNotFoundException if there is no map file, make a new map
 	 * @throws IOException if permissions or path issues interfere with getting file, then 
 	 * stop the process
-	 * @throws ClassNotFoundException if the file does not contain a valid 
+	 * @throws ClassNotFoundException if the file is neither a RemapTable nor a valid 
 	 * HashMap<Integer, Integer> class, then stop the process
 	 */
 	@SuppressWarnings("unchecked")
 	public void initlializeLargeToSmallHashMap(File largeToSmallHashMapFile) throws IOException, ClassNotFoundException
 	{
-		//File largeToSmallHashMapFile = new File(filename);
+		HashMap<Integer, Integer> largeToSmallHashMap;
+		Iterator<Integer> iterator;
+		Integer key;
 		
 		try
 		{
-			//Load hash map from a file
+			if (RemapTable.isRemapTable(largeToSmallHashMapFile))
+			{
+				largeToSmallMap 	= RemapTable.read(largeToSmallHashMapFile);
+				savedMapMax 		= largeToSmallMap.getMapMax();
+				return;
+			}
+			
+			//Load an older serialized hash map from a file
 			InputStream inputStream = new FileInputStream(largeToSmallHashMapFile);
 			ObjectInputStream objectInputStream = new ObjectInputStream(inputStream);
 			largeToSmallHashMap = (HashMap<Integer, Integer>)objectInputStream.readObject();
 			objectInputStream.close();
 			
-			//Find maximum value in the values set of the hash map
-			Set<Integer> mapSet = new TreeSet<Integer>(largeToSmallHashMap.keySet());
-			mapMax = Collections.max(mapSet);
+			largeToSmallMap = new RemapTable(new IntIntHashMap(largeToSmallHashMap.size()), 1);
+			iterator = largeToSmallHashMap.keySet().iterator();
 			
-			//Ensure that mapMax is never 0;
-			if (mapMax < 1)
+			//put() moves mapMax past the largest small value
+			while (iterator.hasNext())
 			{
-				mapMax = 1;
+				key = iterator.next();
+				largeToSmallMap.put(key, largeToSmallHashMap.get(key));
 			}
 		}
 		catch (FileNotFoundException f)
 		{
-			//If there is no file, then create a new hashmap
-			largeToSmallHashMap = new HashMap<Integer, Integer>();
-			mapMax = 1;
+			//If there is no file, then create a new map
+			largeToSmallMap = new RemapTable();
 		}
 	}
 	
+	/**
+	 * @return the map of minimum perfect hash values to sequential small values built so far on the heap.  This
+	 * is not the mapped map, see setMappedRemap.
+	 */
+	public RemapTable getRemapTable()
+	{
+		return largeToSmallMap;
+	}
+	
+	/**
+	 * Looks small values up in, and appends new ones to, a memory mapped RemapTable file instead of a map 
+	 * on the heap.  Nothing is loaded up front, and any number of processes can share the same file, so
+	 * this suits many short conversions run against one map.  The file becomes largeToSmallHashMapFile,
+	 * and is made if it does not exist.  The map already on the heap is not used while the mapped one is.
+	 * 
+	 * @param mappedFile RemapTable file to map
+	 * @throws IOException if mappedFile cannot be opened or is not a RemapTable file
+	 */
+	public void setMappedRemap(File mappedFile) throws IOException
+	{
+		if (mappedMap != null)
+		{
+			mappedMap.close();
+		}
+		
+		mappedMap 					= new MappedRemapTable(mappedFile);
+		largeToSmallHashMapFile 	= mappedFile;
+	}
+	
+	/**
+	 * Picks the order small values are given out in.  FIRST_SEEN, the default, gives them out as features are
+	 * met during conversion.  FREQUENCY first counts every large SVM file of a directory and gives the lowest
+	 * small values to the features found on the most lines, so the busiest features sit together at the front
+	 * of liblinear's weight vectors and take the fewest digits in the small SVM files.  Features that already
+	 * have small values keep them.  FREQUENCY applies to the processLargeSVMDirectory methods, which read every
+	 * file twice to do it.
+	 * 
+	 * @param remapOrder order to give out small values in
+	 */
+	public void setRemapOrder(RemapOrder remapOrder)
+	{
+		this.remapOrder = remapOrder;
+	}
+	
+	/**
+	 * @return order small values are given out in
+	 */
+	public RemapOrder getRemapOrder()
+	{
+		return remapOrder;
+	}
+	
+	/**
+	 * Drops rare features from the small SVM files.  When any limit is set, the processLargeSVMDirectory methods
+	 * count every large SVM file first (see setRemapOrder) and keep only the features found on at least
+	 * minDocumentFrequency lines, with counts adding up to at least minTotalCount, and, when maxFeatures is more
+	 * than 0, only the maxFeatures most frequent of those.  Every other feature is left out of the small SVM
+	 * lines and never given a small value.  Features that already have small values are always kept and do not
+	 * count against maxFeatures.  The fused text to small SVM mode never counts the corpus, so it cannot prune.
+	 * 
+	 * @param minDocumentFrequency fewest lines a kept feature appears on, 1 for no limit
+	 * @param minTotalCount smallest total count of a kept feature, 1 for no limit
+	 * @param maxFeatures most new features to keep, 0 for no limit
+	 */
+	public void setPruning(int minDocumentFrequency, int minTotalCount, int maxFeatures)
+	{
+		this.minDocumentFrequency 	= minDocumentFrequency;
+		this.minTotalCount 			= minTotalCount;
+		this.maxFeatures 				= maxFeatures;
+	}
+	
+	/**
+	 * @return true if any pruning limit is set
+	 */
+	public boolean isPruning()
+	{
+		return minDocumentFrequency > 1 || minTotalCount > 1 || maxFeatures > 0;
+	}
+	
+	/**
+	 * Picks the features to keep from featureFrequencies, using the limits given to setPruning.  Every other
+	 * feature is pruned from then on.
+	 * 
+	 * @param featureFrequencies counts of the features to be converted
+	 */
+	public void selectFeatures(FeatureFrequencies featureFrequencies)
+	{
+		int[] features = featureFrequencies.featuresByFrequency();
+		int newFeatureCount = 0;
+		long nonzeroCount = 0;
+		
+		keptFeatures 			= new IntIntHashMap(features.length);
+		prunedFeatureCount 	= 0;
+		prunedNonzeroCount 	= 0;
+		
+		for (int i = 0; i < features.length; i++)
+		{
+			//Each line a feature is on is one nonzero it puts in the small SVM files
+			nonzeroCount = nonzeroCount + featureFrequencies.getDocumentFrequency(features[i]);
+			
+			if (isMapped(features[i]))
+			{
+				keptFeatures.put(features[i], 0);
+			}
+			else if (featureFrequencies.getDocumentFrequency(features[i]) >= minDocumentFrequency
+					&& featureFrequencies.getTotalCount(features[i]) >= minTotalCount
+					&& (maxFeatures <= 0 || newFeatureCount < maxFeatures))
+			{
+				keptFeatures.put(features[i], 0);
+				newFeatureCount++;
+			}
+			else
+			{
+				prunedFeatureCount++;
+				prunedNonzeroCount = prunedNonzeroCount + featureFrequencies.getDocumentFrequency(features[i]);
+			}
+		}
+		
+		System.out.println("Pruning kept " + keptFeatures.size() + " of " + features.length + " features, pruned " 
+				+ prunedFeatureCount + " features and " + prunedNonzeroCount + " of " + nonzeroCount + " nonzeros");
+	}
+	
+	/**
+	 * @return number of features pruned by the last selectFeatures
+	 */
+	public int getPrunedFeatureCount()
+	{
+		return prunedFeatureCount;
+	}
+	
+	/**
+	 * @return number of feature:count pairs the features pruned by the last selectFeatures would have written
+	 */
+	public long getPrunedNonzeroCount()
+	{
+		return prunedNonzeroCount;
+	}
+	
+	/**
+	 * @param feature Integer value from the minimum perfect hash membership checks.
+	 * @return true if feature already has a small value
+	 */
+	private boolean isMapped(int feature)
+	{
+		if (mappedMap != null)
+		{
+			try
+			{
+				return mappedMap.get(feature) != RemapTable.NOT_MAPPED;
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Could not use remap table " + mappedMap.getFile(), e);
+			}
+		}
+		
+		return largeToSmallMap.get(feature) != RemapTable.NOT_MAPPED;
+	}
+	
+	/**
+	 * Counts the features of every large SVM file in fileArray on the workers of executorService.  Each file's
+	 * counts are added to the total as soon as that file is done, so only the files being counted are held
+	 * apart from the total.  The total does not depend on the order the files finish in.
+	 * 
+	 * @param fileArray large SVM files, directories are skipped
+	 * @param executorService pool to count the files on, or null to count them on the calling thread
+	 * @return the counts of every file added together
+	 * @throws IOException if any file cannot be read
+	 */
+	public static FeatureFrequencies countFeatures(File[] fileArray, ExecutorService executorService) throws IOException
+	{
+		final FeatureFrequencies featureFrequencies = new FeatureFrequencies();
+		Vector<Future<Void>> futureVector = new Vector<Future<Void>>();
+		
+		if (executorService == null)
+		{
+			for (int i=0; i < fileArray.length; i++)
+			{
+				if (fileArray[i].isFile())
+				{
+					featureFrequencies.addFile(fileArray[i]);
+				}
+			}
+			
+			return featureFrequencies;
+		}
+		
+		for (int i=0; i < fileArray.length; i++)
+		{
+			final File largeFile = fileArray[i];
+			
+			if (largeFile.isFile())
+			{
+				futureVector.add(executorService.submit(new Callable<Void>()
+				{
+					public Void call() throws IOException
+					{
+						FeatureFrequencies fileFrequencies = new FeatureFrequencies();
+						
+						fileFrequencies.addFile(largeFile);
+						
+						synchronized (featureFrequencies)
+						{
+							featureFrequencies.add(fileFrequencies);
+						}
+						
+						return null;
+					}
+				}));
+			}
+		}
+		
+		TextToSVM.waitForFutures(futureVector);
+		
+		return featureFrequencies;
+	}
+	
+	/**
+	 * Gives a small value to every counted feature that does not have one yet, most frequent first.
+	 * 
+	 * @param featureFrequencies counts of the features to be converted
+	 */
+	public void assignByFrequency(FeatureFrequencies featureFrequencies)
+	{
+		int[] features = featureFrequencies.featuresByFrequency();
+		
+		for (int i = 0; i < features.length; i++)
+		{
+			if (keptFeatures == null || keptFeatures.containsKey(features[i]))
+			{
+				assignFeature(features[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Counts the features of fileArray when they are to be pruned or given out by frequency, then picks the
+	 * features to keep and gives out small values up front when they are to be given out by frequency.
+	 * 
+	 * @param fileArray large SVM files about to be converted
+	 * @param executorService pool to count the files on, or null to count them on the calling thread
+	 * @return true if every kept feature of fileArray now has a small value
+	 * @throws IOException if any file cannot be read
+	 */
+	private boolean assignBeforeConverting(File[] fileArray, ExecutorService executorService) throws IOException
+	{
+		FeatureFrequencies featureFrequencies;
+		
+		if (remapOrder != RemapOrder.FREQUENCY && !isPruning())
+		{
+			return false;
+		}
+		
+		featureFrequencies = countFeatures(fileArray, executorService);
+		
+		if (isPruning())
+		{
+			selectFeatures(featureFrequencies);
+		}
+		
+		if (remapOrder != RemapOrder.FREQUENCY)
+		{
+			return false;
+		}
+		
+		assignByFrequency(featureFrequencies);
+		
+		return true;
+	}
+	
+	/**
+	 * Appends the small values given out since the map was loaded or last saved to largeToSmallHashMapFile,
+	 * rather than rewriting the whole file.  If there is no RemapTable file to append to yet, the whole map
+	 * is written.
+	 * 
+	 * @throws IOException if the map cannot be written
+	 */
+	public void appendMap() throws IOException
+	{
+		if (mappedMap != null)
+		{
+			mappedMap.force();
+		}
+		else if (largeToSmallHashMapFile.exists() && RemapTable.isRemapTable(largeToSmallHashMapFile))
+		{
+			largeToSmallMap.appendTo(largeToSmallHashMapFile, savedMapMax);
+		}
+		else
+		{
+			largeToSmallMap.write(largeToSmallHashMapFile);
+		}
+		
+		savedMapMax = largeToSmallMap.getMapMax();
+	}
+	
+	/**
+	 * @param incremental true if directories should be converted with processLargeSVMDirectoryIncremental
+	 */
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * @return true if directories should be converted with processLargeSVMDirectoryIncremental
+	 */
+	public boolean isIncremental()
+	{
+		return incremental;
+	}
+	
+	/**
+	 * @return true if the map is a memory mapped file, see setMappedRemap
+	 */
+	public boolean isMappedRemap()
+	{
+		return mappedMap != null;
+	}
+	
+	/**
+	 * Records the settings that change which small SVM files are made, so a CheckpointedStage can tell when
+	 * they have changed.  Settings that only change how fast the files are made, such as a dense map, are left out.
+	 * 
+	 * @param stageStamp stamp of the stage converting with this SVMToSmallSVM
+	 */
+	public void addSettings(StageStamp stageStamp)
+	{
+		stageStamp.addParameter("remapOrder", remapOrder);
+		stageStamp.addParameter("minDocumentFrequency", minDocumentFrequency);
+		stageStamp.addParameter("minTotalCount", minTotalCount);
+		stageStamp.addParameter("maxFeatures", maxFeatures);
+		stageStamp.addParameter("incremental", incremental);
+		stageStamp.addParameter("mappedRemap", mappedMap == null ? "none" : mappedMap.getFile().getAbsolutePath());
+	}
+	
+	/**
+	 * Saves the map to largeToSmallHashMapFile.  A mapped map has already appended every new small
+	 * value to its file, so it is only forced out to the disk.
+	 * 
+	 * @throws IOException if the map cannot be written
+	 */
+	public void saveMap() throws IOException
+	{
+		if (mappedMap != null)
+		{
+			mappedMap.force();
+		}
+		else
+		{
+			largeToSmallMap.write(largeToSmallHashMapFile);
+			savedMapMax = largeToSmallMap.getMapMax();
+		}
+	}
+	
+	/**
+	 * Keeps the map in a dense int[] with a slot for every minimum perfect hash value in [0, keyCount), 
+	 * rather than in a hash table.  Call this after the map has been loaded.
+	 * 
+	 * @param keyCount number of keys of the minimum perfect hash function
+	 */
+	public void setDenseRemap(int keyCount)
+	{
+		denseKeyCount = keyCount;
+		
+		largeToSmallMap = largeToSmallMap.toDense(keyCount);
+	}
+	
+	/**
+	 * Keeps the map in a dense int[] sized to the number of keys in the header of keyFile.
+	 * 
+	 * @param keyFile keys.mph file of the minimum perfect hash function the large SVM files were made with
+	 * @throws FileNotFoundException if keyFile does not exist
+	 * @throws IOException if keyFile cannot be read or is not a cmph dump
+	 */
+	public void setDenseRemap(File keyFile) throws FileNotFoundException, IOException
+	{
+		setDenseRemap(CMPHHeader.read(keyFile).getKeyCount());
+	}
+	
 	/**
 	 * This is thetop level entry point to transform a libSVM sparse format file comprised of minimum perfect hash values
 	 * that range too large for libSVM or libLinear to handle into a libSVM sparse format file comprised of sequentially 
@@ -235,6 +634,8 @@ public class SVMToSmallSVM
 			fileArray[0] = directory;
 		}
 		
+		assignBeforeConverting(fileArray, null);
+		
 		for (int i=0; i < fileArray.length; i++)
 		{
 			processLargeSVMFile(fileArray[i]);
@@ -267,13 +668,360 @@ public class SVMToSmallSVM
 			fileArray[0] = directory;
 		}
 		
+		assignBeforeConverting(fileArray, null);
+		
 		for (int i=0; i < fileArray.length; i++)
 		{
 			smallSVMFile = new File(smallDir, fileArray[i].getName());
 			processLargeSVMFile(fileArray[i], smallSVMFile);
 		}
 		
-		writeHashMap(largeToSmallHashMapFile, largeToSmallHashMap);
+		saveMap();
+	}
+	
+	/**
+	 * Parallel version of processLargeSVMDirectory(File, File).  The large SVM files are converted by a pool of 
+	 * threadCount workers.
+	 * 
+	 * When deterministic is false, every worker remaps through one ConcurrentRemapTable (or through the mapped
+	 * map, see setMappedRemap), so the small values given out depend on how the workers are scheduled.  When deterministic is true, the workers first gather
+	 * the large values of each file in the order they appear, then the small values are given out on the
+	 * calling thread file by file, in the order the single threaded version would give them out, and only then
+	 * do the workers write the small SVM files.  The deterministic mode reads every large file twice.
+	 * 
+	 * @param directory directory containing  libSVM formatted file containing minimum perfect hash values too large for libLinear to handle
+	 * @param smallDir directory the small SVM files are written to
+	 * @param threadCount number of files to work on at the same time.  Values less than 2 use the single threaded version.
+	 * @param deterministic true to give out the same small values as the single threaded version
+	 * @throws FileNotFoundException If the largeSVMFile is not found, then throw exception
+	 * @throws IOException If an IO error other than FileNotFound is encountered, throw exception.  This is most likely a permissions or directory issue.
+	 */
+	public void processLargeSVMDirectory(File directory, final File smallDir, int threadCount, boolean deterministic) throws FileNotFoundException, IOException
+	{
+		if (threadCount < 2)
+		{
+			processLargeSVMDirectory(directory, smallDir);
+			return;
+		}
+		
+		File[] fileArray;
+		
+		if (directory.isDirectory())
+		{
+			fileArray = directory.listFiles();
+		}
+		else
+		{
+			fileArray = new File[1];
+			fileArray[0] = directory;
+		}
+		
+		convertLargeSVMFiles(fileArray, smallDir, threadCount, deterministic);
+		
+		saveMap();
+	}
+	
+	/**
+	 * Incremental version of processLargeSVMDirectory(File, File, int, boolean).  A ConversionManifest kept beside
+	 * smallDir records the size, modification time and checksum of every large SVM file converted so far.  Only
+	 * the large files that are new or have changed since are converted; the small SVM files of the rest are left
+	 * alone, along with the small values their features were given.  The small SVM files of large files that are
+	 * gone since the last run are deleted.  Instead of rewriting the whole map,
+	 * only the small values given out by this run are appended to largeToSmallHashMapFile.
+	 * 
+	 * @param directory directory containing  libSVM formatted file containing minimum perfect hash values too large for libLinear to handle
+	 * @param smallDir directory the small SVM files are written to
+	 * @param threadCount number of files to work on at the same time
+	 * @param deterministic true to give out the same small values as the single threaded version
+	 * @throws FileNotFoundException If the largeSVMFile is not found, then throw exception
+	 * @throws IOException If an IO error other than FileNotFound is encountered, throw exception.  This is most likely a permissions or directory issue.
+	 */
+	public void processLargeSVMDirectoryIncremental(File directory, File smallDir, int threadCount, boolean deterministic) throws FileNotFoundException, IOException
+	{
+		File manifestFile = ConversionManifest.manifestFileFor(smallDir);
+		ConversionManifest manifest = ConversionManifest.read(manifestFile);
+		Vector<File> changedFiles = new Vector<File>();
+		File[] fileArray;
+		Vector<String> removedNames;
+		File removedSmallFile;
+		
+		if (directory.isDirectory())
+		{
+			fileArray = directory.listFiles();
+		}
+		else
+		{
+			fileArray = new File[1];
+			fileArray[0] = directory;
+		}
+		
+		for (int i=0; i < fileArray.length; i++)
+		{
+			if (fileArray[i].isFile() && !(manifest.isCurrent(fileArray[i]) && new File(smallDir, fileArray[i].getName()).exists()))
+			{
+				changedFiles.add(fileArray[i]);
+			}
+		}
+		
+		removedNames = manifest.retainOnly(fileArray);
+		
+		//The small file of a large file that is gone would otherwise still be picked up as an author
+		for (int i=0; i < removedNames.size(); i++)
+		{
+			removedSmallFile = new File(smallDir, removedNames.get(i));
+			
+			if (removedSmallFile.exists() && !removedSmallFile.delete())
+			{
+				throw new IOException("Could not delete " + removedSmallFile + ", whose large SVM file is gone");
+			}
+		}
+		
+		System.out.println("Incremental remap converting " + changedFiles.size() + " of " + fileArray.length + " large SVM files, " 
+				+ removedNames.size() + " no longer present");
+		
+		//Recorded before converting, so a file that changes during the run is converted again next time
+		for (int i=0; i < changedFiles.size(); i++)
+		{
+			manifest.record(changedFiles.get(i));
+		}
+		
+		if (!changedFiles.isEmpty())
+		{
+			convertLargeSVMFiles(changedFiles.toArray(new File[changedFiles.size()]), smallDir, threadCount, deterministic);
+		}
+		
+		//The manifest is only written once the map holds every small value the converted files use
+		appendMap();
+		manifest.write(manifestFile);
+	}
+	
+	/**
+	 * Converts every large SVM file of fileArray into smallDir, on a pool of threadCount workers when threadCount
+	 * is 2 or more.  The map is not saved.
+	 * 
+	 * @param fileArray large SVM files, directories are skipped
+	 * @param smallDir directory the small SVM files are written to
+	 * @param threadCount number of files to work on at the same time
+	 * @param deterministic true to give out the same small values as the single threaded version
+	 * @throws IOException if any file cannot be read or written
+	 */
+	private void convertLargeSVMFiles(File[] fileArray, File smallDir, int threadCount, boolean deterministic) throws IOException
+	{
+		ExecutorService executorService;
+		boolean assigned;
+		
+		if (threadCount < 2)
+		{
+			assignBeforeConverting(fileArray, null);
+			
+			for (int i=0; i < fileArray.length; i++)
+			{
+				processLargeSVMFile(fileArray[i], new File(smallDir, fileArray[i].getName()));
+			}
+			
+			return;
+		}
+		
+		//Create the small directory before the workers start so they do not race each other to make it
+		smallDir.mkdirs();
+		
+		executorService = Executors.newFixedThreadPool(threadCount);
+		
+		try
+		{
+			//When every feature already has its small value, the workers only read the map
+			assigned = assignBeforeConverting(fileArray, executorService);
+			
+			if (!assigned && deterministic)
+			{
+				assignInFileOrder(fileArray, executorService);
+			}
+			else if (!assigned && mappedMap == null)
+			{
+				concurrentMap = new ConcurrentRemapTable(largeToSmallMap, threadCount * 16);
+			}
+			
+			try
+			{
+				convertFiles(fileArray, smallDir, executorService);
+			}
+			finally
+			{
+				if (concurrentMap != null)
+				{
+					largeToSmallMap = concurrentMap.toRemapTable();
+					
+					if (denseKeyCount > 0 && !largeToSmallMap.isDense())
+					{
+						largeToSmallMap = largeToSmallMap.toDense(denseKeyCount);
+					}
+					
+					concurrentMap = null;
+				}
+			}
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Gathers the large values of every file on the workers of executorService, then gives each new large value
+	 * a small value on the calling thread, going through the files in order.  Afterwards every large value in 
+	 * fileArray has a small value, so the conversion only ever reads the map.
+	 * 
+	 * @param fileArray large SVM files, in the order the single threaded version would convert them
+	 * @param executorService pool to gather the large values on
+	 * @throws IOException if any file cannot be read
+	 */
+	private void assignInFileOrder(File[] fileArray, ExecutorService executorService) throws IOException
+	{
+		Vector<Future<int[]>> futureVector = new Vector<Future<int[]>>();
+		int[] largeValues;
+		
+		for (int i=0; i < fileArray.length; i++)
+		{
+			final File largeFile = fileArray[i];
+			
+			futureVector.add(executorService.submit(new Callable<int[]>()
+			{
+				public int[] call() throws IOException
+				{
+					return largeFile.isFile() ? collectLargeValues(largeFile) : new int[0];
+				}
+			}));
+		}
+		
+		TextToSVM.waitForFutures(futureVector);
+		
+		for (int i=0; i < futureVector.size(); i++)
+		{
+			try
+			{
+				largeValues = futureVector.get(i).get();
+			}
+			catch (Exception e)
+			{
+				//waitForFutures has already thrown for any worker that failed
+				throw new IllegalStateException(e);
+			}
+			
+			for (int j = 0; j < largeValues.length; j++)
+			{
+				checkFeature(largeValues[j]);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the small SVM file of every file in fileArray on the workers of executorService.
+	 * 
+	 * @param fileArray large SVM files
+	 * @param smallDir directory the small SVM files are written to
+	 * @param executorService pool to convert the files on
+	 * @throws IOException if any file cannot be read or written
+	 */
+	private void convertFiles(File[] fileArray, final File smallDir, ExecutorService executorService) throws IOException
+	{
+		Vector<Future<Void>> futureVector = new Vector<Future<Void>>();
+		
+		for (int i=0; i < fileArray.length; i++)
+		{
+			final File largeFile = fileArray[i];
+			
+			futureVector.add(executorService.submit(new Callable<Void>()
+			{
+				public Void call() throws IOException
+				{
+					processLargeSVMFile(largeFile, new File(smallDir, largeFile.getName()));
+					return null;
+				}
+			}));
+		}
+		
+		TextToSVM.waitForFutures(futureVector);
+	}
+	
+	/**
+	 * Reads the large (minimum perfect hash) values of a large SVM file, in the order the conversion
+	 * would look them up, keeping only the first appearance of each.  Both libSVM text and binary files
+	 * are read.
+	 * 
+	 * @param largeFile large SVM file
+	 * @return the distinct large values of largeFile in order of first appearance
+	 * @throws IOException if largeFile cannot be read
+	 */
+	public static int[] collectLargeValues(File largeFile) throws IOException
+	{
+		IntIntHashMap seen = new IntIntHashMap();
+		BufferedReader largeBufferedReader;
+		BinarySVMFileReader binarySVMFileReader;
+		StringTokenizer tokenizer;
+		String pair;
+		String line;
+		int delimIndex;
+		int[] features;
+		
+		if (BinarySVMFileReader.isBinarySVMFile(largeFile))
+		{
+			binarySVMFileReader = new BinarySVMFileReader(largeFile);
+			
+			try
+			{
+				while (binarySVMFileReader.next())
+				{
+					features = binarySVMFileReader.getFeatures();
+					
+					for (int i = 0; i < binarySVMFileReader.getLength(); i++)
+					{
+						seen.put(features[i], 0);
+					}
+				}
+			}
+			finally
+			{
+				binarySVMFileReader.close();
+			}
+			
+			return seen.keysInInsertionOrder();
+		}
+		
+		largeBufferedReader = new BufferedReader(new FileReader(largeFile));
+		
+		try
+		{
+			while ((line = largeBufferedReader.readLine()) != null)
+			{
+				tokenizer = new StringTokenizer(line);
+				
+				//Skip the id of this line
+				if (tokenizer.hasMoreTokens())
+				{
+					tokenizer.nextToken();
+				}
+				
+				while (tokenizer.hasMoreTokens())
+				{
+					pair 			= tokenizer.nextToken();
+					delimIndex 	= pair.indexOf(FEATURE_COUNT_DELIM);
+					
+					//convert() stops at a malformed pair, so the values after it are never looked up
+					if (delimIndex < 0)
+					{
+						break;
+					}
+					
+					seen.put(Integer.parseInt(pair.substring(0, delimIndex)), 0);
+				}
+			}
+		}
+		finally
+		{
+			largeBufferedReader.close();
+		}
+		
+		return seen.keysInInsertionOrder();
 	}
 	
 	/**
@@ -306,21 +1054,57 @@ public class SVMToSmallSVM
 	 */
 	public String checkFeature(String feature)
 	{
-		Integer intFeature = Integer.valueOf(feature);
-		Integer intSmallFeature;
+		return Integer.toString(checkFeature(Integer.parseInt(feature)));
+	}
+	
+	/**
+	 * Determines if the minimum perfect hash value entered has already been seen by the converter.  If it has,
+	 * then the previously assigned small feature label is returned.  If not, a new value is assigned and then 
+	 * returned.  The new value is updated to the mapMax value of this object.
+	 * 
+	 * @param feature Integer value from the minimum perfect hash membership checks.
+	 * @return the new Integer value assigned to replace the minimum perfect hash Integer value previously used.
+	 */
+	public int checkFeature(int feature)
+	{
+		ConcurrentRemapTable concurrentMap = this.concurrentMap;
 		
-		if (largeToSmallHashMap.containsKey(intFeature))
+		if (keptFeatures != null && !keptFeatures.containsKey(feature))
 		{
-			intSmallFeature = largeToSmallHashMap.get(intFeature);
+			return PRUNED_FEATURE;
 		}
-		else
+		
+		if (concurrentMap != null)
+		{
+			return concurrentMap.getOrAssign(feature);
+		}
+		
+		return assignFeature(feature);
+	}
+	
+	/**
+	 * Looks feature up in the mapped map if there is one, otherwise in the map on the heap, assigning
+	 * the next small value if it has not been seen.
+	 * 
+	 * @param feature Integer value from the minimum perfect hash membership checks.
+	 * @return the small value assigned to feature
+	 */
+	private int assignFeature(int feature)
+	{
+		if (mappedMap != null)
 		{
-			intSmallFeature = mapMax;
-			mapMax = mapMax + 1;
-			largeToSmallHashMap.put(intFeature, intSmallFeature);
+			try
+			{
+				return mappedMap.getOrAssign(feature);
+			}
+			catch (IOException e)
+			{
+				//checkFeature has never thrown IOException, so carry it out unchecked
+				throw new IllegalStateException("Could not use remap table " + mappedMap.getFile(), e);
+			}
 		}
 		
-		return intSmallFeature.toString();
+		return largeToSmallMap.getOrAssign(feature);
 	}
 	
 	/**
@@ -334,19 +1118,19 @@ public class SVMToSmallSVM
 	 */
 	public String convert(String oldLine)
 	{
-		String newLine;
+		StringBuilder newLine = new StringBuilder();
 		String pair;
-		String feature;
-		String count;
-		String smallFeature;
-		Integer key;
 		int delimIndex;
-		SortedMap<Integer, String> sortedMap = new TreeMap<Integer, String>();
+		int pairCount = 0;
+		int index;
+		int smallFeature;
+		String[] counts = new String[16];
+		long[] smallFeatures = new long[16];
 		
 		StringTokenizer tokenizer = new StringTokenizer(oldLine);
 		
 		//Get the id of this line -- no safety check here, yet
-		newLine = tokenizer.nextToken();
+		newLine.append(tokenizer.nextToken());
 		
 		while (tokenizer.hasMoreElements())
 		{
@@ -361,23 +1145,41 @@ public class SVMToSmallSVM
 				return null;
 			}
 			
-			feature = pair.substring(0, delimIndex);
-			count = pair.substring(delimIndex + 1);
+			if (pairCount == counts.length)
+			{
+				counts 				= Arrays.copyOf(counts, pairCount << 1);
+				smallFeatures 	= Arrays.copyOf(smallFeatures, pairCount << 1);
+			}
 			
-			smallFeature = checkFeature(feature);
+			smallFeature = checkFeature(Integer.parseInt(pair.substring(0, delimIndex)));
 			
-			sortedMap.put(Integer.valueOf(smallFeature), count);
+			//Pruned features are left off the line
+			if (smallFeature == PRUNED_FEATURE)
+			{
+				continue;
+			}
+			
+			//Small feature in the high half and position in the low half, so sorting sorts by small feature
+			counts[pairCount] 			= pair.substring(delimIndex + 1);
+			smallFeatures[pairCount] 	= ((long)smallFeature << 32) | pairCount;
+			pairCount++;
 		}
 		
-		Iterator<Integer> iterator = sortedMap.keySet().iterator();
+		Arrays.sort(smallFeatures, 0, pairCount);
 		
-		while (iterator.hasNext())
+		for (int i = 0; i < pairCount; i++)
 		{
-			key = iterator.next();
-			newLine = newLine + PAIRS_DELIM + key + FEATURE_COUNT_DELIM + sortedMap.get(key);
+			//When a small feature is repeated, the last count for it wins
+			if (i + 1 < pairCount && (smallFeatures[i + 1] >> 32) == (smallFeatures[i] >> 32))
+			{
+				continue;
+			}
+			
+			index = (int)smallFeatures[i];
+			newLine.append(PAIRS_DELIM).append((int)(smallFeatures[i] >> 32)).append(FEATURE_COUNT_DELIM).append(counts[index]);
 		}
 		
-		return newLine;
+		return newLine.toString();
 	}
 	
 	/**
@@ -391,14 +1193,6 @@ public class SVMToSmallSVM
 	 */
 	public void writeSmallSVMFile(File largeFile,  File smallFile) throws IOException
 	{
-		BufferedReader largeBufferedReader = null;
-		PrintWriter smallPrintWriter;
-		
-		String oldLine;
-		String newLine = null;
-		
-		largeBufferedReader = new BufferedReader( new FileReader(largeFile));
-		
 		try 
 		{
 			smallFile.createNewFile();
@@ -409,15 +1203,91 @@ public class SVMToSmallSVM
 			smallFile.createNewFile();
 		}
 		
-		smallPrintWriter = new PrintWriter(smallFile);
-		
-		while ((oldLine = largeBufferedReader.readLine()) != null)
+		//Large files written in the binary format are read natively rather than as text
+		if (BinarySVMFileReader.isBinarySVMFile(largeFile))
 		{
-			newLine = convert(oldLine);
-			smallPrintWriter.println(newLine);
+			writeSmallSVMFileFromBinary(largeFile, smallFile);
+			return;
 		}
 		
-		smallPrintWriter.flush();
+		//Text lines are parsed and formatted as bytes, see LibSVMLineConverter
+		new LibSVMLineConverter(this).convertFile(largeFile, smallFile);
+	}
+	
+	/**
+	 *  transform a binary SVM file (see BinarySVMFileWriter) comprised of minimum perfect hash values
+	 * that range too large for libSVM or libLinear to handle into a libSVM sparse format file 
+	 * comprised of sequentially encountered values that libSVM and libLinear can handle.  The lines
+	 * written are the same lines convert() would make from the libSVM text version of largeFile, written as
+	 * bytes through a LibSVMFileWriter.
+	 * 
+	 * @param largeFile binary SVM file containing minimum perfect hash values too large for libLinear to handle
+	 * @param smallFile libSVM sparse formatted file to write
+	 * @throws IOException if largeFile cannot be read or smallFile cannot be written
+	 */
+	public void writeSmallSVMFileFromBinary(File largeFile,  File smallFile) throws IOException
+	{
+		BinarySVMFileReader binarySVMFileReader = new BinarySVMFileReader(largeFile);
+		LibSVMFileWriter libSVMFileWriter = null;
+		long[] pairs = new long[64];
+		int[] features;
+		int[] counts;
+		int length;
+		int pairCount;
+		int smallFeature;
+		
+		try
+		{
+			libSVMFileWriter = new LibSVMFileWriter(smallFile);
+			
+			while (binarySVMFileReader.next())
+			{
+				features 	= binarySVMFileReader.getFeatures();
+				counts 		= binarySVMFileReader.getCounts();
+				length 		= binarySVMFileReader.getLength();
+				
+				if (length > pairs.length)
+				{
+					pairs = new long[Math.max(length, pairs.length << 1)];
+				}
+				
+				pairCount = 0;
+				
+				//Small feature in the high half so sorting the longs sorts by small feature
+				for (int i = 0; i < length; i++)
+				{
+					smallFeature = checkFeature(features[i]);
+					
+					if (smallFeature != PRUNED_FEATURE)
+					{
+						pairs[pairCount++] = ((long)smallFeature << 32) | (counts[i] & 0xFFFFFFFFL);
+					}
+				}
+				
+				Arrays.sort(pairs, 0, pairCount);
+				
+				libSVMFileWriter.writeInt(binarySVMFileReader.getLabel());
+				
+				for (int i = 0; i < pairCount; i++)
+				{
+					libSVMFileWriter.writeByte(PAIRS_DELIM.charAt(0));
+					libSVMFileWriter.writeInt((int)(pairs[i] >> 32));
+					libSVMFileWriter.writeByte(FEATURE_COUNT_DELIM);
+					libSVMFileWriter.writeInt((int)pairs[i]);
+				}
+				
+				libSVMFileWriter.writeBytes(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+			}
+		}
+		finally
+		{
+			binarySVMFileReader.close();
+			
+			if (libSVMFileWriter != null)
+			{
+				libSVMFileWriter.close();
+			}
+		}
 	}
 	
 	/**
@@ -498,6 +1368,14 @@ public class SVMToSmallSVM
 
 	}
 	
+	/**
+	 * Saves a HashMap as a serialized object.  SVMToSmallSVM now saves its map with RemapTable.write, but
+	 * still reads files written by this method.
+	 * 
+	 * @param file file to write
+	 * @param hashMap map of minimum perfect hash values to small values
+	 * @throws IOException if file cannot be written
+	 */
 	public static void writeHashMap(File file, HashMap<Integer, Integer> hashMap) throws IOException
 	{
 		OutputStream outputStream = new FileOutputStream(file);
@@ -0,0 +1,271 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the stages of a pipeline as a dependency graph.  Each stage names the stages that must finish before
+ * it can start, and any stages whose dependencies have all finished are run at the same time on a pool of
+ * at most concurrencyLimit threads.  A stage that throws is run again, up to its number of retries, before the
+ * run is given up on.  Once a stage has failed for good no new stages are started, the stages already running
+ * are allowed to finish, and run() throws the failure.
+ *
+ * Stages are started in the order they were added whenever more than one is ready, so a run with a
+ * concurrencyLimit of 1 runs them in the order they were added, as long as that order respects the dependencies.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class StageScheduler
+{
+	//Data Members
+	private LinkedHashMap<String, Stage> 	stages;
+	private int 									concurrencyLimit;
+	private int 									defaultRetries;
+
+	//Constructors
+	/**
+	 * Sole constructor for StageScheduler.
+	 *
+	 * @param concurrencyLimit most stages to run at the same time
+	 * @param defaultRetries number of times a failed stage is run again, unless the stage was added with its own
+	 */
+	public StageScheduler(int concurrencyLimit, int defaultRetries)
+	{
+		this.stages 				= new LinkedHashMap<String, Stage>();
+		this.concurrencyLimit 	= Math.max(concurrencyLimit, 1);
+		this.defaultRetries 		= Math.max(defaultRetries, 0);
+	}
+
+	//Methods
+	/**
+	 * Adds a stage that is retried the default number of times.
+	 *
+	 * @param name unique name of the stage
+	 * @param work work the stage does
+	 * @param dependencies names of the stages that must finish first, which must already have been added
+	 */
+	public void addStage(String name, Callable<Void> work, String... dependencies)
+	{
+		addStage(name, work, defaultRetries, dependencies);
+	}
+
+	/**
+	 * Adds a stage.
+	 *
+	 * @param name unique name of the stage
+	 * @param work work the stage does
+	 * @param retries number of times the stage is run again after it throws
+	 * @param dependencies names of the stages that must finish first, which must already have been added
+	 */
+	public void addStage(String name, Callable<Void> work, int retries, String... dependencies)
+	{
+		if (stages.containsKey(name))
+		{
+			throw new IllegalArgumentException("There is already a stage named " + name);
+		}
+
+		for (int i = 0; i < dependencies.length; i++)
+		{
+			if (!stages.containsKey(dependencies[i]))
+			{
+				throw new IllegalArgumentException(name + " depends on " + dependencies[i] + ", which has not been added");
+			}
+		}
+
+		stages.put(name, new Stage(name, work, Math.max(retries, 0), dependencies));
+	}
+
+	/**
+	 * @return number of stages added
+	 */
+	public int size()
+	{
+		return stages.size();
+	}
+
+	/**
+	 * Runs every stage, each once its dependencies have finished, and returns when they have all finished.
+	 * Since dependencies have to be added first, the stages cannot depend on each other in a cycle.
+	 *
+	 * @throws IOException if a stage still fails after its retries, with the stage's exception as the cause
+	 * when it was not an IOException
+	 */
+	public void run() throws IOException
+	{
+		ExecutorService executorService 					= Executors.newFixedThreadPool(concurrencyLimit);
+		CompletionService<Stage> completionService 	= new ExecutorCompletionService<Stage>(executorService);
+		Vector<Stage> waiting 								= new Vector<Stage>(stages.values());
+		int running 												= 0;
+		Throwable failure 										= null;
+		Stage stage;
+
+		try
+		{
+			while (!waiting.isEmpty() || running > 0)
+			{
+				//Start every stage that is ready, unless a stage has already failed for good
+				if (failure == null)
+				{
+					Iterator<Stage> iterator = waiting.iterator();
+
+					while (iterator.hasNext() && running < concurrencyLimit)
+					{
+						stage = iterator.next();
+
+						if (stage.isReady())
+						{
+							iterator.remove();
+							completionService.submit(stage);
+							running++;
+						}
+					}
+				}
+
+				if (running == 0)
+				{
+					//Only a failure can leave stages waiting with nothing running
+					break;
+				}
+
+				stage = take(completionService);
+				running--;
+
+				if (stage.failure == null)
+				{
+					stage.finished = true;
+				}
+				else if (stage.attempts <= stage.retries)
+				{
+					System.out.println("Stage " + stage.name + " failed on attempt " + stage.attempts + ", retrying: " + stage.failure);
+					stage.failure = null;
+					waiting.add(0, stage);
+				}
+				else if (failure == null)
+				{
+					System.out.println("Stage " + stage.name + " failed after " + stage.attempts + " attempts: " + stage.failure);
+					failure = stage.failure;
+				}
+			}
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+
+		if (failure instanceof IOException)
+		{
+			throw (IOException)failure;
+		}
+		else if (failure instanceof Error)
+		{
+			throw (Error)failure;
+		}
+		else if (failure != null)
+		{
+			throw new IOException("Pipeline stage failed", failure);
+		}
+	}
+
+	/**
+	 * Waits for the next stage to finish an attempt.
+	 *
+	 * @param completionService service the stages were submitted to
+	 * @return the stage that finished
+	 * @throws IOException if interrupted while waiting
+	 */
+	private static Stage take(CompletionService<Stage> completionService) throws IOException
+	{
+		Future<Stage> future;
+
+		try
+		{
+			future = completionService.take();
+
+			//Stage.call never throws, it keeps its own failure
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for pipeline stages");
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * One node of the graph: the work, the stages it waits on and how its attempts went.
+	 */
+	private class Stage implements Callable<Stage>
+	{
+		private String 				name;
+		private Callable<Void> 	work;
+		private int 					retries;
+		private String[] 			dependencies;
+		private int 					attempts;
+		private boolean 			finished;
+		private Throwable 		failure;
+
+		private Stage(String name, Callable<Void> work, int retries, String[] dependencies)
+		{
+			this.name 			= name;
+			this.work 			= work;
+			this.retries 			= retries;
+			this.dependencies 	= dependencies;
+		}
+
+		/**
+		 * @return true if every stage this one depends on has finished
+		 */
+		private boolean isReady()
+		{
+			for (int i = 0; i < dependencies.length; i++)
+			{
+				if (!stages.get(dependencies[i]).finished)
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		public Stage call()
+		{
+			attempts++;
+
+			try
+			{
+				work.call();
+			}
+			catch (Throwable t)
+			{
+				failure = t;
+			}
+
+			return this;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A record of everything a pipeline stage's output was made from: the parameters of the stage, and the size,
+ * modification time and CRC32 checksum of each input file.  A stage whose new stamp is current against the
+ * stamp it wrote last time, and whose output still exists, does not need to run again.
+ *
+ * Parameters have to be equal, and input files have to have the same size and contents.  As in
+ * ConversionManifest, a file whose modification time has not changed is taken to have the same contents, so
+ * a stage that is up to date only reads the files that have been touched since it last ran.
+ *
+ * A later stage takes in an earlier stage's output through addStamp, which adds the digest of the earlier
+ * stage's stamp rather than the contents of every file the earlier stage wrote.  The digest leaves out
+ * modification times, so running the earlier stage again on the same inputs leaves the later stages up to date.
+ *
+ * The stamp file is a tab separated text file with one "parameter name value" or "file path size modified
+ * checksum" line per entry.  It is written to a temporary file first and then renamed.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class StageStamp
+{
+	//Data Members
+	public static final String 			STAMP_DIR_NAME 		= "stageStamps";
+	public static final String 			STAMP_SUFFIX 			= ".stamp";
+	private static final String 			FIELD_DELIM 				= "\t";
+	private static final String 			PARAMETER 				= "parameter";
+	private static final String 			FILE 							= "file";
+	private static final long 				UNKNOWN_CHECKSUM 	= -1;
+	private TreeMap<String, String> 	parameters;
+	private TreeMap<String, long[]> 	files;
+
+	//Constructors
+	/**
+	 * Constructor for an empty StageStamp.
+	 */
+	public StageStamp()
+	{
+		parameters 	= new TreeMap<String, String>();
+		files 			= new TreeMap<String, long[]>();
+	}
+
+	//Methods
+	/**
+	 * Records a parameter of the stage.
+	 *
+	 * @param name name of the parameter
+	 * @param value value of the parameter, recorded by its toString()
+	 */
+	public void addParameter(String name, Object value)
+	{
+		parameters.put(name, String.valueOf(value));
+	}
+
+	/**
+	 * Records an input file of the stage.  Its checksum is not worked out until it is needed.
+	 *
+	 * @param file file the stage reads, which need not exist
+	 */
+	public void addFile(File file)
+	{
+		long[] entry = new long[3];
+
+		entry[0] = file.exists() ? file.length() : -1;
+		entry[1] = file.lastModified();
+		entry[2] = UNKNOWN_CHECKSUM;
+
+		files.put(file.getAbsolutePath(), entry);
+	}
+
+	/**
+	 * Records every file directly in directory as an input file of the stage.  Subdirectories are left out.
+	 *
+	 * @param directory directory the stage reads
+	 */
+	public void addDirectory(File directory)
+	{
+		File[] fileArray = directory.listFiles();
+
+		if (fileArray == null)
+		{
+			addParameter("missing directory " + directory.getAbsolutePath(), Boolean.TRUE);
+			return;
+		}
+
+		Arrays.sort(fileArray);
+
+		for (int i = 0; i < fileArray.length; i++)
+		{
+			if (fileArray[i].isFile())
+			{
+				addFile(fileArray[i]);
+			}
+		}
+	}
+
+	/**
+	 * Records the output of an earlier stage as an input of this one, by the digest of the stamp it wrote.
+	 *
+	 * @param stageName name of the earlier stage
+	 * @param stampFile stamp file the earlier stage wrote
+	 * @throws IOException if stampFile cannot be read
+	 */
+	public void addStamp(String stageName, File stampFile) throws IOException
+	{
+		StageStamp stageStamp = read(stampFile);
+
+		addParameter("stage " + stageName, stageStamp == null ? "missing" : Long.toHexString(stageStamp.digest()));
+	}
+
+	/**
+	 * @param recorded stamp written the last time the stage ran
+	 * @return true if this stamp has the same parameters and input files as recorded
+	 * @throws IOException if the checksum of an input file is needed but the file cannot be read
+	 */
+	public boolean isCurrent(StageStamp recorded) throws IOException
+	{
+		Iterator<Map.Entry<String, long[]>> iterator = files.entrySet().iterator();
+		Map.Entry<String, long[]> entry;
+		long[] recordedEntry;
+
+		if (!parameters.equals(recorded.parameters) || !files.keySet().equals(recorded.files.keySet()))
+		{
+			return false;
+		}
+
+		while (iterator.hasNext())
+		{
+			entry 				= iterator.next();
+			recordedEntry 	= recorded.files.get(entry.getKey());
+
+			if (entry.getValue()[0] != recordedEntry[0])
+			{
+				return false;
+			}
+
+			if (entry.getValue()[1] == recordedEntry[1])
+			{
+				entry.getValue()[2] = recordedEntry[2];
+			}
+			else if (checksum(entry.getKey(), entry.getValue()) != recordedEntry[2])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Works out the checksum of every input file not already known, so that the stamp describes the files as
+	 * they are now rather than as they are when it is written.
+	 *
+	 * @throws IOException if an input file cannot be read
+	 */
+	public void fillChecksums() throws IOException
+	{
+		Iterator<Map.Entry<String, long[]>> iterator = files.entrySet().iterator();
+		Map.Entry<String, long[]> entry;
+
+		while (iterator.hasNext())
+		{
+			entry = iterator.next();
+			checksum(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @return CRC32 of the parameters and the names, sizes and checksums of the input files, leaving out
+	 * modification times
+	 * @throws IOException if an input file cannot be read
+	 */
+	public long digest() throws IOException
+	{
+		CRC32 crc32 = new CRC32();
+		Iterator<Map.Entry<String, String>> parameterIterator = parameters.entrySet().iterator();
+		Iterator<Map.Entry<String, long[]>> fileIterator = files.entrySet().iterator();
+		Map.Entry<String, String> parameter;
+		Map.Entry<String, long[]> file;
+
+		while (parameterIterator.hasNext())
+		{
+			parameter = parameterIterator.next();
+			crc32.update((PARAMETER + FIELD_DELIM + parameter.getKey() + FIELD_DELIM + parameter.getValue() + "\n").getBytes("UTF-8"));
+		}
+
+		while (fileIterator.hasNext())
+		{
+			file = fileIterator.next();
+			crc32.update((FILE + FIELD_DELIM + file.getKey() + FIELD_DELIM + file.getValue()[0] + FIELD_DELIM
+					+ Long.toHexString(checksum(file.getKey(), file.getValue())) + "\n").getBytes("UTF-8"));
+		}
+
+		return crc32.getValue();
+	}
+
+	/**
+	 * Writes the stamp to stampFile, replacing it.
+	 *
+	 * @param stampFile file to write
+	 * @throws IOException if an input file cannot be read or stampFile cannot be written
+	 */
+	public void write(File stampFile) throws IOException
+	{
+		File temporaryFile = new File(stampFile.getPath() + ".tmp");
+		Iterator<Map.Entry<String, String>> parameterIterator = parameters.entrySet().iterator();
+		Iterator<Map.Entry<String, long[]>> fileIterator = files.entrySet().iterator();
+		Map.Entry<String, String> parameter;
+		Map.Entry<String, long[]> file;
+		PrintWriter printWriter;
+
+		fillChecksums();
+
+		if (stampFile.getParentFile() != null)
+		{
+			stampFile.getParentFile().mkdirs();
+		}
+
+		printWriter = new PrintWriter(temporaryFile, "UTF-8");
+
+		try
+		{
+			while (parameterIterator.hasNext())
+			{
+				parameter = parameterIterator.next();
+				printWriter.println(PARAMETER + FIELD_DELIM + parameter.getKey() + FIELD_DELIM + parameter.getValue());
+			}
+
+			while (fileIterator.hasNext())
+			{
+				file = fileIterator.next();
+				printWriter.println(FILE + FIELD_DELIM + file.getKey() + FIELD_DELIM + file.getValue()[0] + FIELD_DELIM
+						+ file.getValue()[1] + FIELD_DELIM + Long.toHexString(file.getValue()[2]));
+			}
+		}
+		finally
+		{
+			printWriter.close();
+		}
+
+		//PrintWriter hides its IOExceptions, so a short temporary file must not replace the stamp
+		if (printWriter.checkError())
+		{
+			temporaryFile.delete();
+			throw new IOException("Could not write " + temporaryFile);
+		}
+
+		//File.renameTo will not replace an existing file everywhere
+		if (!temporaryFile.renameTo(stampFile) && !(stampFile.delete() && temporaryFile.renameTo(stampFile)))
+		{
+			throw new IOException("Could not replace " + stampFile);
+		}
+	}
+
+	/**
+	 * Reads a stamp written by write().
+	 *
+	 * @param stampFile file to read
+	 * @return the stamp in stampFile, or null if stampFile does not exist
+	 * @throws IOException if stampFile cannot be read or is malformed
+	 */
+	public static StageStamp read(File stampFile) throws IOException
+	{
+		StageStamp stageStamp = new StageStamp();
+		BufferedReader bufferedReader;
+		StringTokenizer tokenizer;
+		String line;
+		String kind;
+		long[] entry;
+		String name;
+
+		if (!stampFile.exists())
+		{
+			return null;
+		}
+
+		bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(stampFile), "UTF-8"));
+
+		try
+		{
+			while ((line = bufferedReader.readLine()) != null)
+			{
+				tokenizer 	= new StringTokenizer(line, FIELD_DELIM);
+				kind 			= tokenizer.hasMoreTokens() ? tokenizer.nextToken() : "";
+
+				if (kind.equals(PARAMETER) && tokenizer.countTokens() == 2)
+				{
+					stageStamp.parameters.put(tokenizer.nextToken(), tokenizer.nextToken());
+				}
+				else if (kind.equals(FILE) && tokenizer.countTokens() == 4)
+				{
+					name 		= tokenizer.nextToken();
+					entry 		= new long[3];
+					entry[0] 	= Long.parseLong(tokenizer.nextToken());
+					entry[1] 	= Long.parseLong(tokenizer.nextToken());
+					entry[2] 	= Long.parseLong(tokenizer.nextToken(), 16);
+
+					stageStamp.files.put(name, entry);
+				}
+				else
+				{
+					throw new IOException(stampFile + " has a malformed line: " + line);
+				}
+			}
+		}
+		finally
+		{
+			bufferedReader.close();
+		}
+
+		return stageStamp;
+	}
+
+	/**
+	 * Works out the checksum of an input file if it is not already known.
+	 *
+	 * @param path absolute path of the file
+	 * @param entry size, modification time and checksum of the file
+	 * @return the checksum of the file, or 0 for a file that does not exist
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long checksum(String path, long[] entry) throws IOException
+	{
+		if (entry[2] == UNKNOWN_CHECKSUM)
+		{
+			entry[2] = entry[0] < 0 ? 0 : ConversionManifest.checksum(new File(path));
+		}
+
+		return entry[2];
+	}
+}
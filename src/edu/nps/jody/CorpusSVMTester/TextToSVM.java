@@ -11,15 +11,23 @@
 package edu.nps.jody.CorpusSVMTester;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.io.FileNotFoundException;
 
 import edu.nps.jody.HashFinder.MembershipChecker;
@@ -46,18 +54,240 @@ public class TextToSVM
 	public static final String SVM_DIR_NAME					= "svmFiles";
 	public static final String TEXT_DIR_NAME 				= "text";
 	private						int		maxMapValue;
+	private						int		featureIndexCacheSize;
+	private CacheEvictionPolicy	cacheEvictionPolicy;
+	private Vector<FeatureIndexCache> featureIndexCacheVector;
+	private						int		outputBufferSize;
+	private SVMFormat				outputFormat;
+	private SVMToSmallSVM		fusedSVMToSmallSVM;
+	private boolean				mappedInput;
+	private Charset					inputCharset;
 	
 	//Constructors
 	/**
 	 * Sole constructor for TextToSVM.  Sets maxMapValue = 0. If this class goes back to 
-	 * being all static methods, then this constructor will be empty. 
+	 * being all static methods, then this constructor will be empty.  No FeatureIndexCache 
+	 * is used until setFeatureIndexCache is called.
 	 */
 	public TextToSVM()
 	{
-		maxMapValue = 0;
+		maxMapValue 					= 0;
+		featureIndexCacheSize 		= 0;
+		cacheEvictionPolicy 			= CacheEvictionPolicy.LEAST_RECENTLY_USED;
+		featureIndexCacheVector 	= new Vector<FeatureIndexCache>();
+		outputBufferSize 				= LibSVMFileWriter.DEFAULT_BUFFER_SIZE;
+		outputFormat 					= SVMFormat.LIBSVM;
+		fusedSVMToSmallSVM 			= null;
+		mappedInput 					= false;
+		inputCharset 					= Charset.defaultCharset();
 	}
 	
 	//Methods
+	/**
+	 * Sets the number of bytes each SVM file writer holds before writing to disk.  Larger buffers mean fewer,
+	 * larger writes, which matters most on network filesystems.
+	 * 
+	 * @param outputBufferSize number of bytes buffered per SVM file
+	 */
+	public void setOutputBufferSize(int outputBufferSize)
+	{
+		this.outputBufferSize = outputBufferSize;
+	}
+	
+	/**
+	 * Chooses how text files are read.  By default each file is read through a FileReader.  With mappedInput 
+	 * set, each file is memory mapped and decoded by a MappedFileReader straight into the scanner's buffer,
+	 * which avoids a read system call and a copy per block on very large author files.
+	 * 
+	 * @param mappedInput true to memory map the text files
+	 * @param inputCharset Charset the text files were written in
+	 */
+	public void setInputMode(boolean mappedInput, Charset inputCharset)
+	{
+		this.mappedInput 	= mappedInput;
+		this.inputCharset 	= inputCharset;
+	}
+	
+	/**
+	 * Opens sourceFile for the scanner using the settings from setInputMode.
+	 * 
+	 * @param sourceFile text file to read
+	 * @return Reader of the decoded text of sourceFile
+	 * @throws FileNotFoundException if sourceFile does not exist
+	 * @throws IOException if sourceFile cannot be opened or mapped
+	 */
+	public Reader newSourceReader(File sourceFile) throws FileNotFoundException, IOException
+	{
+		if (mappedInput)
+		{
+			return new MappedFileReader(sourceFile, inputCharset);
+		}
+		
+		return new InputStreamReader(new FileInputStream(sourceFile), inputCharset);
+	}
+	
+	/**
+	 * Sets the format the SVM files are written in.  SVMFormat.BINARY files are smaller and faster for 
+	 * SVMToSmallSVM to read, but are not libSVM text; SVMFormatConverter turns them into text for debugging.
+	 * 
+	 * @param outputFormat format of the SVM files written from now on
+	 */
+	public void setOutputFormat(SVMFormat outputFormat)
+	{
+		this.outputFormat = outputFormat;
+	}
+	
+	/**
+	 * Records the settings that change which SVM files are made, so a CheckpointedStage can tell when they have
+	 * changed.  Settings that only change how fast the files are made, such as the cache, are left out.
+	 * 
+	 * @param stageStamp stamp of the stage running processFiles
+	 */
+	public void addSettings(StageStamp stageStamp)
+	{
+		stageStamp.addParameter("outputFormat", outputFormat);
+		stageStamp.addParameter("inputCharset", inputCharset.name());
+	}
+	
+	/**
+	 * Fuses SVMToSmallSVM into this TextToSVM.  While set, every utterance is remapped through svmToSmallSVM
+	 * as it is written, and the files written to the svm directory passed to processFiles are small SVM files
+	 * rather than large ones.  The output format set by setOutputFormat is ignored while fused.
+	 * 
+	 * @param svmToSmallSVM converter holding the large to small map, or null to go back to writing large SVM files
+	 */
+	public void setFusedSVMToSmallSVM(SVMToSmallSVM svmToSmallSVM)
+	{
+		fusedSVMToSmallSVM = svmToSmallSVM;
+	}
+	
+	/**
+	 * Opens an SVMRecordWriter for writeFile in the format set by setOutputFormat, or a RemappingSVMRecordWriter
+	 * if an SVMToSmallSVM has been fused in with setFusedSVMToSmallSVM.
+	 * 
+	 * @param writeFile file to write, replaced if it already exists
+	 * @return writer for writeFile
+	 * @throws IOException if writeFile cannot be created
+	 */
+	public SVMRecordWriter newSVMRecordWriter(File writeFile) throws IOException
+	{
+		if (fusedSVMToSmallSVM != null)
+		{
+			return new RemappingSVMRecordWriter(fusedSVMToSmallSVM, writeFile, outputBufferSize);
+		}
+		
+		if (outputFormat == SVMFormat.BINARY)
+		{
+			return new BinarySVMFileWriter(writeFile, outputBufferSize);
+		}
+		
+		return new LibSVMFileWriter(writeFile, outputBufferSize);
+	}
+	
+	/**
+	 * Puts a bounded FeatureIndexCache in front of the MembershipChecker for every file processed from now on.  
+	 * The single threaded processFiles uses one cache for the whole directory; the parallel version gives each
+	 * worker thread its own cache.
+	 * 
+	 * @param maxEntries largest number of features each cache will hold.  0 turns the cache off.
+	 * @param evictionPolicy how to choose the feature to forget when a cache is full
+	 */
+	public void setFeatureIndexCache(int maxEntries, CacheEvictionPolicy evictionPolicy)
+	{
+		featureIndexCacheSize 	= maxEntries;
+		cacheEvictionPolicy 		= evictionPolicy;
+	}
+	
+	/**
+	 * Makes a new FeatureIndexCache using the settings from setFeatureIndexCache, and remembers it so its
+	 * hit and miss counts can be reported.
+	 * 
+	 * @param membershipChecker MembershipChecker the cache sits in front of
+	 * @return a new FeatureIndexCache, or null if the cache is turned off
+	 */
+	public FeatureIndexCache newFeatureIndexCache(MembershipChecker membershipChecker)
+	{
+		FeatureIndexCache featureIndexCache;
+		
+		if (featureIndexCacheSize < 1)
+		{
+			return null;
+		}
+		
+		featureIndexCache = new FeatureIndexCache(membershipChecker, featureIndexCacheSize, cacheEvictionPolicy);
+		featureIndexCacheVector.add(featureIndexCache);
+		
+		return featureIndexCache;
+	}
+	
+	/**
+	 * Makes a new FeatureIndexCache for each MembershipChecker, see newFeatureIndexCache.
+	 * 
+	 * @param membershipCheckers MembershipCheckers the caches sit in front of
+	 * @return a new FeatureIndexCache (or null if the cache is turned off) for each MembershipChecker
+	 */
+	public FeatureIndexCache[] newFeatureIndexCaches(MembershipChecker[] membershipCheckers)
+	{
+		FeatureIndexCache[] featureIndexCaches = new FeatureIndexCache[membershipCheckers.length];
+		
+		for (int k = 0; k < membershipCheckers.length; k++)
+		{
+			featureIndexCaches[k] = newFeatureIndexCache(membershipCheckers[k]);
+		}
+		
+		return featureIndexCaches;
+	}
+	
+	/**
+	 * Makes a new FeatureKeyTable for each of count feature types, to be kept by one thread from file to file.
+	 * 
+	 * @param count number of feature types
+	 * @return a new FeatureKeyTable for each feature type
+	 */
+	public static FeatureKeyTable[] newFeatureKeyTables(int count)
+	{
+		FeatureKeyTable[] featureKeyTables = new FeatureKeyTable[count];
+		
+		for (int k = 0; k < count; k++)
+		{
+			featureKeyTables[k] = new FeatureKeyTable();
+		}
+		
+		return featureKeyTables;
+	}
+	
+	/**
+	 * Prints the combined hit, miss and eviction counts of every FeatureIndexCache made since the last report,
+	 * then forgets those caches.
+	 */
+	public void reportFeatureIndexCaches()
+	{
+		long hits 			= 0;
+		long misses 		= 0;
+		long evictions 	= 0;
+		FeatureIndexCache featureIndexCache;
+		Iterator<FeatureIndexCache> iterator;
+		
+		if (featureIndexCacheVector.isEmpty())
+		{
+			return;
+		}
+		
+		iterator = featureIndexCacheVector.iterator();
+		
+		while (iterator.hasNext())
+		{
+			featureIndexCache = iterator.next();
+			hits 			= hits + featureIndexCache.getHits();
+			misses 		= misses + featureIndexCache.getMisses();
+			evictions 	= evictions + featureIndexCache.getEvictions();
+		}
+		
+		featureIndexCacheVector.clear();
+		
+		System.out.println("Feature index cache: " + hits + " hits, " + misses + " misses, " + evictions + " evictions");
+	}
+	
 	/**
 	 * Find the maximum Integer value within nameToIntegerMap. Never let maxMap = 0, it causes LibSVM to error out.
 	 * 
@@ -170,64 +400,69 @@ public class TextToSVM
 	 */
 	public HashMap<Integer, Integer> turnInstanceIntoCHDMap(Vector<String>instanceVector, MembershipChecker membershipChecker)
 	{
-		HashMap<Integer, Integer> chdMap = new HashMap<Integer, Integer>();
-		Integer key;
-		Integer value;
+		CHDCountingSink chdCountingSink = new CHDCountingSink(membershipChecker);
 		Iterator<String> iterator = instanceVector.iterator();
-		String bigram;
+		
+		while (iterator.hasNext())
+		{
+			chdCountingSink.addFeature(iterator.next());
+		}
+		
+		return chdCountingSink.getCHDMap();
+	}
+	
+	/**
+	 * Finds the CHD minimum perfect hash value of a single text instance.  If the instance is not a member, and it is
+	 * a three part instance such as an OSB ("word1 word2 gap"), then each word is in turn replaced by the &lt;UNK&gt; tag 
+	 * to see if the model allows the instance with one unknown word.
+	 * 
+	 * @param bigram text instance (unigram, bigram, Gappy Bigram, OSB, etc) to look up
+	 * @param membershipChecker an object that checks a given instance against a precomputed minimum perfect hash function
+	 * for membership and then against a traditional hash function "signature" for collision detection.
+	 * @return the minimum perfect hash value of the instance, or -1 if the instance is not a member
+	 */
+	public static int getCHDIndex(String bigram, MembershipChecker membershipChecker)
+	{
+		int key;
 		String[] bigramTokens;
 		
+		key = membershipChecker.getIndex(bigram);
 		
-		while (iterator.hasNext())
+		//Deal with unknown words when <UNK> tag is allowed
+		if (key == -1)
 		{
-			bigram = iterator.next();
+			bigramTokens = bigram.split(" ");
+			
+			//Only "word1 word2 gap" instances have an <UNK> form in the model
+			if (bigramTokens.length != 3)
+			{
+				return -1;
+			}
 			
+			bigram = "<UNK> " + bigramTokens[1] + " " + bigramTokens[2];
 			key = membershipChecker.getIndex(bigram);
 			
-			//Deal with unknown words when <UNK> tag is allowed
-			if (key == -1)
+			bigram = bigramTokens[1] + " <UNK> " + bigramTokens[2];
+			key = key * membershipChecker.getIndex(bigram);
+			
+			/* 
+			 * If both bigrams with <UNK> subbed are multiplied together and 
+			 * the result is negative, then ONE of the <UNK> subs was valid.
+			 * If the result is positive, then BOTH of the subs was valid, meaning
+			 * that the pair we originally test is simply no good.  By multiplying
+			 * by -1 below, then we get the actual bigram cmph we need.
+			 */
+			if (key < 0)
 			{
-				bigramTokens = bigram.split(" ");
-				bigram = "<UNK> " + bigramTokens[1] + " " + bigramTokens[2];
-				key = membershipChecker.getIndex(bigram);
-				
-				bigram = bigramTokens[1] + " <UNK> " + bigramTokens[2];
-				key = key * membershipChecker.getIndex(bigram);
-				
-				/* 
-				 * If both bigrams with <UNK> subbed are multiplied together and 
-				 * the result is negative, then ONE of the <UNK> subs was valid.
-				 * If the result is positive, then BOTH of the subs was valid, meaning
-				 * that the pair we originally test is simply no good.  By multiplying
-				 * by -1 below, then we get the actual bigram cmph we need.
-				 */
-				if (key < 0)
-				{
-					key = key * -1;
-				}
-				else
-				{
-					key = -1;
-				}
+				key = key * -1;
 			}
-			
-			if (key >= 0)
+			else
 			{
-				if (chdMap.containsKey(key))
-				{
-					//Increment value of this key already in the HashMap
-					value = chdMap.get(key);
-					chdMap.put(key, value + 1);
-				}
-				else
-				{
-					//Initialize the new key
-					chdMap.put(key, 1);
-				}
+				key = -1;
 			}
 		}
 		
-		return chdMap;
+		return key;
 	}
 	
 	/**
@@ -318,72 +553,445 @@ public class TextToSVM
 	
 	public void processFiles(File textDirectory, int maxGap, FeatureTypes featureType, String keyFileName, String signatureFileName, File svmDir) throws FileNotFoundException, IOException
 	{
-		Yylex scanner;
-		Vector<String> vectorString;
-		Vector<String> instanceVector;
+		processFiles(textDirectory, maxGap, featureType, keyFileName, signatureFileName, svmDir, 1);
+	}
+	
+	/**
+	 * Parallel version of processFiles.  Every file in textDirectory is given its Integer ID up front, in the
+	 * same order the single threaded version would give them out, and only then are the files handed to a pool 
+	 * of threadCount workers.  This keeps each file's ID the same no matter how the workers are scheduled.  All
+	 * workers share one PerThreadMembershipChecker, which gives each worker thread its own MembershipChecker so lookups
+	 * never wait on a lock.
+	 * 
+	 * @param textDirectory directory of text files (or a single text file) to be turned into SVM files
+	 * @param maxGap the maximum "distance" in words that the features should manipulate
+	 * @param featureType type of feature to create (ie unigram, bigram, gappy bigram, orthogonal sparse bigram, etc)
+	 * @param keyFileName path and filename of the CHD keys.mph file
+	 * @param signatureFileName path and filename of the signature file
+	 * @param svmDir directory the SVM files will be written to
+	 * @param threadCount number of files to work on at the same time.  Values less than 2 use the single threaded version.
+	 * @throws FileNotFoundException if the key, signature or any text file cannot be found
+	 * @throws IOException if any file cannot be read or written
+	 */
+	public void processFiles(File textDirectory, int maxGap, FeatureTypes featureType, String keyFileName, String signatureFileName, File svmDir, int threadCount) throws FileNotFoundException, IOException
+	{
+		processFiles(textDirectory, new int[] {maxGap}, new FeatureTypes[] {featureType}, new String[] {keyFileName}, new String[] {signatureFileName}, new File[] {svmDir}, threadCount);
+	}
+	
+	/**
+	 * Version of processFiles that makes several types of features in one pass over the text.  Each text file is 
+	 * lexed once, and each utterance is handed to FeatureMaker once for every feature type, each with its own
+	 * MembershipChecker, FeatureIndexCache and SVM file.  featureTypes[k] is made with maxGaps[k], looked up in
+	 * keyFileNames[k] and signatureFileNames[k] and written to svmDirs[k].  Every feature type gives each file the 
+	 * same Integer ID.  The same feature type may be given more than once with different maxGaps to sweep the gap.
+	 * 
+	 * A fused SVMToSmallSVM holds the map of one feature type, so only one feature type can be made while fused.
+	 * 
+	 * @param textDirectory directory of text files (or a single text file) to be turned into SVM files
+	 * @param maxGaps the maximum "distance" in words that the features of each feature type should manipulate
+	 * @param featureTypes types of feature to create
+	 * @param keyFileNames path and filename of the CHD keys.mph file of each feature type
+	 * @param signatureFileNames path and filename of the signature file of each feature type
+	 * @param svmDirs directory the SVM files of each feature type will be written to
+	 * @param threadCount number of files to work on at the same time
+	 * @throws FileNotFoundException if a key, signature or text file cannot be found
+	 * @throws IOException if any file cannot be read or written
+	 */
+	public void processFiles(File textDirectory, int[] maxGaps, FeatureTypes[] featureTypes, String[] keyFileNames, String[] signatureFileNames, final File[] svmDirs, int threadCount) throws FileNotFoundException, IOException
+	{
 		HashMap<String, Integer>nameToIntegerMap = new HashMap<String, Integer>();
-		MembershipChecker membershipChecker;
-		HashMap<Integer, Integer> chdMap;
-		PrintWriter printWriter;
+		final MembershipChecker[] membershipCheckers = new MembershipChecker[featureTypes.length];
+		final int[] finalMaxGaps = maxGaps;
+		final FeatureTypes[] finalFeatureTypes = featureTypes;
 		File[] fileArray;
-		File sourceFile;
-		File writeFile;
-
-		int id;
+		Vector<Future<Void>> futureVector = new Vector<Future<Void>>();
+		ExecutorService executorService;
+		FeatureIndexCache[] featureIndexCaches;
+		FeatureKeyTable[] featureKeyTables;
 		
-		if (textDirectory.isDirectory())
+		if (fusedSVMToSmallSVM != null && featureTypes.length > 1)
 		{
-			fileArray = textDirectory.listFiles();
-			//parentFileName = file.getParent();
+			throw new IllegalStateException("Only one feature type can be made while an SVMToSmallSVM is fused in");
 		}
-		else
+		
+		fileArray = getSourceFiles(textDirectory);
+		
+		for (int k = 0; k < featureTypes.length; k++)
 		{
-			fileArray = new File[1];
-			fileArray[0] = textDirectory;
-			//parentFileName = file.getParentFile().getParent();
+			if (threadCount < 2)
+			{
+				membershipCheckers[k] = new MembershipChecker(keyFileNames[k], signatureFileNames[k]);
+			}
+			else
+			{
+				membershipCheckers[k] = new PerThreadMembershipChecker(keyFileNames[k], signatureFileNames[k]);
+			}
+		}
+		
+		if (threadCount < 2)
+		{
+			featureIndexCaches 	= newFeatureIndexCaches(membershipCheckers);
+			featureKeyTables 		= newFeatureKeyTables(featureTypes.length);
+			
+			for (int i=0;i < fileArray.length;i++)
+			{
+				if (fileArray[i].isFile())
+				{
+					processFile(fileArray[i], getIntegerIdOfFilename(fileArray[i].getName(), nameToIntegerMap), maxGaps, featureTypes, membershipCheckers, featureIndexCaches, featureKeyTables, svmDirs);
+				}
+			}
+			
+			reportFeatureIndexCaches();
+			return;
 		}
 		
-		membershipChecker = new MembershipChecker(keyFileName, signatureFileName);
+		//Each worker thread keeps its own caches and FeatureKeyTables from file to file
+		final ThreadLocal<FeatureIndexCache[]> threadFeatureIndexCaches = new ThreadLocal<FeatureIndexCache[]>()
+		{
+			@Override
+			protected FeatureIndexCache[] initialValue()
+			{
+				return newFeatureIndexCaches(membershipCheckers);
+			}
+		};
 		
-		for (int i=0;i < fileArray.length;i++)
+		final ThreadLocal<FeatureKeyTable[]> threadFeatureKeyTables = new ThreadLocal<FeatureKeyTable[]>()
 		{
-			if (fileArray[i].isFile())
+			@Override
+			protected FeatureKeyTable[] initialValue()
+			{
+				return newFeatureKeyTables(finalFeatureTypes.length);
+			}
+		};
+		
+		//Create the svm directories before the workers start so they do not race each other to make them
+		for (int k = 0; k < svmDirs.length; k++)
+		{
+			svmDirs[k].mkdirs();
+		}
+		
+		executorService = Executors.newFixedThreadPool(threadCount);
+		
+		try
+		{
+			for (int i=0;i < fileArray.length;i++)
+			{
+				if (fileArray[i].isFile())
+				{
+					final File sourceFile = fileArray[i];
+					
+					//IDs are handed out here, on the calling thread, so they are deterministic
+					final int id = getIntegerIdOfFilename(sourceFile.getName(), nameToIntegerMap);
+					
+					futureVector.add(executorService.submit(new Callable<Void>()
+					{
+						public Void call() throws IOException
+						{
+							processFile(sourceFile, id, finalMaxGaps, finalFeatureTypes, membershipCheckers, threadFeatureIndexCaches.get(), threadFeatureKeyTables.get(), svmDirs);
+							return null;
+						}
+					}));
+				}
+			}
+			
+			waitForFutures(futureVector);
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+		
+		reportFeatureIndexCaches();
+	}
+	
+	/**
+	 * Turns a single text file into a corresponding libSVM SPARSE formatted file made up of hash values for tokens and 
+	 * counts of the occurrences of each token within an utterance.  The SVM file has the same name as sourceFile and is 
+	 * placed in svmDir.
+	 * 
+	 * @param sourceFile text file to be turned into an SVM file
+	 * @param id integer id representing the name of sourceFile
+	 * @param maxGap the maximum "distance" in words that the features should manipulate
+	 * @param featureType type of feature to create (ie unigram, bigram, gappy bigram, orthogonal sparse bigram, etc)
+	 * @param membershipChecker object that turns feature instances into minimum perfect hash values
+	 * @param svmDir directory the SVM file will be written to
+	 * @throws FileNotFoundException if sourceFile cannot be found
+	 * @throws IOException if sourceFile cannot be read or the SVM file cannot be written
+	 */
+	public void processFile(File sourceFile, int id, int maxGap, FeatureTypes featureType, MembershipChecker membershipChecker, File svmDir) throws FileNotFoundException, IOException
+	{
+		processFile(sourceFile, id, maxGap, featureType, membershipChecker, null, svmDir);
+	}
+	
+	/**
+	 * Turns a single text file into a corresponding libSVM SPARSE formatted file made up of hash values for tokens and 
+	 * counts of the occurrences of each token within an utterance, looking each feature up in featureIndexCache before
+	 * going to membershipChecker.
+	 * 
+	 * @param sourceFile text file to be turned into an SVM file
+	 * @param id integer id representing the name of sourceFile
+	 * @param maxGap the maximum "distance" in words that the features should manipulate
+	 * @param featureType type of feature to create (ie unigram, bigram, gappy bigram, orthogonal sparse bigram, etc)
+	 * @param membershipChecker object that turns feature instances into minimum perfect hash values
+	 * @param featureIndexCache cache of recently seen features and their CHD values, or null for no cache
+	 * @param svmDir directory the SVM file will be written to
+	 * @throws FileNotFoundException if sourceFile cannot be found
+	 * @throws IOException if sourceFile cannot be read or the SVM file cannot be written
+	 */
+	public void processFile(File sourceFile, int id, int maxGap, FeatureTypes featureType, MembershipChecker membershipChecker, FeatureIndexCache featureIndexCache, File svmDir) throws FileNotFoundException, IOException
+	{
+		processFile(sourceFile, id, new int[] {maxGap}, new FeatureTypes[] {featureType}, new MembershipChecker[] {membershipChecker}, new FeatureIndexCache[] {featureIndexCache}, new File[] {svmDir});
+	}
+	
+	/**
+	 * Turns a single text file into one SVM file for each of several feature types, lexing the text only once.
+	 * Each utterance is parsed into the features of every feature type in turn, and the SVM file of 
+	 * featureTypes[k] with maxGaps[k] is written to svmDirs[k].  When ORTHOGONAL_SPARSE_BIGRAM is given with more
+	 * than one maxGap, the OSBs are made once with the largest and split among them by a GapSweepSink.
+	 * 
+	 * @param sourceFile text file to be turned into SVM files
+	 * @param id integer id representing the name of sourceFile
+	 * @param maxGaps the maximum "distance" in words that the features of each feature type should manipulate
+	 * @param featureTypes types of feature to create
+	 * @param membershipCheckers object that turns the feature instances of each type into minimum perfect hash values
+	 * @param featureIndexCaches cache of each feature type, or null (or a null entry) for no cache
+	 * @param svmDirs directory the SVM file of each feature type will be written to
+	 * @throws FileNotFoundException if sourceFile cannot be found
+	 * @throws IOException if sourceFile cannot be read or an SVM file cannot be written
+	 */
+	public void processFile(File sourceFile, int id, int[] maxGaps, FeatureTypes[] featureTypes, MembershipChecker[] membershipCheckers, FeatureIndexCache[] featureIndexCaches, File[] svmDirs) throws FileNotFoundException, IOException
+	{
+		processFile(sourceFile, id, maxGaps, featureTypes, membershipCheckers, featureIndexCaches, newFeatureKeyTables(featureTypes.length), svmDirs);
+	}
+	
+	/**
+	 * Version of processFile that turns FeatureKeys into Strings through featureKeyTables, which a thread keeps
+	 * from file to file so the Strings of features already seen are not made again for every file.
+	 * 
+	 * @param sourceFile text file to be turned into SVM files
+	 * @param id integer id representing the name of sourceFile
+	 * @param maxGaps the maximum "distance" in words that the features of each feature type should manipulate
+	 * @param featureTypes types of feature to create
+	 * @param membershipCheckers object that turns the feature instances of each type into minimum perfect hash values
+	 * @param featureIndexCaches cache of each feature type, or null (or a null entry) for no cache
+	 * @param featureKeyTables FeatureKeyTable of each feature type, used only by this call while it runs
+	 * @param svmDirs directory the SVM file of each feature type will be written to
+	 * @throws FileNotFoundException if sourceFile cannot be found
+	 * @throws IOException if sourceFile cannot be read or an SVM file cannot be written
+	 */
+	public void processFile(File sourceFile, int id, int[] maxGaps, FeatureTypes[] featureTypes, MembershipChecker[] membershipCheckers, FeatureIndexCache[] featureIndexCaches, FeatureKeyTable[] featureKeyTables, File[] svmDirs) throws FileNotFoundException, IOException
+	{
+		Yylex scanner;
+		Vector<String> vectorString;
+		CHDCountingSink[] chdCountingSinks = new CHDCountingSink[featureTypes.length];
+		FeatureKey featureKey = new FeatureKey();
+		SVMRecordWriter[] svmRecordWriters = new SVMRecordWriter[featureTypes.length];
+		File writeFile;
+		IOException closeException = null;
+		boolean finished = false;
+		
+		GapSweepSink gapSweepSink;
+		
+		for (int k = 0; k < featureTypes.length; k++)
+		{
+			chdCountingSinks[k] = new CHDCountingSink(membershipCheckers[k], featureIndexCaches == null ? null : featureIndexCaches[k], featureKeyTables[k]);
+		}
+		
+		gapSweepSink = newGapSweepSink(maxGaps, featureTypes, chdCountingSinks);
+		
+		scanner = new Yylex(newSourceReader(sourceFile));
+		
+		try
+		{
+			for (int k = 0; k < featureTypes.length; k++)
 			{
-				//Get the source file
-				sourceFile = fileArray[i];
-				scanner = new Yylex(new FileReader(sourceFile));
-				
 				//Set up svm file to be written to, if path to writeFile does not exist, create it, but only once
 				try
 				{
-					writeFile = new File(svmDir, sourceFile.getName());
+					writeFile = new File(svmDirs[k], sourceFile.getName());
 					writeFile.createNewFile();
 				}
 				catch(IOException e)
 				{
-					svmDir.mkdirs();
-					writeFile = new File(svmDir, sourceFile.getName());
+					svmDirs[k].mkdirs();
+					writeFile = new File(svmDirs[k], sourceFile.getName());
 					writeFile.createNewFile();
 				}
-				printWriter = new PrintWriter(writeFile);
-				
-				//Get Integer ID of file
-				id = getIntegerIdOfFilename(sourceFile.getName(), nameToIntegerMap);
-				
-				while((vectorString = getPhraseFromLex(scanner)) != null)
+				svmRecordWriters[k] = newSVMRecordWriter(writeFile);
+			}
+			
+			while((vectorString = getPhraseFromLex(scanner)) != null)
+			{
+				if (!vectorString.isEmpty())
+				{
+					for (int k = 0; k < featureTypes.length; k++)
+					{
+						//Features go straight from FeatureMaker into the CHD counts without building a Vector
+						chdCountingSinks[k].clear();
+						
+						if (gapSweepSink == null || featureTypes[k] != FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM)
+						{
+							FeatureMaker.parse(vectorString, maxGaps[k], featureTypes[k], featureKey, chdCountingSinks[k]);
+						}
+					}
+					
+					if (gapSweepSink != null)
+					{
+						FeatureMaker.parse(vectorString, gapSweepSink.getMaxGap(), FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM, featureKey, gapSweepSink);
+					}
+					
+					for (int k = 0; k < featureTypes.length; k++)
+					{
+						//Only written to disk when the buffer fills or the file is closed
+						svmRecordWriters[k].writeCHDCounts(id, chdCountingSinks[k].getCHDCounts());
+					}
+				}
+			}
+			
+			finished = true;
+		}
+		finally
+		{
+			//Each is closed on its own, so one that fails to close does not leave the rest open
+			for (int k = 0; k < featureTypes.length; k++)
+			{
+				if (svmRecordWriters[k] != null)
 				{
-					if (!vectorString.isEmpty())
+					try
+					{
+						svmRecordWriters[k].close();
+					}
+					catch (IOException e)
 					{
-						instanceVector =FeatureMaker.parse(vectorString, maxGap, featureType);
-						chdMap = turnInstanceIntoCHDMap(instanceVector, membershipChecker);
-						writeCHDMapToSVMFile(chdMap, printWriter, id);
-						printWriter.flush();
-						//printWriter.close();
+						closeException = closeException == null ? e : closeException;
 					}
 				}
+			}
+			
+			try
+			{
+				scanner.yyclose();
+			}
+			catch (IOException e)
+			{
+				closeException = closeException == null ? e : closeException;
+			}
+			
+			//An exception from the work itself is not hidden by one from closing
+			if (finished && closeException != null)
+			{
+				throw closeException;
+			}
+		}
+	}
+	
+	/**
+	 * Makes a GapSweepSink over the sinks of every ORTHOGONAL_SPARSE_BIGRAM feature type, if there is more than one.
+	 * 
+	 * @param maxGaps maxGap of each feature type
+	 * @param featureTypes feature types being made
+	 * @param chdCountingSinks sink of each feature type
+	 * @return a GapSweepSink feeding the OSB sinks, or null if fewer than two feature types are OSBs
+	 */
+	private static GapSweepSink newGapSweepSink(int[] maxGaps, FeatureTypes[] featureTypes, CHDCountingSink[] chdCountingSinks)
+	{
+		Vector<Integer> osbIndexes = new Vector<Integer>();
+		FeatureKeySink[] osbSinks;
+		int[] osbMaxGaps;
+		
+		for (int k = 0; k < featureTypes.length; k++)
+		{
+			if (featureTypes[k] == FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM)
+			{
+				osbIndexes.add(k);
+			}
+		}
+		
+		if (osbIndexes.size() < 2)
+		{
+			return null;
+		}
+		
+		osbSinks 		= new FeatureKeySink[osbIndexes.size()];
+		osbMaxGaps 	= new int[osbIndexes.size()];
+		
+		for (int i = 0; i < osbSinks.length; i++)
+		{
+			osbSinks[i] 		= chdCountingSinks[osbIndexes.get(i)];
+			osbMaxGaps[i] 	= maxGaps[osbIndexes.get(i)];
+		}
+		
+		return new GapSweepSink(osbSinks, osbMaxGaps);
+	}
+	
+	/**
+	 * Lists the files to be processed.  If textDirectory is a directory, then all of its entries are returned, 
+	 * otherwise textDirectory is assumed to be a single text file.
+	 * 
+	 * @param textDirectory directory of text files or a single text file
+	 * @return array of the files (and possibly subdirectories) to be processed
+	 */
+	public static File[] getSourceFiles(File textDirectory)
+	{
+		File[] fileArray;
+		
+		if (textDirectory.isDirectory())
+		{
+			fileArray = textDirectory.listFiles();
+		}
+		else
+		{
+			fileArray = new File[1];
+			fileArray[0] = textDirectory;
+		}
+		
+		return fileArray;
+	}
+	
+	/**
+	 * Waits for every submitted worker to finish.  The first worker failure is unwrapped and thrown 
+	 * as the IOException (or RuntimeException) the worker itself threw.
+	 * 
+	 * @param futureVector Futures of the submitted workers
+	 * @throws IOException if any worker threw an IOException
+	 */
+	public static void waitForFutures(Vector<? extends Future<?>> futureVector) throws IOException
+	{
+		Iterator<? extends Future<?>> iterator = futureVector.iterator();
+		
+		while (iterator.hasNext())
+		{
+			try
+			{
+				iterator.next().get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for worker threads");
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
 				
-				printWriter.flush();
-				printWriter.close();
+				if (cause instanceof IOException)
+				{
+					throw (IOException)cause;
+				}
+				else if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException)cause;
+				}
+				else if (cause instanceof Error)
+				{
+					throw (Error)cause;
+				}
+				else
+				{
+					IOException ioException = new IOException("Worker thread failed");
+					ioException.initCause(cause);
+					throw ioException;
+				}
 			}
 		}
 	}
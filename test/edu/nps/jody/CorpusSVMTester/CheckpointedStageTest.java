@@ -0,0 +1,211 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of which CheckpointedStages run again, on a pipeline chained the way CorpusSVMTester.prepareTextForSVM
+ * chains its stages: svmFiles reads the text with a maxGap, smallSVMFiles reads the stamp of svmFiles, and a
+ * slice stage for each group size reads the stamp of smallSVMFiles.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class CheckpointedStageTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File 				textDirectory;
+	private File 				modelDirectory;
+	private Vector<String> 	ran;
+
+	/**
+	 * Writes two text files and makes an empty model directory.
+	 */
+	@Before
+	public void writeText() throws IOException
+	{
+		textDirectory 	= temporaryFolder.newFolder("text");
+		modelDirectory = temporaryFolder.newFolder("model");
+		ran 				= new Vector<String>();
+
+		write(new File(textDirectory, "author000"), "the quick brown fox\n");
+		write(new File(textDirectory, "author001"), "jumps over the lazy dog\n");
+	}
+
+	@Test
+	public void unchangedRerunIsSkipped() throws IOException
+	{
+		runPipeline(2, new int[] {5, 10});
+
+		assertEquals(4, ran.size());
+
+		ran.clear();
+		runPipeline(2, new int[] {5, 10});
+
+		assertEquals(0, ran.size());
+	}
+
+	@Test
+	public void changedMaxGapRunsEveryStageAgain() throws IOException
+	{
+		runPipeline(2, new int[] {5});
+		ran.clear();
+		runPipeline(3, new int[] {5});
+
+		assertEquals(Arrays.asList("svmFiles", "smallSVMFiles", "slices-5"), ran);
+	}
+
+	@Test
+	public void touchedFileWithTheSameContentsIsStillCurrent() throws IOException
+	{
+		File textFile = new File(textDirectory, "author000");
+
+		runPipeline(2, new int[] {5});
+		assertTrue(textFile.setLastModified(textFile.lastModified() - 10000));
+		ran.clear();
+		runPipeline(2, new int[] {5});
+
+		assertEquals(0, ran.size());
+
+		//Same size, different contents
+		write(textFile, "the quick brown cat\n");
+		assertTrue(textFile.setLastModified(textFile.lastModified() - 20000));
+		runPipeline(2, new int[] {5});
+
+		assertEquals(Arrays.asList("svmFiles", "smallSVMFiles", "slices-5"), ran);
+	}
+
+	@Test
+	public void changingOnlyGroupSizesRunsOnlyTheNewSlices() throws IOException
+	{
+		runPipeline(2, new int[] {5});
+		ran.clear();
+		runPipeline(2, new int[] {5, 10, 25});
+
+		assertEquals(2, ran.size());
+		assertTrue(ran.contains("slices-10"));
+		assertTrue(ran.contains("slices-25"));
+	}
+
+	@Test
+	public void stageWhoseOutputIsGoneRunsAgain() throws IOException
+	{
+		runPipeline(2, new int[] {5});
+		assertTrue(new File(modelDirectory, "slices-5").delete());
+		ran.clear();
+		runPipeline(2, new int[] {5});
+
+		assertEquals(Arrays.asList("slices-5"), ran);
+	}
+
+	/**
+	 * Runs the svmFiles, smallSVMFiles and slice stages, recording in ran the name of each stage that was not skipped.
+	 */
+	private void runPipeline(final int maxGap, int[] groupSizes) throws IOException
+	{
+		StageScheduler stageScheduler 	= new StageScheduler(2, 0);
+		final File svmStampFile 		= stampFileFor("svmFiles");
+		final File smallSVMStampFile 	= stampFileFor("smallSVMFiles");
+
+		stageScheduler.addStage("svmFiles", new RecordingStage("svmFiles")
+		{
+			protected void addInputs(StageStamp stageStamp)
+			{
+				stageStamp.addDirectory(textDirectory);
+				stageStamp.addParameter("maxGap", maxGap);
+			}
+		});
+
+		stageScheduler.addStage("smallSVMFiles", new RecordingStage("smallSVMFiles")
+		{
+			protected void addInputs(StageStamp stageStamp) throws IOException
+			{
+				stageStamp.addStamp("svmFiles", svmStampFile);
+			}
+		}, "svmFiles");
+
+		for (int i = 0; i < groupSizes.length; i++)
+		{
+			final int groupSize = groupSizes[i];
+
+			stageScheduler.addStage("slices-" + groupSize, new RecordingStage("slices-" + groupSize)
+			{
+				protected void addInputs(StageStamp stageStamp) throws IOException
+				{
+					stageStamp.addStamp("smallSVMFiles", smallSVMStampFile);
+					stageStamp.addParameter("groupSize", groupSize);
+				}
+			}, "smallSVMFiles");
+		}
+
+		stageScheduler.run();
+	}
+
+	/**
+	 * @return stamp file of the stage named stageName
+	 */
+	private File stampFileFor(String stageName)
+	{
+		return new File(new File(modelDirectory, StageStamp.STAMP_DIR_NAME), stageName + StageStamp.STAMP_SUFFIX);
+	}
+
+	/**
+	 * Replaces the contents of file with text.
+	 */
+	private static void write(File file, String text) throws IOException
+	{
+		FileOutputStream outputStream = new FileOutputStream(file);
+
+		try
+		{
+			outputStream.write(text.getBytes("US-ASCII"));
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * A stage whose output is a directory named after it, and which records its name in ran when it runs.
+	 */
+	private abstract class RecordingStage extends CheckpointedStage
+	{
+		private String stageName;
+
+		RecordingStage(String stageName)
+		{
+			super(stageName, stampFileFor(stageName), new File(modelDirectory, stageName));
+			this.stageName = stageName;
+		}
+
+		protected void runStage() throws IOException
+		{
+			new File(modelDirectory, stageName).mkdirs();
+			ran.add(stageName);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of ConcurrentRemapTable giving out small values from many threads.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConcurrentRemapTableTest
+{
+	@Test
+	public void concurrentTableGivesOutEverySmallValueOnce() throws InterruptedException
+	{
+		assertNoGapsOrRepeats(new ConcurrentRemapTable(RemapTableTest.newTable(200, 5), 8), RemapTableTest.newTable(200, 5), false);
+	}
+
+	@Test
+	public void concurrentDenseTableGivesOutEverySmallValueOnce() throws InterruptedException
+	{
+		assertNoGapsOrRepeats(new ConcurrentRemapTable(RemapTableTest.newTable(200, 5).toDense(20000), 8), RemapTableTest.newTable(200, 5), true);
+	}
+
+	/**
+	 * Has 8 threads look up the same random large values at once, then checks that the small values of the
+	 * starting table are kept and every other small value from 1 to mapMax - 1 went to exactly one large value.
+	 */
+	private static void assertNoGapsOrRepeats(final ConcurrentRemapTable concurrentRemapTable, RemapTable startTable, boolean dense) throws InterruptedException
+	{
+		Thread[] threads = new Thread[8];
+		RemapTable remapTable;
+		int[] largeValues;
+		BitSet smallValues = new BitSet();
+		int small;
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					Random random = new Random(1);
+
+					for (int j = 0; j < 200000; j++)
+					{
+						concurrentRemapTable.getOrAssign(random.nextInt(20100) - 50);
+					}
+				}
+			};
+
+			threads[i].start();
+		}
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i].join();
+		}
+
+		remapTable 	= concurrentRemapTable.toRemapTable();
+		largeValues 	= remapTable.sortedLargeValues();
+
+		assertEquals(dense, remapTable.isDense());
+		assertEquals(remapTable.getMapMax(), concurrentRemapTable.getMapMax());
+
+		for (int i = 0; i < remapTable.size(); i++)
+		{
+			small = remapTable.get(largeValues[i]);
+
+			assertFalse("Small value " + small + " was given out twice", smallValues.get(small));
+			smallValues.set(small);
+		}
+
+		assertEquals(remapTable.getMapMax() - 1, smallValues.cardinality());
+		assertEquals(remapTable.getMapMax(), smallValues.nextClearBit(1));
+
+		for (int i = 0; i < 200; i++)
+		{
+			assertEquals(startTable.get(i * 5), remapTable.get(i * 5));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of ConfusionMatrix counts, statistics and merging.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConfusionMatrixTest
+{
+	private static final double 	DELTA = 1e-12;
+
+	@Test
+	public void countsGiveThePrecisionRecallAndF1OfEachLabel()
+	{
+		ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+
+		confusionMatrix.add(1, 1);
+		confusionMatrix.add(1, 2);
+		confusionMatrix.add(2, 2);
+		confusionMatrix.add(3, 1);
+
+		assertEquals(4, confusionMatrix.getTotal());
+		assertEquals(0.5, confusionMatrix.getAccuracy(), DELTA);
+		assertEquals(1, confusionMatrix.getCount(1, 2));
+		assertEquals(0, confusionMatrix.getCount(2, 1));
+		assertEquals(0.5, confusionMatrix.getPrecision(1), DELTA);
+		assertEquals(0.5, confusionMatrix.getRecall(1), DELTA);
+		assertEquals(0.5, confusionMatrix.getF1(1), DELTA);
+		assertEquals(0, confusionMatrix.getF1(3), DELTA);
+		assertEquals((0.5 + 2.0 / 3 + 0) / 3, confusionMatrix.getMacroF1(), DELTA);
+		assertArrayEquals(new int[] {1, 2, 3}, confusionMatrix.getLabels());
+	}
+
+	@Test
+	public void mergingGivesTheSameMatrixAsCountingEverythingInOne()
+	{
+		Random random 				= new Random(3);
+		ConfusionMatrix whole 		= new ConfusionMatrix();
+		ConfusionMatrix[] parts 	= new ConfusionMatrix[5];
+		ConfusionMatrix merged 		= new ConfusionMatrix();
+		int actual;
+		int predicted;
+
+		for (int i = 0; i < parts.length; i++)
+		{
+			parts[i] = new ConfusionMatrix();
+		}
+
+		for (int i = 0; i < 50000; i++)
+		{
+			actual 		= random.nextInt(300);
+			predicted 	= random.nextInt(4) == 0 ? random.nextInt(300) : actual;
+
+			whole.add(actual, predicted);
+			parts[i % parts.length].add(actual, predicted);
+		}
+
+		//Merged in reverse so the labels are seen in another order than in whole
+		for (int i = parts.length - 1; i >= 0; i--)
+		{
+			merged.merge(parts[i]);
+		}
+
+		assertEquals(whole.getTotal(), merged.getTotal());
+		assertEquals(whole.getAccuracy(), merged.getAccuracy(), 0);
+		assertEquals(whole.getMacroPrecision(), merged.getMacroPrecision(), 0);
+		assertEquals(whole.getMacroRecall(), merged.getMacroRecall(), 0);
+		assertEquals(whole.getMacroF1(), merged.getMacroF1(), 0);
+		assertArrayEquals(whole.getLabels(), merged.getLabels());
+
+		for (int a = 0; a < 300; a++)
+		{
+			for (int p = 0; p < 300; p++)
+			{
+				assertEquals(whole.getCount(a, p), merged.getCount(a, p));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aMatrixCannotBeMergedIntoItself()
+	{
+		ConfusionMatrix confusionMatrix = new ConfusionMatrix();
+
+		confusionMatrix.add(1, 2);
+		confusionMatrix.merge(confusionMatrix);
+	}
+}
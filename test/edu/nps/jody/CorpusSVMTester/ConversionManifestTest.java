@@ -0,0 +1,160 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of how ConversionManifest decides a file is current, and of its file.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class ConversionManifestTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void aRecordedFileIsCurrentUntilItsContentsChange() throws IOException
+	{
+		File file 								= temporaryFolder.newFile("author000");
+		ConversionManifest conversionManifest 	= new ConversionManifest();
+
+		write(file, "1 4:1 9:2\n");
+
+		assertFalse(conversionManifest.isCurrent(file));
+
+		conversionManifest.record(file);
+
+		assertTrue(conversionManifest.isCurrent(file));
+
+		//Touched but not changed
+		assertTrue(file.setLastModified(file.lastModified() - 10000));
+		assertTrue(conversionManifest.isCurrent(file));
+
+		//Changed without changing its size
+		write(file, "1 4:1 9:3\n");
+		assertTrue(file.setLastModified(file.lastModified() - 20000));
+		assertFalse(conversionManifest.isCurrent(file));
+
+		write(file, "1 4:1 9:2 10:1\n");
+		assertFalse(conversionManifest.isCurrent(file));
+	}
+
+	@Test
+	public void writtenManifestReadsBackUnchanged() throws IOException
+	{
+		File first 								= temporaryFolder.newFile("author000");
+		File second 							= temporaryFolder.newFile("author001");
+		File manifestFile 					= ConversionManifest.manifestFileFor(temporaryFolder.getRoot());
+		ConversionManifest conversionManifest 	= new ConversionManifest();
+		ConversionManifest readManifest;
+
+		write(first, "1 4:1\n");
+		write(second, "2 5:1\n");
+		conversionManifest.record(first);
+		conversionManifest.record(second);
+		conversionManifest.write(manifestFile);
+
+		readManifest = ConversionManifest.read(manifestFile);
+
+		assertFalse(manifestFile.getParentFile().equals(temporaryFolder.getRoot()));
+		assertEquals(2, readManifest.size());
+		assertTrue(readManifest.isCurrent(first));
+		assertTrue(readManifest.isCurrent(second));
+	}
+
+	@Test
+	public void namesAreWrittenInUTF8() throws IOException
+	{
+		File file 								= temporaryFolder.newFile("auteur\u00e9\u4e2d");
+		File manifestFile 					= ConversionManifest.manifestFileFor(temporaryFolder.getRoot());
+		ConversionManifest conversionManifest 	= new ConversionManifest();
+
+		write(file, "1 4:1\n");
+		conversionManifest.record(file);
+		conversionManifest.write(manifestFile);
+
+		assertTrue(ConversionManifest.read(manifestFile).isCurrent(file));
+		assertTrue(new String(readBytes(manifestFile), "UTF-8").startsWith(file.getName() + "\t"));
+	}
+
+	@Test
+	public void retainOnlyForgetsFilesThatAreGone() throws IOException
+	{
+		File first 								= temporaryFolder.newFile("author000");
+		File second 							= temporaryFolder.newFile("author001");
+		ConversionManifest conversionManifest 	= new ConversionManifest();
+
+		conversionManifest.record(first);
+		conversionManifest.record(second);
+
+		assertEquals(Arrays.asList("author000"), conversionManifest.retainOnly(new File[] {second}));
+		assertEquals(1, conversionManifest.size());
+		assertFalse(conversionManifest.isCurrent(first));
+		assertTrue(conversionManifest.isCurrent(second));
+	}
+
+	/**
+	 * @return every byte of file
+	 */
+	private static byte[] readBytes(File file) throws IOException
+	{
+		byte[] bytes 						= new byte[(int)file.length()];
+		FileInputStream inputStream 	= new FileInputStream(file);
+		int read 							= 0;
+		int count;
+
+		try
+		{
+			while (read < bytes.length && (count = inputStream.read(bytes, read, bytes.length - read)) > 0)
+			{
+				read = read + count;
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Replaces the contents of file with text.
+	 */
+	private static void write(File file, String text) throws IOException
+	{
+		FileOutputStream outputStream = new FileOutputStream(file);
+
+		try
+		{
+			outputStream.write(text.getBytes("US-ASCII"));
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+}
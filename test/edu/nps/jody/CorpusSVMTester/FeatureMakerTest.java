@@ -0,0 +1,53 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Test;
+
+/**
+ * Tests of the sliding windows FeatureMaker makes for each N-Gram feature type.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FeatureMakerTest
+{
+	private static final Vector<String> TOKENS = new Vector<String>(Arrays.asList("the", "quick", "brown", "fox"));
+
+	@Test
+	public void eachNGramTypeSlidesAWindowOfItsSize()
+	{
+		assertEquals(Arrays.asList("the", "quick", "brown", "fox"), FeatureMaker.parse(TOKENS, 0, FeatureTypes.ONE_GRAM));
+		assertEquals(Arrays.asList("the quick", "quick brown", "brown fox"), FeatureMaker.parse(TOKENS, 0, FeatureTypes.TWO_GRAM));
+		assertEquals(Arrays.asList("the quick brown", "quick brown fox"), FeatureMaker.parse(TOKENS, 0, FeatureTypes.THREE_GRAM));
+		assertEquals(Arrays.asList("the quick brown fox"), FeatureMaker.parse(TOKENS, 0, FeatureTypes.FOUR_GRAM));
+	}
+
+	@Test
+	public void tooFewTokensMakeNoNGrams()
+	{
+		assertEquals(0, FeatureMaker.parse(TOKENS, 0, FeatureTypes.FIVE_GRAM).size());
+		assertEquals(0, FeatureMaker.parse(new Vector<String>(), 0, FeatureTypes.ONE_GRAM).size());
+		assertEquals(0, FeatureMaker.parse(new Vector<String>(TOKENS.subList(0, 1)), 0, FeatureTypes.TWO_GRAM).size());
+	}
+
+	@Test
+	public void maxGapDoesNotChangeTheNGrams()
+	{
+		//The window of an N-Gram type comes from the type itself, not from maxGap
+		assertEquals(FeatureMaker.parse(TOKENS, 0, FeatureTypes.TWO_GRAM), FeatureMaker.parse(TOKENS, 5, FeatureTypes.TWO_GRAM));
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the folds FoldBuilder writes from one in-memory copy of smallSVMFiles.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class FoldBuilderTest
+{
+	private static final int 	AUTHOR_COUNT 			= 6;
+	private static final int 	N_CROSS_VALIDATION 	= 5;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File 				smallSVMDirectory;
+	private FoldBuilder 		foldBuilder;
+
+	/**
+	 * Writes AUTHOR_COUNT small SVM files with a different number of utterances each, and loads them.
+	 */
+	@Before
+	public void writeSmallSVMFiles() throws IOException
+	{
+		PrintWriter printWriter;
+
+		smallSVMDirectory = temporaryFolder.newFolder("smallSVMFiles");
+
+		for (int author = 0; author < AUTHOR_COUNT; author++)
+		{
+			printWriter = new PrintWriter(new File(smallSVMDirectory, "author00" + author));
+
+			for (int utterance = 0; utterance < 10 + author; utterance++)
+			{
+				printWriter.print((author + 1) + " " + (utterance % 3 + 1) + ":1 " + (10 + author) + ":" + (utterance + 1) + " \n");
+			}
+
+			printWriter.close();
+		}
+
+		foldBuilder = new FoldBuilder(SVMDataset.load(smallSVMDirectory), N_CROSS_VALIDATION);
+	}
+
+	@Test
+	public void eachFoldSplitsItsGroupIntoTrainingAndTesting() throws IOException
+	{
+		File groupDirectory;
+		Vector<String> groupLines;
+		Vector<String> testLines;
+		Vector<String> foldLines;
+		int testCount;
+
+		foldBuilder.writeFolds(smallSVMDirectory, 3, 2);
+
+		assertEquals(2, foldBuilder.getGroupCount(3));
+
+		for (int group = 0; group < foldBuilder.getGroupCount(3); group++)
+		{
+			groupDirectory 	= foldBuilder.groupDirectoryFor(smallSVMDirectory, 3, group, 2);
+			groupLines 		= new Vector<String>();
+			testLines 		= new Vector<String>();
+			testCount 		= 0;
+
+			assertEquals("group0" + group, groupDirectory.getName());
+
+			for (int author = group * 3; author < group * 3 + 3; author++)
+			{
+				groupLines.addAll(readLines(new File(smallSVMDirectory, "author00" + author)));
+			}
+
+			for (int slice = 0; slice < N_CROSS_VALIDATION; slice++)
+			{
+				foldLines = readLines(new File(groupDirectory, slice + FoldBuilder.TRAIN_SUFFIX));
+				foldLines.addAll(readLines(new File(groupDirectory, slice + FoldBuilder.TEST_SUFFIX)));
+				testLines.addAll(readLines(new File(groupDirectory, slice + FoldBuilder.TEST_SUFFIX)));
+				testCount = testCount + readLines(new File(groupDirectory, slice + FoldBuilder.TEST_SUFFIX)).size();
+
+				Collections.sort(foldLines);
+				Collections.sort(groupLines);
+				assertEquals(groupLines, foldLines);
+			}
+
+			//Every utterance is tested in exactly one slice
+			Collections.sort(testLines);
+			assertEquals(groupLines.size(), testCount);
+			assertEquals(groupLines, testLines);
+		}
+	}
+
+	@Test
+	public void groupSizesCanBeWrittenAtTheSameTime() throws Exception
+	{
+		ExecutorService executorService 		= Executors.newFixedThreadPool(4);
+		Vector<Future<Void>> futureVector 	= new Vector<Future<Void>>();
+
+		try
+		{
+			for (int i = 0; i < 8; i++)
+			{
+				final int groupSize = i % 2 + 2;
+
+				futureVector.add(executorService.submit(new Callable<Void>()
+				{
+					public Void call() throws IOException
+					{
+						foldBuilder.writeFolds(smallSVMDirectory, groupSize, 3);
+
+						return null;
+					}
+				}));
+			}
+
+			TextToSVM.waitForFutures(futureVector);
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+
+		for (int groupSize = 2; groupSize <= 3; groupSize++)
+		{
+			for (int group = 0; group < foldBuilder.getGroupCount(groupSize); group++)
+			{
+				assertTrue(new File(foldBuilder.groupDirectoryFor(smallSVMDirectory, groupSize, group, 3), (N_CROSS_VALIDATION - 1) + FoldBuilder.TEST_SUFFIX).isFile());
+			}
+		}
+	}
+
+	/**
+	 * @return every line of file
+	 */
+	private static Vector<String> readLines(File file) throws IOException
+	{
+		BufferedReader bufferedReader 	= new BufferedReader(new FileReader(file));
+		Vector<String> lines 				= new Vector<String>();
+		String line;
+
+		try
+		{
+			while ((line = bufferedReader.readLine()) != null)
+			{
+				lines.add(line);
+			}
+		}
+		finally
+		{
+			bufferedReader.close();
+		}
+
+		return lines;
+	}
+}
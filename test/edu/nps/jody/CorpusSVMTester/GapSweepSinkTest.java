@@ -0,0 +1,140 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Vector;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a GapSweepSink hands each maxGap exactly the OSBs, in the same order, that FeatureMaker makes for
+ * that maxGap on its own.  TextToSVM.processFile counts and writes whatever the sinks are handed, so the same
+ * features in the same order give the same SVM file as a separate run of that maxGap.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class GapSweepSinkTest
+{
+	private static final String LONG_TEXT = "The quick brown fox jumps over the lazy dog.  It was not amused by any of this at all, "
+			+ "not even a little bit.\nShort one.\nA\n\nThe dog slept on and on and on through the long hot afternoon.\n";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void eachGapGetsTheOSBsOfASeparatePass() throws IOException
+	{
+		assertSweepMatchesSeparatePasses(LONG_TEXT, new int[] {2, 3, 5});
+	}
+
+	@Test
+	public void gapsOfMoreThanOneDigitAreSplitToo() throws IOException
+	{
+		assertSweepMatchesSeparatePasses(LONG_TEXT, new int[] {12, 3});
+	}
+
+	@Test
+	public void utterancesShorterThanTheGapsStillMatch() throws IOException
+	{
+		assertSweepMatchesSeparatePasses("Too short.\n", new int[] {2, 3, 5});
+	}
+
+	/**
+	 * Lexes a text file as TextToSVM.processFile does and, for every utterance, checks the OSBs a GapSweepSink
+	 * hands to the sink of each of maxGaps against FeatureMaker.parse with that maxGap alone.
+	 */
+	private void assertSweepMatchesSeparatePasses(String text, int[] maxGaps) throws IOException
+	{
+		File textFile 								= temporaryFolder.newFile("author000");
+		TextToSVM textToSVM 						= new TextToSVM();
+		FeatureKey featureKey 					= new FeatureKey();
+		RecordingSink[] recordingSinks 			= new RecordingSink[maxGaps.length];
+		GapSweepSink gapSweepSink;
+		Yylex scanner;
+		Vector<String> tokens;
+		int utteranceCount 						= 0;
+
+		write(textFile, text);
+
+		for (int i = 0; i < maxGaps.length; i++)
+		{
+			recordingSinks[i] = new RecordingSink();
+		}
+
+		gapSweepSink 	= new GapSweepSink(recordingSinks, maxGaps);
+		scanner 		= new Yylex(textToSVM.newSourceReader(textFile));
+
+		try
+		{
+			while ((tokens = textToSVM.getPhraseFromLex(scanner)) != null)
+			{
+				for (int i = 0; i < maxGaps.length; i++)
+				{
+					recordingSinks[i].features.clear();
+				}
+
+				FeatureMaker.parse(tokens, gapSweepSink.getMaxGap(), FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM, featureKey, gapSweepSink);
+
+				for (int i = 0; i < maxGaps.length; i++)
+				{
+					assertEquals("maxGap " + maxGaps[i] + " of " + tokens, FeatureMaker.parse(tokens, maxGaps[i], FeatureTypes.ORTHOGONAL_SPARSE_BIGRAM), recordingSinks[i].features);
+				}
+
+				utteranceCount++;
+			}
+		}
+		finally
+		{
+			scanner.yyclose();
+		}
+
+		assertTrue(utteranceCount > 0);
+	}
+
+	/**
+	 * Replaces the contents of file with text.
+	 */
+	private static void write(File file, String text) throws IOException
+	{
+		FileOutputStream outputStream = new FileOutputStream(file);
+
+		try
+		{
+			outputStream.write(text.getBytes("US-ASCII"));
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * A FeatureKeySink that keeps every feature it is handed, in order.
+	 */
+	private static class RecordingSink implements FeatureKeySink
+	{
+		private Vector<String> features = new Vector<String>();
+
+		public void addFeature(FeatureKey featureKey)
+		{
+			features.add(featureKey.toString());
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of IntIntHashMap against a HashMap&lt;Integer, Integer&gt; doing the same work.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class IntIntHashMapTest
+{
+	@Test
+	public void putReplacesAndGetFallsBackToDefault()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+
+		map.put(7, 1);
+		map.put(7, 2);
+		map.put(-3, 9);
+
+		assertEquals(2, map.size());
+		assertEquals(2, map.get(7, -1));
+		assertEquals(9, map.get(-3, -1));
+		assertEquals(-1, map.get(8, -1));
+		assertTrue(map.containsKey(-3));
+		assertFalse(map.containsKey(0));
+	}
+
+	@Test
+	public void growingKeepsEveryEntry()
+	{
+		IntIntHashMap map 					= new IntIntHashMap(1);
+		HashMap<Integer, Integer> expected 	= new HashMap<Integer, Integer>();
+		Random random 							= new Random(1);
+		int key;
+
+		//A put that grows the map has to land its value in the new arrays
+		for (int i = 0; i < 100000; i++)
+		{
+			key = random.nextInt();
+
+			if (key != IntIntHashMap.FREE_KEY)
+			{
+				map.put(key, i);
+				expected.put(key, i);
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+
+		for (Integer expectedKey:expected.keySet())
+		{
+			assertEquals(expected.get(expectedKey).intValue(), map.get(expectedKey, -1));
+		}
+	}
+
+	@Test
+	public void incrementAddsToMissingAndPresentKeys()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+
+		assertEquals(3, map.increment(5, 3));
+		assertEquals(7, map.increment(5, 4));
+		assertEquals(-2, map.increment(6, -2));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void clearEmptiesTheMapForReuse()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+
+		for (int i = 0; i < 1000; i++)
+		{
+			map.put(i, i);
+		}
+
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(10));
+
+		map.put(10, 4);
+
+		assertEquals(1, map.size());
+		assertEquals(4, map.get(10, -1));
+	}
+
+	@Test
+	public void keysComeBackSortedOrInInsertionOrder()
+	{
+		IntIntHashMap map 	= new IntIntHashMap();
+		int[] keys 			= {40, -7, 3, 1000000, 0};
+		int[] sorted 			= keys.clone();
+
+		for (int i = 0; i < keys.length; i++)
+		{
+			map.put(keys[i], i);
+		}
+
+		Arrays.sort(sorted);
+
+		assertArrayEquals(keys, map.keysInInsertionOrder());
+		assertArrayEquals(sorted, Arrays.copyOf(map.sortedKeys(), map.size()));
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.bwaldvogel.liblinear.Parameter;
+import de.bwaldvogel.liblinear.SolverType;
+
+/**
+ * Tests of LibLinearFoldTrainer predicting the folds of a FoldBuilder on one or many threads.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class LibLinearFoldTrainerTest
+{
+	private static final int 	AUTHOR_COUNT 			= 6;
+	private static final int 	N_CROSS_VALIDATION 	= 5;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File 				smallSVMDirectory;
+	private FoldBuilder 		foldBuilder;
+
+	/**
+	 * Writes AUTHOR_COUNT small SVM files with a different number of utterances each, and loads them.
+	 */
+	@Before
+	public void writeSmallSVMFiles() throws IOException
+	{
+		PrintWriter printWriter;
+
+		smallSVMDirectory = temporaryFolder.newFolder("smallSVMFiles");
+
+		for (int author = 0; author < AUTHOR_COUNT; author++)
+		{
+			printWriter = new PrintWriter(new File(smallSVMDirectory, "author00" + author));
+
+			for (int utterance = 0; utterance < 10 + author; utterance++)
+			{
+				printWriter.print((author + 1) + " " + (utterance % 3 + 1) + ":1 " + (10 + author) + ":" + (utterance + 1) + " \n");
+			}
+
+			printWriter.close();
+		}
+
+		foldBuilder = new FoldBuilder(SVMDataset.load(smallSVMDirectory), N_CROSS_VALIDATION);
+	}
+
+	@Test
+	public void predictionsDoNotDependOnTheNumberOfThreads() throws IOException
+	{
+		//A primal solver, since the dual solvers shuffle with the one Random that Linear shares between threads
+		Parameter parameter 			= new Parameter(SolverType.L2R_L2LOSS_SVC, 1, 0.01);
+		File otherDirectory 			= temporaryFolder.newFolder("otherSmallSVMFiles");
+		ConfusionMatrix oneThread 	= new LibLinearFoldTrainer(foldBuilder, parameter).trainAndPredict(smallSVMDirectory, 2, 3, 1);
+		ConfusionMatrix fourThreads = new LibLinearFoldTrainer(foldBuilder, parameter).trainAndPredict(otherDirectory, 2, 3, 4);
+		int[] labels 					= oneThread.getLabels();
+		File oneThreadGroup;
+		File fourThreadGroup;
+
+		assertEquals(AUTHOR_COUNT * 10 + 15, oneThread.getTotal());
+		assertEquals(oneThread.getTotal(), fourThreads.getTotal());
+
+		for (int a = 0; a < labels.length; a++)
+		{
+			for (int p = 0; p < labels.length; p++)
+			{
+				assertEquals(oneThread.getCount(labels[a], labels[p]), fourThreads.getCount(labels[a], labels[p]));
+			}
+		}
+
+		for (int group = 0; group < foldBuilder.getGroupCount(2); group++)
+		{
+			oneThreadGroup 	= foldBuilder.groupDirectoryFor(smallSVMDirectory, 2, group, 3);
+			fourThreadGroup = foldBuilder.groupDirectoryFor(otherDirectory, 2, group, 3);
+
+			for (int slice = 0; slice < N_CROSS_VALIDATION; slice++)
+			{
+				assertEquals(readLines(new File(oneThreadGroup, slice + LibLinearFoldTrainer.PREDICT_SUFFIX)), readLines(new File(fourThreadGroup, slice + LibLinearFoldTrainer.PREDICT_SUFFIX)));
+			}
+		}
+	}
+
+	/**
+	 * @return every line of file
+	 */
+	private static Vector<String> readLines(File file) throws IOException
+	{
+		BufferedReader bufferedReader 	= new BufferedReader(new FileReader(file));
+		Vector<String> lines 				= new Vector<String>();
+		String line;
+
+		try
+		{
+			while ((line = bufferedReader.readLine()) != null)
+			{
+				lines.add(line);
+			}
+		}
+		finally
+		{
+			bufferedReader.close();
+		}
+
+		return lines;
+	}
+}
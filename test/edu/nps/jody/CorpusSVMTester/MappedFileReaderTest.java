@@ -0,0 +1,90 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that MappedFileReader decodes the same text however it is asked for, across window boundaries.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class MappedFileReaderTest
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void everyReadSizeGivesBackTheText() throws IOException
+	{
+		StringBuilder stringBuilder = new StringBuilder();
+		File file 						= temporaryFolder.newFile("author000");
+		FileOutputStream outputStream;
+		String text;
+
+		//Multi byte and supplementary characters land on window boundaries of the 64 byte window
+		for (int i = 0; i < 500; i++)
+		{
+			stringBuilder.append("ab ");
+			stringBuilder.appendCodePoint(0x1F600 + i % 40);
+			stringBuilder.append(" \u00e9\u4e2d\n");
+		}
+
+		text 			= stringBuilder.toString();
+		outputStream 	= new FileOutputStream(file);
+		outputStream.write(text.getBytes(UTF_8));
+		outputStream.close();
+
+		for (int length = 1; length <= 5; length++)
+		{
+			assertEquals("read length " + length, text, readAll(file, length));
+		}
+	}
+
+	/**
+	 * @return the text of file, read length chars at a time, failing if a read returns 0
+	 */
+	private static String readAll(File file, int length) throws IOException
+	{
+		MappedFileReader mappedFileReader 	= new MappedFileReader(file, UTF_8, 64);
+		StringBuilder stringBuilder 		= new StringBuilder();
+		char[] charArray 						= new char[length + 1];
+		int count;
+
+		try
+		{
+			while ((count = mappedFileReader.read(charArray, 1, length)) != -1)
+			{
+				assertTrue("read returned 0 for a length of " + length, count > 0);
+				stringBuilder.append(charArray, 1, count);
+			}
+		}
+		finally
+		{
+			mappedFileReader.close();
+		}
+
+		return stringBuilder.toString();
+	}
+}
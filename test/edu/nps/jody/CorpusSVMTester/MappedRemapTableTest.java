@@ -0,0 +1,135 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of MappedRemapTable reading a RemapTable file and sharing new small values through it.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class MappedRemapTableTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void mappedTableFindsEveryWrittenEntry() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= RemapTableTest.newTable(500, 3);
+		MappedRemapTable mappedRemapTable;
+
+		remapTable.write(file);
+		mappedRemapTable = new MappedRemapTable(file);
+
+		try
+		{
+			for (int i = 0; i < 1500; i++)
+			{
+				assertEquals(remapTable.get(i), mappedRemapTable.get(i));
+			}
+
+			RemapTableTest.assertSameEntries(remapTable, mappedRemapTable.toRemapTable());
+		}
+		finally
+		{
+			mappedRemapTable.close();
+		}
+	}
+
+	@Test
+	public void valuesAssignedByOneTableAreSeenByAnother() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= RemapTableTest.newTable(100, 2);
+		MappedRemapTable first;
+		MappedRemapTable second;
+
+		remapTable.write(file);
+		first 	= new MappedRemapTable(file);
+		second 	= new MappedRemapTable(file);
+
+		try
+		{
+			for (int i = 0; i < 20; i++)
+			{
+				//Looked up twice so the second lookup comes from the entries this table has already read
+				assertEquals(100 + 2 * i + 1, first.getOrAssign(1000 + i));
+				assertEquals(100 + 2 * i + 1, first.getOrAssign(1000 + i));
+				assertEquals(100 + 2 * i + 1, second.get(1000 + i));
+				assertEquals(100 + 2 * i + 2, second.getOrAssign(-1 - i));
+				assertEquals(100 + 2 * i + 2, first.get(-1 - i));
+			}
+
+			assertEquals(first.getMapMax(), second.getMapMax());
+			assertEquals(140, first.size());
+		}
+		finally
+		{
+			first.close();
+			second.close();
+		}
+	}
+
+	@Test
+	public void appendedEntriesAreReadByRemapTableAndMappedRemapTable() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= RemapTableTest.newTable(100, 3);
+		MappedRemapTable mappedRemapTable;
+		int savedMapMax;
+		int mappedSmall;
+
+		remapTable.write(file);
+		savedMapMax = remapTable.getMapMax();
+
+		for (int i = 0; i < 50; i++)
+		{
+			remapTable.getOrAssign(100000 + i);
+		}
+
+		remapTable.appendTo(file, savedMapMax);
+		mappedRemapTable = new MappedRemapTable(file);
+
+		try
+		{
+			assertEquals(remapTable.size(), mappedRemapTable.size());
+			assertEquals(remapTable.getMapMax(), mappedRemapTable.getMapMax());
+
+			for (int i = 0; i < 50; i++)
+			{
+				assertEquals(remapTable.get(100000 + i), mappedRemapTable.get(100000 + i));
+				assertEquals(remapTable.get(i * 3), mappedRemapTable.get(i * 3));
+			}
+
+			mappedSmall = mappedRemapTable.getOrAssign(-1);
+		}
+		finally
+		{
+			mappedRemapTable.close();
+		}
+
+		remapTable.getOrAssign(-1);
+
+		assertEquals(remapTable.getMapMax() - 1, mappedSmall);
+		RemapTableTest.assertSameEntries(remapTable, RemapTable.read(file));
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of RemapTable and of its file format.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class RemapTableTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void smallValuesStartAtOneAndAreGivenOutOnce()
+	{
+		RemapTable remapTable = new RemapTable();
+
+		assertEquals(1, remapTable.getOrAssign(500));
+		assertEquals(2, remapTable.getOrAssign(-4));
+		assertEquals(1, remapTable.getOrAssign(500));
+		assertEquals(RemapTable.NOT_MAPPED, remapTable.get(6));
+		assertEquals(3, remapTable.getMapMax());
+	}
+
+	@Test
+	public void writtenTableReadsBackUnchanged() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= newTable(1000, 7);
+		RemapTable readTable;
+
+		remapTable.write(file);
+		readTable = RemapTable.read(file);
+
+		assertTrue(RemapTable.isRemapTable(file));
+		assertSameEntries(remapTable, readTable);
+	}
+
+	@Test
+	public void denseTableKeepsItsEntriesAndWritesTheSameFile() throws IOException
+	{
+		RemapTable remapTable 	= newTable(1000, 7);
+		RemapTable denseTable;
+		File file 					= temporaryFolder.newFile("map");
+		File denseFile 			= temporaryFolder.newFile("denseMap");
+
+		//Large values outside [0, keyCount) still go to the hash map
+		remapTable.getOrAssign(-10);
+		remapTable.getOrAssign(50000);
+		denseTable = remapTable.toDense(10000);
+
+		assertTrue(denseTable.isDense());
+		assertEquals(10000, denseTable.getDenseKeyCount());
+		assertSameEntries(remapTable, denseTable);
+
+		remapTable.write(file);
+		denseTable.write(denseFile);
+
+		assertSameEntries(RemapTable.read(file), RemapTable.read(denseFile));
+	}
+
+	@Test
+	public void writeReplacesTheOldFileThroughATemporaryFile() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= newTable(10, 1);
+
+		remapTable.write(file);
+		remapTable.getOrAssign(-7);
+		remapTable.write(file);
+
+		assertSameEntries(remapTable, RemapTable.read(file));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void failedWriteLeavesTheOldFile() throws IOException
+	{
+		File file 					= temporaryFolder.newFile("map");
+		RemapTable remapTable 	= newTable(10, 1);
+		RemapTable biggerTable 	= newTable(20, 1);
+
+		remapTable.write(file);
+
+		//A directory in the way of the temporary file makes the write fail before file is touched
+		assertTrue(new File(file.getPath() + ".tmp").mkdir());
+
+		try
+		{
+			biggerTable.write(file);
+			fail("The table was written through a directory");
+		}
+		catch (IOException e)
+		{
+			//Expected
+		}
+
+		assertSameEntries(remapTable, RemapTable.read(file));
+	}
+
+	/**
+	 * @return a table with small values for count large values, step apart
+	 */
+	static RemapTable newTable(int count, int step)
+	{
+		RemapTable remapTable = new RemapTable();
+
+		for (int i = 0; i < count; i++)
+		{
+			remapTable.getOrAssign(i * step);
+		}
+
+		return remapTable;
+	}
+
+	/**
+	 * Checks that actual holds the same (large, small) pairs and mapMax as expected.
+	 */
+	static void assertSameEntries(RemapTable expected, RemapTable actual)
+	{
+		int[] largeValues = expected.sortedLargeValues();
+
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getMapMax(), actual.getMapMax());
+
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(largeValues[i]), actual.get(largeValues[i]));
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trip tests of the binary SVM format and of SVMFormatConverter between it and libSVM text.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class SVMFileFormatTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void binaryRecordsReadBackUnchanged() throws IOException
+	{
+		File binaryFile 		= temporaryFolder.newFile("large.bsvm");
+		int[] labels 			= {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 300};
+		//Features on either side of each varint byte boundary, and the largest int
+		int[] features 			= {0, 127, 128, 16383, 16384, 2097152, Integer.MAX_VALUE};
+		int[] counts 			= {1, 127, 128, 1, 65536, 3, Integer.MAX_VALUE};
+		BinarySVMFileWriter writer = new BinarySVMFileWriter(binaryFile, 16);
+		BinarySVMFileReader reader;
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			writer.writeRecord(labels[i], features, counts, features.length - i);
+		}
+
+		writer.close();
+
+		assertTrue(BinarySVMFileReader.isBinarySVMFile(binaryFile));
+
+		reader = new BinarySVMFileReader(binaryFile);
+
+		try
+		{
+			for (int i = 0; i < labels.length; i++)
+			{
+				assertTrue(reader.next());
+				assertEquals(labels[i], reader.getLabel());
+				assertEquals(features.length - i, reader.getLength());
+				assertArrayEquals(Arrays.copyOf(features, features.length - i), Arrays.copyOf(reader.getFeatures(), reader.getLength()));
+				assertArrayEquals(Arrays.copyOf(counts, counts.length - i), Arrays.copyOf(reader.getCounts(), reader.getLength()));
+			}
+
+			assertFalse(reader.next());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void emptyRecordsAreNotWritten() throws IOException
+	{
+		File binaryFile 		= temporaryFolder.newFile("empty.bsvm");
+		BinarySVMFileWriter writer = new BinarySVMFileWriter(binaryFile);
+		BinarySVMFileReader reader;
+
+		writer.writeRecord(4, new int[0], new int[0], 0);
+		writer.close();
+
+		reader = new BinarySVMFileReader(binaryFile);
+
+		try
+		{
+			assertFalse(reader.next());
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	@Test
+	public void truncatedHeaderIsNotABinarySVMFile() throws IOException
+	{
+		File binaryFile 					= temporaryFolder.newFile("short.bsvm");
+		FileOutputStream outputStream 	= new FileOutputStream(binaryFile);
+
+		outputStream.write(BinarySVMFileWriter.MAGIC, 0, 2);
+		outputStream.close();
+
+		assertFalse(BinarySVMFileReader.isBinarySVMFile(binaryFile));
+
+		try
+		{
+			new BinarySVMFileReader(binaryFile);
+			fail("A two byte file was read as a binary SVM file");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("not a binary SVM file"));
+		}
+
+		//The reader closed the file, so it can be deleted even where open files cannot be
+		assertTrue(binaryFile.delete());
+	}
+
+	@Test
+	public void libSVMTextSurvivesARoundTripThroughBinary() throws IOException
+	{
+		File libSVMFile 		= temporaryFolder.newFile("large.svm");
+		File binaryFile 		= temporaryFolder.newFile("large.bsvm");
+		File roundTripFile 	= temporaryFolder.newFile("roundTrip.svm");
+		LibSVMFileWriter libSVMFileWriter = new LibSVMFileWriter(libSVMFile);
+
+		libSVMFileWriter.writeRecord(3, new int[] {2, 90, 2000000000}, new int[] {1, 4, 1}, 3);
+		libSVMFileWriter.writeRecord(-12, new int[] {1}, new int[] {300}, 1);
+		libSVMFileWriter.writeRecord(0, new int[] {5, 6}, new int[] {1, 1}, 2);
+		libSVMFileWriter.close();
+
+		SVMFormatConverter.libSVMToBinary(libSVMFile, binaryFile);
+		SVMFormatConverter.binaryToLibSVM(binaryFile, roundTripFile);
+
+		assertArrayEquals(readBytes(libSVMFile), readBytes(roundTripFile));
+	}
+
+	@Test
+	public void libSVMToBinarySortsThePairsOfALine() throws IOException
+	{
+		File libSVMFile 		= temporaryFolder.newFile("unsorted.svm");
+		File binaryFile 		= temporaryFolder.newFile("unsorted.bsvm");
+		File sortedFile 		= temporaryFolder.newFile("sorted.svm");
+		FileOutputStream outputStream = new FileOutputStream(libSVMFile);
+
+		outputStream.write("7 30:2 4:1 12:5\n".getBytes("US-ASCII"));
+		outputStream.close();
+
+		SVMFormatConverter.libSVMToBinary(libSVMFile, binaryFile);
+		SVMFormatConverter.binaryToLibSVM(binaryFile, sortedFile);
+
+		assertEquals("7 4:1 12:5 30:2 \n", new String(readBytes(sortedFile), "US-ASCII"));
+	}
+
+	@Test
+	public void binaryLargeFileGivesTheSameSmallFileAsText() throws IOException
+	{
+		File libSVMFile 			= temporaryFolder.newFile("large.svm");
+		File binaryFile 			= temporaryFolder.newFile("large.bsvm");
+		File textSmallFile 		= temporaryFolder.newFile("textSmall.svm");
+		File binarySmallFile 	= temporaryFolder.newFile("binarySmall.svm");
+		LibSVMFileWriter libSVMFileWriter = new LibSVMFileWriter(libSVMFile);
+
+		libSVMFileWriter.writeRecord(3, new int[] {2, 90, 2000000000}, new int[] {1, 4, 1}, 3);
+		libSVMFileWriter.writeRecord(1, new int[] {90, 700}, new int[] {300, 2}, 2);
+		libSVMFileWriter.writeRecord(3, new int[] {5, 2000000000}, new int[] {1, 1}, 2);
+		libSVMFileWriter.close();
+
+		SVMFormatConverter.libSVMToBinary(libSVMFile, binaryFile);
+		new SVMToSmallSVM().writeSmallSVMFile(libSVMFile, textSmallFile);
+		new SVMToSmallSVM().writeSmallSVMFile(binaryFile, binarySmallFile);
+
+		assertTrue(textSmallFile.length() > 0);
+		assertArrayEquals(readBytes(textSmallFile), readBytes(binarySmallFile));
+	}
+
+	/**
+	 * @return every byte of file
+	 */
+	private static byte[] readBytes(File file) throws IOException
+	{
+		byte[] bytes 						= new byte[(int)file.length()];
+		FileInputStream inputStream 	= new FileInputStream(file);
+		int read 							= 0;
+		int count;
+
+		try
+		{
+			while (read < bytes.length && (count = inputStream.read(bytes, read, bytes.length - read)) > 0)
+			{
+				read = read + count;
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		return bytes;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of SVMToSmallSVM converting directories of large SVM files.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class SVMToSmallSVMTest
+{
+	private static final int AUTHOR_COUNT = 4;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void incrementalRunAfterALargeFileIsGoneMatchesAFullRun() throws Exception
+	{
+		File largeDirectory 			= temporaryFolder.newFolder("svmFiles");
+		File smallDirectory 			= new File(temporaryFolder.getRoot(), "smallSVMFiles");
+		File fullSmallDirectory 		= new File(temporaryFolder.getRoot(), "fullSmallSVMFiles");
+		File mapFile 					= new File(temporaryFolder.getRoot(), "map");
+		SVMToSmallSVM svmToSmallSVM 	= new SVMToSmallSVM();
+		SVMDataset incrementalDataset;
+		SVMDataset fullDataset;
+
+		writeLargeSVMFiles(largeDirectory);
+
+		svmToSmallSVM.largeToSmallHashMapFile = mapFile;
+		svmToSmallSVM.processLargeSVMDirectoryIncremental(largeDirectory, smallDirectory, 1, true);
+
+		assertEquals(AUTHOR_COUNT, smallDirectory.list().length);
+		assertTrue(new File(largeDirectory, "author002").delete());
+
+		//The next run carries on from the saved map, as CorpusSVMTester.prepareRemap sets it up
+		svmToSmallSVM = new SVMToSmallSVM();
+		svmToSmallSVM.initlializeLargeToSmallHashMap(mapFile);
+		svmToSmallSVM.processLargeSVMDirectoryIncremental(largeDirectory, smallDirectory, 1, true);
+
+		svmToSmallSVM = new SVMToSmallSVM();
+		svmToSmallSVM.largeToSmallHashMapFile = new File(temporaryFolder.getRoot(), "fullMap");
+		svmToSmallSVM.processLargeSVMDirectory(largeDirectory, fullSmallDirectory, 1, true);
+
+		assertEquals(sortedNames(fullSmallDirectory), sortedNames(smallDirectory));
+
+		incrementalDataset 	= SVMDataset.load(smallDirectory);
+		fullDataset 			= SVMDataset.load(fullSmallDirectory);
+
+		assertEquals(fullDataset.getAuthorCount(), incrementalDataset.getAuthorCount());
+
+		for (int author = 0; author < fullDataset.getAuthorCount(); author++)
+		{
+			assertEquals(fullDataset.getAuthorName(author), incrementalDataset.getAuthorName(author));
+			assertEquals(fullDataset.getUtteranceCount(author), incrementalDataset.getUtteranceCount(author));
+		}
+	}
+
+	/**
+	 * Writes AUTHOR_COUNT large SVM files, each with a few utterances of large feature values.
+	 */
+	private static void writeLargeSVMFiles(File largeDirectory) throws IOException
+	{
+		LibSVMFileWriter libSVMFileWriter;
+
+		for (int author = 0; author < AUTHOR_COUNT; author++)
+		{
+			libSVMFileWriter = new LibSVMFileWriter(new File(largeDirectory, "author00" + author));
+
+			for (int utterance = 0; utterance < 3 + author; utterance++)
+			{
+				libSVMFileWriter.writeRecord(author, new int[] {1000000 + utterance, 2000000 + 1000 * author}, new int[] {1, utterance + 1}, 2);
+			}
+
+			libSVMFileWriter.close();
+		}
+	}
+
+	/**
+	 * @return names of the files in directory, sorted
+	 */
+	private static String[] sortedNames(File directory)
+	{
+		String[] names = directory.list();
+
+		Arrays.sort(names);
+
+		return names;
+	}
+}
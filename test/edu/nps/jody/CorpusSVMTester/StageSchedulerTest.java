@@ -0,0 +1,158 @@
+/*
+ * This package is a collection of classes used to process a directory of text files,
+ * where each file represents an author, topic, or some other classification,
+ * and creates a minimum perfect hash function value based on a pre-computed
+ * set of accepts words/ngrams/instances, creates SVM files, created n cross
+ * validation sets for each grouping (selected by user), trains liblinear against
+ * the training sets, uses liblinear to run predictions, compares predictions to
+ * "truth" in the original data, and compiles that data into a confusions matrix
+ * plus other key statistics.
+ */
+package edu.nps.jody.CorpusSVMTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests of StageScheduler ordering, concurrency, retries and failures.
+ *
+ * @author Jody Grady, CS Masters Student, Naval Postgraduate School
+ *
+ */
+public class StageSchedulerTest
+{
+	@Test
+	public void stagesRunAfterTheirDependencies() throws IOException
+	{
+		StageScheduler stageScheduler 	= new StageScheduler(4, 0);
+		Vector<String> finished 			= new Vector<String>();
+
+		stageScheduler.addStage("text", record(finished, "text"));
+		stageScheduler.addStage("svm", record(finished, "svm"), "text");
+		stageScheduler.addStage("slices-5", record(finished, "slices-5"), "svm");
+		stageScheduler.addStage("slices-10", record(finished, "slices-10"), "svm");
+		stageScheduler.addStage("predict", record(finished, "predict"), "slices-5", "slices-10");
+		stageScheduler.run();
+
+		assertEquals(5, finished.size());
+		assertEquals("text", finished.get(0));
+		assertEquals("svm", finished.get(1));
+		assertEquals("predict", finished.get(4));
+	}
+
+	@Test
+	public void noMoreThanTheConcurrencyLimitRunAtOnce() throws IOException
+	{
+		StageScheduler stageScheduler 	= new StageScheduler(2, 0);
+		final AtomicInteger running 		= new AtomicInteger();
+		final AtomicInteger mostRunning 	= new AtomicInteger();
+
+		for (int i = 0; i < 8; i++)
+		{
+			stageScheduler.addStage("stage-" + i, new Callable<Void>()
+			{
+				public Void call() throws InterruptedException
+				{
+					int now = running.incrementAndGet();
+
+					synchronized (mostRunning)
+					{
+						mostRunning.set(Math.max(mostRunning.get(), now));
+					}
+
+					Thread.sleep(20);
+					running.decrementAndGet();
+
+					return null;
+				}
+			});
+		}
+
+		stageScheduler.run();
+
+		assertEquals(2, mostRunning.get());
+	}
+
+	@Test
+	public void aFailedStageIsRetried() throws IOException
+	{
+		StageScheduler stageScheduler 	= new StageScheduler(1, 2);
+		final AtomicInteger attempts 	= new AtomicInteger();
+
+		stageScheduler.addStage("flaky", new Callable<Void>()
+		{
+			public Void call() throws IOException
+			{
+				if (attempts.incrementAndGet() < 3)
+				{
+					throw new IOException("attempt " + attempts.get());
+				}
+
+				return null;
+			}
+		});
+
+		stageScheduler.run();
+
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void aStageThatKeepsFailingStopsTheRunAndItsDependents()
+	{
+		StageScheduler stageScheduler 	= new StageScheduler(1, 1);
+		Vector<String> finished 			= new Vector<String>();
+
+		stageScheduler.addStage("broken", new Callable<Void>()
+		{
+			public Void call()
+			{
+				throw new IllegalStateException("broken");
+			}
+		});
+		stageScheduler.addStage("after", record(finished, "after"), "broken");
+
+		try
+		{
+			stageScheduler.run();
+			fail("A failed stage did not fail the run");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		assertFalse(finished.contains("after"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void dependenciesMustAlreadyBeAdded()
+	{
+		new StageScheduler(1, 0).addStage("svm", record(new Vector<String>(), "svm"), "text");
+	}
+
+	/**
+	 * @return work that adds name to finished
+	 */
+	private static Callable<Void> record(final Vector<String> finished, final String name)
+	{
+		return new Callable<Void>()
+		{
+			public Void call()
+			{
+				finished.add(name);
+
+				return null;
+			}
+		};
+	}
+}